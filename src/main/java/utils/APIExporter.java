@@ -19,16 +19,15 @@
 package utils;
 
 import com.opencsv.CSVReader;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.entity.BufferedHttpEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.json.simple.JSONObject;
@@ -38,23 +37,32 @@ import org.json.simple.parser.ParseException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
 import java.net.URLConnection;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static utils.ImportExportUtils.entryName;
 
 /**
  * This class handle all the functionality of API export
@@ -62,8 +70,11 @@ import java.util.Scanner;
 class APIExporter {
 
     private static final Log log = LogFactory.getLog(APIExporter.class);
-    private static JSONParser parser = new JSONParser();
-    private static ObjectMapper mapper = new ObjectMapper();
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static ExecutorService ioExecutor;
+    //Config of the global mediation policies retrieved in the current run, by the policy uuid
+    private static final ConcurrentMap<Object, CompletableFuture<String>> globalMediationPolicies =
+            new ConcurrentHashMap<>();
 
 
     /**
@@ -98,25 +109,34 @@ class APIExporter {
             }
         }
         //Generating access token
-        String token;
+        TokenManager tokenManager;
         try {
-            token = ImportExportUtils.getAccessToken
-                    (ImportExportConstants.EXPORT_SCOPE, consumerCredentials);
+            tokenManager = new TokenManager(ImportExportConstants.EXPORT_SCOPE,
+                    consumerCredentials);
         } catch (UtilException e) {
             String errorMsg = "Error occurred while generating access token for " + config.getApiName();
             log.error(errorMsg, e);
             throw new APIExportException(errorMsg, e);
         }
 
-        //Get the destination, and folder name for the archive from configurations
-        String archivePath = getDestinationFolder(config);
-
-        //Exporting the API
-        exportAPI(archivePath, config.getApiName(), config.getApiProvider(),
-                config.getApiVersion(), token);
-
-        //Archiving created directory
-        createArchive(archivePath);
+        //Open the archive at the destination, with the folder name from configurations
+        ZipArchiveSink archive = openArchive(config, null);
+        BaselineArchive baseline = openBaseline(config);
+        ExportManifest manifest = new ExportManifest();
+        globalMediationPolicies.clear();
+        try {
+            //Exporting the API, with its parts retrieved in parallel
+            HttpClientGenerator.ensurePoolCapacity(config.getIoThreads());
+            exportAPI(archive, baseline, manifest, config.getApiName(), config.getApiProvider(),
+                    config.getApiVersion(), tokenManager);
+        } catch (APIExportException e) {
+            archive.abort();
+            throw e;
+        } finally {
+            IOUtils.closeQuietly(baseline);
+        }
+        HttpCache.getInstance().logStatistics();
+        closeArchive(archive, manifest);
     }
 
     /**
@@ -126,9 +146,9 @@ class APIExporter {
      */
     static void bulkApiExport(String credentials) throws APIExportException {
         ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
-        String token;
+        TokenManager tokenManager;
         try {
-            token = ImportExportUtils.getAccessToken(ImportExportConstants.EXPORT_SCOPE, credentials);
+            tokenManager = new TokenManager(ImportExportConstants.EXPORT_SCOPE, credentials);
         } catch (UtilException e) {
             String errorMsg = "Error occurred while generating access token for bulk export of APIs";
             log.error(errorMsg, e);
@@ -137,30 +157,143 @@ class APIExporter {
         //Retrieve csv file location from the configurations
         String csvFile = config.getApiFilePath();
 
-        //Retrieve the folder information for the resulting zip file
-        String archivePath = getDestinationFolder(config);
+        //Read the content in the CSV file
+        List<String[]> apiList = readApiList(csvFile);
 
+        //Open the archive at the destination, continuing an interrupted export of the same APIs
+        ExportJournal journal = openJournal(config, csvFile);
+        ZipArchiveSink archive = openArchive(config, journal);
+        ExportManifest manifest = new ExportManifest();
+        if (journal != null && !journal.getCompletedApis().isEmpty()) {
+            Map<String, ExportManifest.ApiRecord> completedApis = journal.getCompletedApis();
+            for (Map.Entry<String, ExportManifest.ApiRecord> completedApi : completedApis.entrySet()) {
+                manifest.putApi(completedApi.getKey(), completedApi.getValue());
+            }
+            List<String[]> remainingApis = new ArrayList<>(apiList.size());
+            for (String[] line : apiList) {
+                if (!completedApis.containsKey(getApiId(line))) {
+                    remainingApis.add(line);
+                }
+            }
+            System.out.println("Resuming the interrupted export, " + completedApis.size() + " of " +
+                    apiList.size() + " APIs already exported");
+            apiList = remainingApis;
+        }
+        //Keeping the exported APIs if the run is stopped, such as by Ctrl-C, so running the
+        //export again resumes it
+        Thread suspendHook = new Thread(archive::suspend, "export-suspend");
+        Runtime.getRuntime().addShutdownHook(suspendHook);
         try {
-            //Read the content in the CSV file
-            CSVReader reader = new CSVReader(new InputStreamReader(new FileInputStream(csvFile),
-                    ImportExportConstants.CHARSET));
-            String[] line;
-            while ((line = reader.readNext()) != null) {
-                //Extract API name, version , provider from the csv file
-                String apiProvider = line[0];
-                String apiName = line[1];
-                String apiVersion = line[2];
+            BaselineArchive baseline = openBaseline(config);
+            globalMediationPolicies.clear();
+            List<String> failedApis = Collections.synchronizedList(new ArrayList<String>());
+            int threads = Math.min(ImportExportUtils.getPoolThreads(config.getThreads()),
+                    Math.max(1, apiList.size()));
+            try {
+                exportListedApis(archive, baseline, manifest, apiList, threads, tokenManager,
+                        failedApis);
+            } finally {
+                IOUtils.closeQuietly(baseline);
+            }
+            if (!failedApis.isEmpty()) {
+                Collections.sort(failedApis);
+                log.warn((apiList.size() - failedApis.size()) + " of " + apiList.size() +
+                        " APIs exported, failed to export " + failedApis);
+            }
+            HttpCache.getInstance().logStatistics();
+            closeArchive(archive, manifest);
+        } finally {
+            try {
+                Runtime.getRuntime().removeShutdownHook(suspendHook);
+            } catch (IllegalStateException e) {
+                //Already shutting down, the hook suspends the archive
+            }
+        }
+    }
+
+    /**
+     * Export the APIs listed in the csv file, with the given number of workers
+     *
+     * @param archive      archive to export the APIs in to
+     * @param baseline     archive of a previous export to copy unchanged APIs from, or null
+     * @param manifest     manifest to record the exported APIs
+     * @param apiList      lines of the csv file
+     * @param threads      number of workers
+     * @param tokenManager token manager
+     * @param failedApis   list to record the APIs failed to export
+     */
+    private static void exportListedApis(ZipArchiveSink archive, BaselineArchive baseline,
+                                         ExportManifest manifest, List<String[]> apiList,
+                                         int threads, TokenManager tokenManager,
+                                         List<String> failedApis) throws APIExportException {
+        //Committing the APIs in the order of the list, whichever worker exports them
+        final OrderedCommitter committer = new OrderedCommitter(archive, manifest, failedApis,
+                threads * ImportExportConstants.EXPORT_AHEAD_APIS_PER_THREAD);
+        if (threads > 1) {
+            //Exporting the APIs concurrently, each worker exports a whole API at a time
+            HttpClientGenerator.ensurePoolCapacity(threads *
+                    ApiImportExportConfiguration.getInstance().getIoThreads());
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>(apiList.size());
+            final AtomicInteger processed = new AtomicInteger();
+            for (int i = 0; i < apiList.size(); i++) {
+                final int position = i;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            committer.awaitTurn(position);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        exportListedApi(committer, position, baseline, apiList.get(position),
+                                tokenManager, failedApis);
+                        ImportExportUtils.printProgress(processed.incrementAndGet(), apiList.size());
+                    }
+                }));
+            }
+            executor.shutdown();
+            for (Future<?> future : futures) {
                 try {
-                    //Exporting each API
-                    exportAPI(archivePath, apiName, apiProvider, apiVersion, token);
-                } catch (APIExportException e) {
-                    //If throws APIExportException, gives a warning and continue with the next API in the list
-                    log.warn("Error occurred while exporting API " + apiName + "-" +
-                            apiVersion, e);
+                    future.get();
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    //Keeping the exported APIs, so running the export again resumes it
+                    archive.suspend();
+                    committer.discard();
+                    Thread.currentThread().interrupt();
+                    String errorMsg = "Bulk export of APIs interrupted";
+                    log.error(errorMsg, e);
+                    throw new APIExportException(errorMsg, e);
+                } catch (ExecutionException e) {
+                    log.error("Unexpected error occurred while exporting an API", e.getCause());
                 }
             }
-            //Archive created directory
-            createArchive(archivePath);
+        } else {
+            for (int position = 0; position < apiList.size(); position++) {
+                exportListedApi(committer, position, baseline, apiList.get(position), tokenManager,
+                        failedApis);
+                ImportExportUtils.printProgress(position + 1, apiList.size());
+            }
+        }
+        //APIs held after one whose worker failed unexpectedly are never committed
+        committer.discard();
+    }
+
+    /**
+     * Read the list of APIs to be exported from the csv file
+     *
+     * @param csvFile path to the csv file
+     * @return list of lines in the csv file
+     * @throws APIExportException If unable to read the csv file
+     */
+    private static List<String[]> readApiList(String csvFile) throws APIExportException {
+        CSVReader reader = null;
+        try {
+            reader = new CSVReader(new InputStreamReader(new FileInputStream(csvFile),
+                    ImportExportConstants.CHARSET));
+            return reader.readAll();
         } catch (FileNotFoundException e) {
             String errorMsg = "Cannot find the source file file for bulk export";
             log.error(errorMsg, e);
@@ -169,35 +302,152 @@ class APIExporter {
             String errorMsg = "Error occurred while reading the source file for bulk export";
             log.error(errorMsg, e);
             throw new APIExportException(errorMsg, e);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Returns the api id(provider-name-version) of the API in a line of the csv file
+     *
+     * @param line line of the csv file as provider, name, version
+     * @return api id, or null if the line is invalid
+     */
+    private static String getApiId(String[] line) {
+        if (line.length < 3) {
+            return null;
+        }
+        return line[0].trim() + "-" + line[1].trim() + "-" + line[2].trim();
+    }
+
+    /**
+     * Export the API in a line of the csv file, handing it over to be committed in its turn
+     *
+     * @param committer    committer of the exported APIs
+     * @param position     position of the line in the csv file
+     * @param baseline     archive of a previous export to copy unchanged APIs from, or null
+     * @param line         line of the csv file as provider, name, version
+     * @param tokenManager token manager
+     * @param failedApis   list to record the APIs failed to export
+     */
+    private static void exportListedApi(OrderedCommitter committer, int position,
+                                        BaselineArchive baseline, String[] line,
+                                        TokenManager tokenManager, List<String> failedApis) {
+        if (line.length < 3) {
+            log.warn("Skipping invalid line in the API list " + Arrays.toString(line));
+            committer.skip(position);
+            return;
+        }
+        //Extract API name, version , provider from the csv file
+        String apiProvider = line[0].trim();
+        String apiName = line[1].trim();
+        String apiVersion = line[2].trim();
+        StagedArchiveSink apiEntries = new StagedArchiveSink();
+        try {
+            //Exporting each API
+            ExportManifest.ApiRecord record = stageAPI(apiEntries, baseline, apiName, apiProvider,
+                    apiVersion, tokenManager);
+            committer.commit(position, apiProvider + "-" + apiName + "-" + apiVersion, apiEntries,
+                    record);
+        } catch (APIExportException | RuntimeException e) {
+            //If export failed, gives a warning and continue with the next API in the list
+            log.warn("Error occurred while exporting API " + apiName + "-" +
+                    apiVersion, e);
+            failedApis.add(apiProvider + "-" + apiName + "-" + apiVersion);
+            apiEntries.discard();
+            committer.skip(position);
+        }
+    }
+
+    /**
+     * Retrieve the information of API and add it to the archive, recording it in the manifest.
+     * The entries of the API are staged until all of them are retrieved, so a failed API leaves
+     * nothing in the archive
+     *
+     * @param archive      archive to export the API in to
+     * @param baseline     archive of a previous export to copy unchanged APIs from, or null
+     * @param manifest     manifest to record the exported APIs
+     * @param apiName      name of the API
+     * @param provider     provider of the API
+     * @param version      version of the API
+     * @param tokenManager token manager
+     */
+    private static void exportAPI(ZipArchiveSink archive, BaselineArchive baseline,
+                                  ExportManifest manifest, String apiName, String provider,
+                                  String version, TokenManager tokenManager)
+            throws APIExportException {
+        StagedArchiveSink apiEntries = new StagedArchiveSink();
+        try {
+            ExportManifest.ApiRecord record = stageAPI(apiEntries, baseline, apiName, provider,
+                    version, tokenManager);
+            String apiId = provider + "-" + apiName + "-" + version;
+            archive.commit(apiId, apiEntries, record);
+            manifest.putApi(apiId, record);
+        } catch (IOException e) {
+            String errorMsg = "Error occurred while writing API " + apiName + "-" + version +
+                    " in to the archive";
+            log.error(errorMsg, e);
+            throw new APIExportException(errorMsg, e);
+        } finally {
+            apiEntries.discard();
+        }
+    }
+
+    /**
+     * Retrieve the information of API in to the staged entries of the API, which are complete once
+     * this returns
+     *
+     * @param apiEntries   staged entries of the API
+     * @param baseline     archive of a previous export to copy unchanged APIs from, or null
+     * @param apiName      name of the API
+     * @param provider     provider of the API
+     * @param version      version of the API
+     * @param tokenManager token manager
+     * @return record of the API, with the digests of its entries
+     */
+    private static ExportManifest.ApiRecord stageAPI(StagedArchiveSink apiEntries,
+                                                     BaselineArchive baseline, String apiName,
+                                                     String provider, String version,
+                                                     TokenManager tokenManager)
+            throws APIExportException {
+        ApiDefinition definition = exportAPIEntries(apiEntries, baseline, apiName, provider,
+                version, tokenManager);
+        if (baseline != null) {
+            //Copying the compressed data of the entries retrieved the same as in the baseline
+            apiEntries.reuseBaselineEntries(baseline, provider + "-" + apiName + "-" + version);
         }
+        return new ExportManifest.ApiRecord(apiName + "-" + version, definition.getLastUpdated(),
+                apiEntries.getDigests());
     }
 
     /**
-     * Retrieve the information of API and create a exportable archive
+     * Retrieve the information of API and add it as entries of the given archive. If the
+     * definition and the document list of the API are the same as in the baseline archive, the
+     * documents are copied from the baseline instead of being retrieved again
      *
-     * @param apiName     name of the API
-     * @param provider    provider of the API
-     * @param version     version of the API
-     * @param accessToken valid access token
+     * @param archive      archive to add the entries of the API
+     * @param baseline     archive of a previous export to copy unchanged APIs from, or null
+     * @param apiName      name of the API
+     * @param provider     provider of the API
+     * @param version      version of the API
+     * @param tokenManager token manager
+     * @return definition of the exported API
      */
-    private static void exportAPI(String destinationLocation, String apiName, String provider,
-                                  String version, String accessToken) throws APIExportException {
-        String responseString;
+    private static ApiDefinition exportAPIEntries(ArchiveSink archive, BaselineArchive baseline,
+                                                  String apiName, String provider, String version,
+                                                  TokenManager tokenManager)
+            throws APIExportException {
         ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
         //Building the API id
         String apiId = provider + "-" + apiName + "-" + version;
         CloseableHttpResponse response;
-        CloseableHttpClient client = null;
 
         try {
             //Retrieve API meta- information
-            client = HttpClientGenerator.getHttpClient();
             String url = config.getPublisherUrl() + ImportExportConstants.APIS + apiId;
             HttpGet request = new HttpGet(url);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT +
-                    accessToken);
             request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
-            response = client.execute(request);
+            response = tokenManager.execute(request);
         } catch (IOException e) {
             String errorMsg = "Error occurred while retrieving details of the API " + apiId;
             log.error(errorMsg, e);
@@ -208,122 +458,105 @@ class APIExporter {
             throw new APIExportException(errorMsg, e);
         }
         if (response.getStatusLine().getStatusCode() == Response.Status.OK.getStatusCode()) {
-            //If API meta-information retrieved successfully
+            //If API meta-information retrieved successfully, parsing it once for the whole export
+            ApiDefinition definition;
             try {
-                HttpEntity entity = response.getEntity();
-                responseString = EntityUtils.toString(entity);
+                definition = ApiDefinition.parse(response.getEntity().getContent());
             } catch (IOException e) {
-                String errorMsg = "Error occurred while converting API response to string";
+                String errorMsg = "Error occurred while reading the definition of API " + apiId;
                 log.error(errorMsg, e);
                 throw new APIExportException(errorMsg, e);
+            } finally {
+                IOUtils.closeQuietly(response);
             }
-            //Creating directory to store API information
-            String APIFolderPath = destinationLocation.concat(File.separator + apiName + "-" + version);
+            //Folder of the archive to store API information
+            String apiFolder = apiName + "-" + version;
 
-            //Creating directory to store API meta-information
-            String metaInfoFolderPath = APIFolderPath.concat(File.separator +
-                    ImportExportConstants.META_INFO);
-            try {
-                ImportExportUtils.createDirectory(APIFolderPath);
-                ImportExportUtils.createDirectory(metaInfoFolderPath);
-
-            } catch (UtilException e) {
-                String errorMsg = "Error occurred while creating directory to hold API details " +
-                        "of API " + apiId;
-                log.error(errorMsg, e);
-                throw new APIExportException(errorMsg, e);
-            }
+            //Folder of the archive to store API meta-information
+            String metaInfoFolder = entryName(apiFolder, ImportExportConstants.META_INFO);
             //Set API status and scope before exporting
-            if (!ImportExportUtils.readJsonValues(responseString, ImportExportConstants.STATUS_CONSTANT).
-                    equalsIgnoreCase(ImportExportConstants.PROTOTYPED)) {
-                responseString = setJsonValues(responseString, ImportExportConstants.STATUS_CONSTANT,
-                        ImportExportConstants.CREATED);
+            if (!ImportExportConstants.PROTOTYPED.equalsIgnoreCase(definition.getStatus())) {
+                definition.setStatus(ImportExportConstants.CREATED);
             }
-            responseString = setJsonValues(responseString, ImportExportConstants.SCOPE_CONSTANT, null);
+            definition.clearScope();
 
             //Get API uuid from the retrieved api definition
-            String uuid = ImportExportUtils.readJsonValues(responseString, ImportExportConstants.UUID);
+            String uuid = definition.getUuid();
 
-            //Writing API definition in to exporting folder
+            //Writing API definition in to the archive
+            String apiJsonEntry = entryName(metaInfoFolder, ImportExportConstants.API_JSON);
+            byte[] apiJson;
             try {
-                writeFile(metaInfoFolderPath + File.separator + ImportExportConstants.API_JSON,
-                        ImportExportUtils.formatJsonString(responseString));
-            } catch (UtilException e) {
+                apiJson = definition.toFormattedJson();
+                archive.addEntry(apiJsonEntry, apiJson);
+            } catch (IOException e) {
                 String errorMsg = "Error occurred while writing API defifnition to the exporting file";
                 log.error(errorMsg, e);
                 throw new APIExportException(errorMsg, e);
             }
 
+            //Copying the documents from the baseline archive, if the definition is unchanged. The
+            //swagger, thumbnail, mediation policies and wsdl can change without the definition,
+            //hence they are retrieved again in any case
+            ExportManifest.ApiRecord baselineRecord = getUnchangedRecord(baseline, apiId,
+                    apiJsonEntry, apiJson);
+
+            //Swagger, thumbnail, documents, mediation policies and wsdl of the API do not depend
+            //on each other, hence requesting them all at once and writing each of them in to the
+            //archive on the I/O executor as its response arrives
+            List<CompletableFuture<Void>> exportTasks = new ArrayList<>();
+
             //Add API swagger definition to exporting folder
-            addSwagger(uuid, accessToken, metaInfoFolderPath);
+            exportTasks.add(addSwagger(archive, uuid, tokenManager, metaInfoFolder));
 
             //Check if API consists of a thumbnail
-            String thumbnailUri = ImportExportUtils.readJsonValues(responseString,
-                    ImportExportConstants.THUMBNAIL);
-            if (StringUtils.isNotBlank(thumbnailUri)) {
+            if (StringUtils.isNotBlank(definition.getThumbnailUri())) {
                 //Export api thumbnail
-                exportAPIThumbnail(uuid, accessToken, APIFolderPath);
+                exportTasks.add(exportAPIThumbnail(archive, uuid, tokenManager, apiFolder));
             }
-            //Get API documents list
-            String documentList = getAPIDocumentList(accessToken, uuid);
-            try {
-                JSONObject jsonObj = (JSONObject) parser.parse(documentList);
-                org.json.simple.JSONArray arr = (org.json.simple.JSONArray)
-                        jsonObj.get(ImportExportConstants.DOC_LIST);
-                if (arr.size() > 0) {
-                    try {
-                        exportAPIDocumentation(uuid, documentList, accessToken, APIFolderPath);
-                    } catch (UtilException e) {
-                        log.error("Error occurred while exporting documents of API " + apiId, e);
-                    }
-                }
-            } catch (ParseException e) {
-                log.error("Error occurred while converting document list to json", e);
+
+            //Get API documents list, and then the content of the listed documents
+            if (baselineRecord != null) {
+                exportTasks.add(getAPIDocumentList(tokenManager, uuid)
+                        .thenCompose(documentList -> copyUnchangedDocuments(archive, baseline,
+                                baselineRecord, documentList, uuid, tokenManager, apiFolder, apiId)));
+            } else {
+                exportTasks.add(getAPIDocumentList(tokenManager, uuid)
+                        .thenCompose(documentList -> exportDocuments(archive, uuid, documentList,
+                                tokenManager, apiFolder, apiId)));
             }
 
-            //Exporting mediation policies
-            JSONObject jsonObj = null;
-            try {
-                jsonObj = (JSONObject) parser.parse(responseString);
-                //Convert API definition in to json object and extract the sequences element.
-                org.json.simple.JSONArray arr = (org.json.simple.JSONArray) jsonObj.
-                        get(ImportExportConstants.SEQUENCES_ELEM);
-                if (arr.size() > 0) {
-                    //Traverse through each sequence mediation to add them in to the exporting folder
-                    for (Object item : arr) {
-                        JSONObject mediationPolicy = (JSONObject) item;
-                        //If value of attribute shared == false, its a API specific mediation sequence
-                        if (!(boolean) mediationPolicy.get(ImportExportConstants.SHARED_STATUS)) {
-                            //Exporting API specific mediation policy
-                            exportApiSpecificMediationPolicies(config, uuid, accessToken, mediationPolicy,
-                                    APIFolderPath);
-                        } else {
-                            //Exporting global mediation policy
-                            exportGlobalMediationPolicies(config, accessToken, mediationPolicy,
-                                    destinationLocation);
-                        }
-                    }
+            //Exporting mediation policies, traversing through each sequence mediation to add them
+            //in to the archive
+            for (Map<String, Object> mediationPolicy : definition.getSequences()) {
+                //If value of attribute shared == false, its a API specific mediation sequence
+                if (!(boolean) mediationPolicy.get(ImportExportConstants.SHARED_STATUS)) {
+                    //Exporting API specific mediation policy
+                    exportTasks.add(exportApiSpecificMediationPolicies(archive, config, uuid,
+                            tokenManager, mediationPolicy, apiFolder));
+                } else {
+                    //Exporting global mediation policy
+                    exportTasks.add(exportGlobalMediationPolicies(archive, config, tokenManager,
+                            mediationPolicy));
                 }
-            } catch (ParseException e) {
-                log.error("Error occurred while getting mediation sequences of the API " + apiName);
-            } catch (UtilException e) {
-                log.error("Error occurred while writing mediation policies in to the exporting " +
-                        "folder", e);
-            } finally {
-                IOUtils.closeQuietly(client);
             }
             //Exporting API wsdl, if exists
-            if (jsonObj != null && StringUtils.isNotBlank((String) jsonObj.get
-                    (ImportExportConstants.WSDL_URI))) {
-                exportApiWsdl(config, uuid, accessToken, APIFolderPath);
+            if (StringUtils.isNotBlank(definition.getWsdlUri())) {
+                exportTasks.add(exportApiWsdl(archive, config, uuid, tokenManager, apiFolder));
             }
 
+            //Waiting for all the parts of the API to be exported
+            awaitExportTasks(exportTasks, apiId);
+            return definition;
+
         } else if (response.getStatusLine().getStatusCode() ==
                 Response.Status.NOT_FOUND.getStatusCode()) {
+            IOUtils.closeQuietly(response);
             String message = "API " + apiId + " does not exist/ not found ";
             log.warn(message);
             throw new APIExportException(message);
         } else {
+            IOUtils.closeQuietly(response);
             String errorMsg = "Error occurred while retrieving the meta-information of API " + apiId;
             log.error(errorMsg);
             throw new APIExportException(errorMsg);
@@ -331,97 +564,291 @@ class APIExporter {
     }
 
     /**
-     * Add API wsdl to the exporting folder
+     * Returns the baseline record of an API, if the definition of the API is the same as in the
+     * baseline export and all the entries of the API can be copied from the baseline archive
      *
-     * @param config        ApiImportExportConfiguration object
-     * @param uuid          API identifier
-     * @param token         access token with apim:api_view scope
-     * @param apiFolderPath path to the API folder
-     */
-    private static void exportApiWsdl(ApiImportExportConfiguration config, String uuid,
-                                      String token, String apiFolderPath) throws APIExportException {
-        InputStream inputStream = null;
-        OutputStream outputStream = null;
-        CloseableHttpClient client = null;
-        try {
-            String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
-                    ImportExportConstants.WSDL_SEG;
-            client = HttpClientGenerator.getHttpClient();
-            HttpGet request = new HttpGet(url);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT + token);
-            CloseableHttpResponse response = client.execute(request);
-            //Extracting the wsdl implementation
-            inputStream = response.getEntity().getContent();
-            outputStream = new FileOutputStream(apiFolderPath + File.separator +
-                    ImportExportConstants.WSDL_FILE_NAME);
-            //Writing wsdl content to the exporting directory
-            IOUtils.copy(inputStream, outputStream);
-        } catch (UtilException e) {
-            String errorMsg = "Error occurred while getting a http client for exporting wsdl" +
-                    " of API " + uuid;
-            log.error(errorMsg, e);
-            throw new APIExportException(errorMsg, e);
-        } catch (IOException e) {
-            String errorMsg = "Error occurred while retrieving wsdl of the API " + uuid;
-            log.error(errorMsg, e);
-            throw new APIExportException(errorMsg, e);
-        } finally {
-            IOUtils.closeQuietly(inputStream);
-            IOUtils.closeQuietly(outputStream);
-            IOUtils.closeQuietly(client);
+     * @param baseline     archive of a previous export, or null
+     * @param apiId        api id of the API(provider-name-version)
+     * @param apiJsonEntry name of the API definition entry
+     * @param apiJson      API definition being exported
+     * @return record of the API in the baseline manifest, or null if the API is to be exported
+     */
+    private static ExportManifest.ApiRecord getUnchangedRecord(BaselineArchive baseline, String apiId,
+                                                               String apiJsonEntry, byte[] apiJson) {
+        if (baseline == null) {
+            return null;
         }
+        ExportManifest.ApiRecord record = baseline.getManifest().getApi(apiId);
+        if (record == null ||
+                !DigestUtils.sha256Hex(apiJson).equals(record.getEntries().get(apiJsonEntry))) {
+            return null;
+        }
+        for (String name : record.getEntries().keySet()) {
+            if (!baseline.hasEntry(name)) {
+                log.warn("Entry " + name + " of API " + apiId + " is missing in the baseline " +
+                        "archive, exporting the API in full");
+                return null;
+            }
+        }
+        return record;
     }
 
     /**
-     * This method get the API thumbnail and write in to the zip file
+     * Copy the documents of an API with an unchanged definition from the baseline archive. The
+     * documents can change without the API definition, hence they are copied only if the document
+     * list is unchanged as well, and exported otherwise
      *
-     * @param uuid          id of the API
-     * @param accessToken   valid access token with exporting scopes
-     * @param apiFolderPath path to the folder with API information
+     * @param archive        archive to add the documents
+     * @param baseline       archive of a previous export
+     * @param baselineRecord record of the API in the baseline manifest
+     * @param documentList   document list of the API, or null if not retrieved
+     * @param uuid           API identifier
+     * @param tokenManager   token manager with exporting scopes
+     * @param apiFolder      folder of the API inside the archive
+     * @param apiId          api id of the API(provider-name-version)
+     * @return future completing when the documents are written in to the archive
      */
-    private static void exportAPIThumbnail(String uuid, String accessToken, String apiFolderPath) {
-        ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
-        CloseableHttpClient client = null;
+    private static CompletableFuture<Void> copyUnchangedDocuments(
+            ArchiveSink archive, BaselineArchive baseline, ExportManifest.ApiRecord baselineRecord,
+            String documentList, String uuid, TokenManager tokenManager, String apiFolder,
+            String apiId) {
+        Map<String, String> baselineEntries = baselineRecord.getEntries();
+        String documentFolder = entryName(apiFolder, ImportExportConstants.DOCUMENT_DIRECTORY);
+        String documentListEntry = entryName(documentFolder, ImportExportConstants.DOC_JSON);
+        if (documentList == null || !baselineEntries.containsKey(documentListEntry) ||
+                !DigestUtils.sha256Hex(formatDocumentList(documentList)
+                        .getBytes(StandardCharsets.UTF_8))
+                        .equals(baselineEntries.get(documentListEntry))) {
+            return exportDocuments(archive, uuid, documentList, tokenManager, apiFolder, apiId);
+        }
+        log.info("Documents of API " + apiId + " unchanged since the baseline export, copying " +
+                "them from the baseline archive");
+        return runAsync(() -> {
+            try {
+                for (String name : baselineEntries.keySet()) {
+                    if (name.startsWith(documentFolder + ImportExportConstants.URL_SEPARATOR)) {
+                        archive.copyEntry(name, baseline);
+                    }
+                }
+            } catch (IOException e) {
+                String errorMsg = "Error occurred while copying the documents of API " + apiId +
+                        " from the baseline archive";
+                log.error(errorMsg, e);
+                throw new APIExportException(errorMsg, e);
+            }
+        });
+    }
+
+    /**
+     * Export the documents in the given document list of an API
+     *
+     * @param archive      archive to add the documents
+     * @param uuid         API identifier
+     * @param documentList document list of the API
+     * @param tokenManager token manager with apim:api_view scope
+     * @param apiFolder    folder of the API inside the archive
+     * @param apiId        api id of the API(provider-name-version)
+     * @return future completing when the documents are written in to the archive
+     */
+    private static CompletableFuture<Void> exportDocuments(ArchiveSink archive, String uuid,
+                                                           String documentList,
+                                                           TokenManager tokenManager,
+                                                           String apiFolder, String apiId) {
+        if (documentList == null) {
+            return CompletableFuture.completedFuture(null);
+        }
         try {
-            //REST API call to get API thumbnail
-            String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
-                    ImportExportConstants.THUMBNAIL_SEG;
-            client = HttpClientGenerator.getHttpClient();
-            HttpGet request = new HttpGet(url);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT
-                    + accessToken);
-            CloseableHttpResponse response = client.execute(request);
-            HttpEntity entity = response.getEntity();
-            //Converting the response in to inputStream
-            BufferedHttpEntity httpEntity = new BufferedHttpEntity(entity);
-            InputStream imageStream = httpEntity.getContent();
-            byte[] byteArray = IOUtils.toByteArray(imageStream);
-            InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(byteArray));
-            //Getting the mime type of the inputStream
-            String mimeType = URLConnection.guessContentTypeFromStream(inputStream);
-            //Getting file extension
-            String extension = getThumbnailFileType(mimeType);
-            OutputStream outputStream = null;
-            if (extension != null) {
-                //Writing image in to the  exporting folder
+            JSONObject jsonObj = (JSONObject) new JSONParser().parse(documentList);
+            org.json.simple.JSONArray arr = (org.json.simple.JSONArray)
+                    jsonObj.get(ImportExportConstants.DOC_LIST);
+            if (arr.size() > 0) {
                 try {
-                    outputStream = new FileOutputStream(apiFolderPath + File.separator +
-                            ImportExportConstants.IMG_NAME + "." + extension);
-                    IOUtils.copy(httpEntity.getContent(), outputStream);
-                } finally {
-                    IOUtils.closeQuietly(outputStream);
-                    IOUtils.closeQuietly(imageStream);
-                    IOUtils.closeQuietly(inputStream);
+                    return exportAPIDocumentation(archive, uuid, documentList, tokenManager,
+                            apiFolder);
+                } catch (UtilException e) {
+                    log.error("Error occurred while exporting documents of API " + apiId, e);
                 }
             }
-        } catch (IOException e) {
-            log.error("Error occurred while exporting the API thumbnail", e);
-        } catch (UtilException e) {
-            log.error("Error occurred while getting a closableHttpClient while retrieving " +
-                    "thumbnail image", e);
-        } finally {
-            IOUtils.closeQuietly(client);
+        } catch (ParseException e) {
+            log.error("Error occurred while converting document list to json", e);
         }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * A part of the API export which can be run independently of the other parts
+     */
+    private interface ExportTask {
+        void run() throws APIExportException;
+    }
+
+    /**
+     * Run a part of the API export on the I/O executor
+     *
+     * @param task export task
+     * @return future completing when the task is done
+     */
+    private static CompletableFuture<Void> runAsync(final ExportTask task) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } catch (APIExportException e) {
+                throw new CompletionException(e);
+            }
+        }, getIoExecutor());
+    }
+
+    /**
+     * Run a part of the API export on the I/O executor once the given future completes, whether
+     * successfully or not. A part exported with the response of a request holds no thread while
+     * the request is in flight
+     *
+     * @param future future to wait for, such as the response of a request
+     * @param task   export task
+     * @return future completing when the task is done
+     */
+    private static CompletableFuture<Void> runAfter(CompletableFuture<?> future, final ExportTask task) {
+        return future.handle((result, failure) -> null).thenCompose(done -> runAsync(task));
+    }
+
+    /**
+     * Wait until all the export tasks of an API complete. Every task is waited for, even if an
+     * earlier one failed, so nothing is written to the API folder once this returns
+     *
+     * @param exportTasks export tasks of the API
+     * @param apiId       api id of the API(provider-name-version)
+     * @throws APIExportException the first failure of the export tasks, if any
+     */
+    private static void awaitExportTasks(List<CompletableFuture<Void>> exportTasks, String apiId)
+            throws APIExportException {
+        APIExportException failure = null;
+        for (CompletableFuture<Void> task : exportTasks) {
+            try {
+                task.join();
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (failure == null) {
+                    failure = cause instanceof APIExportException ? (APIExportException) cause :
+                            new APIExportException("Error occurred while exporting API " + apiId, cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns the bounded executor used to retrieve the parts of the APIs
+     *
+     * @return I/O executor
+     */
+    private static synchronized ExecutorService getIoExecutor() {
+        if (ioExecutor == null) {
+            ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
+            final AtomicInteger count = new AtomicInteger();
+            ioExecutor = Executors.newFixedThreadPool(ImportExportUtils.getPoolThreads(
+                    config.getIoThreads()), runnable -> {
+                Thread thread = new Thread(runnable, "export-io-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ioExecutor;
+    }
+
+    /**
+     * Add API wsdl to the archive
+     *
+     * @param archive      archive to add the wsdl
+     * @param config       ApiImportExportConfiguration object
+     * @param uuid         API identifier
+     * @param tokenManager token manager with apim:api_view scope
+     * @param apiFolder    folder of the API inside the archive
+     * @return future completing when the wsdl is written in to the archive
+     */
+    private static CompletableFuture<Void> exportApiWsdl(ArchiveSink archive,
+                                                         ApiImportExportConfiguration config,
+                                                         String uuid, TokenManager tokenManager,
+                                                         String apiFolder) {
+        String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
+                ImportExportConstants.WSDL_SEG;
+        HttpGet request = new HttpGet(url);
+        CompletableFuture<CloseableHttpResponse> pendingResponse =
+                HttpCache.getInstance().executeAsync(tokenManager, request);
+        return runAfter(pendingResponse, () -> {
+            InputStream inputStream = null;
+            CloseableHttpResponse response = null;
+            try {
+                response = RequestExecutor.await(pendingResponse);
+                //Extracting the wsdl implementation
+                inputStream = response.getEntity().getContent();
+                //Writing wsdl content to the archive
+                archive.addEntry(entryName(apiFolder, ImportExportConstants.WSDL_FILE_NAME),
+                        inputStream);
+            } catch (UtilException e) {
+                String errorMsg = "Error occurred while getting a http client for exporting wsdl" +
+                        " of API " + uuid;
+                log.error(errorMsg, e);
+                throw new APIExportException(errorMsg, e);
+            } catch (IOException e) {
+                String errorMsg = "Error occurred while retrieving wsdl of the API " + uuid;
+                log.error(errorMsg, e);
+                throw new APIExportException(errorMsg, e);
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+                IOUtils.closeQuietly(response);
+            }
+        });
+    }
+
+    /**
+     * This method get the API thumbnail and write in to the zip file
+     *
+     * @param archive      archive to add the thumbnail
+     * @param uuid         id of the API
+     * @param tokenManager token manager with exporting scopes
+     * @param apiFolder    folder of the API inside the archive
+     * @return future completing when the thumbnail is written in to the archive
+     */
+    private static CompletableFuture<Void> exportAPIThumbnail(ArchiveSink archive, String uuid,
+                                                              TokenManager tokenManager,
+                                                              String apiFolder) {
+        ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
+        //REST API call to get API thumbnail
+        String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
+                ImportExportConstants.THUMBNAIL_SEG;
+        HttpGet request = new HttpGet(url);
+        CompletableFuture<CloseableHttpResponse> pendingResponse =
+                HttpCache.getInstance().executeAsync(tokenManager, request);
+        return runAfter(pendingResponse, () -> {
+            CloseableHttpResponse response = null;
+            InputStream inputStream = null;
+            try {
+                response = RequestExecutor.await(pendingResponse);
+                //Peeking at the first bytes of the image, the rest of it is read past the small
+                //buffer as it is written in to the archive
+                inputStream = new BufferedInputStream(response.getEntity().getContent(),
+                        ImportExportConstants.IMG_TYPE_PEEK_SIZE);
+                //Getting the mime type of the inputStream
+                String mimeType = URLConnection.guessContentTypeFromStream(inputStream);
+                //Getting file extension
+                String extension = getThumbnailFileType(mimeType);
+                if (extension != null) {
+                    //Writing image in to the archive
+                    archive.addEntry(entryName(apiFolder, ImportExportConstants.IMG_NAME + "." +
+                            extension), inputStream);
+                }
+            } catch (IOException e) {
+                log.error("Error occurred while exporting the API thumbnail", e);
+            } catch (UtilException e) {
+                log.error("Error occurred while getting a closableHttpClient while retrieving " +
+                        "thumbnail image", e);
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+                IOUtils.closeQuietly(response);
+            }
+        });
     }
 
     /**
@@ -450,66 +877,69 @@ class APIExporter {
     /**
      * Retrieve list of documents of an API
      *
-     * @param accessToken access token with importing scope
+     * @param tokenManager token manager with importing scope
      * @param uuid        uuid of the API
-     * @return String output of documentation summary or null
+     * @return future String output of documentation summary or null
      */
-    private static String getAPIDocumentList(String accessToken, String uuid) {
+    private static CompletableFuture<String> getAPIDocumentList(TokenManager tokenManager,
+                                                                String uuid) {
         ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
-        try {
-            //REST API call to Get API Document list
-            String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
-                    ImportExportConstants.DOCUMENT_SEG;
-            CloseableHttpClient client = HttpClientGenerator.getHttpClient();
-            HttpGet request = new HttpGet(url);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT
-                    + accessToken);
-            CloseableHttpResponse response = client.execute(request);
-            HttpEntity entity = response.getEntity();
-            return EntityUtils.toString(entity, ImportExportConstants.CHARSET);
-        } catch (IOException e) {
-            log.error("Error occurred while getting API document list", e);
-        } catch (UtilException e) {
-            log.error("Error occurred while getting closableHttpClient for getting API document" +
-                    " list", e);
-        }
-        return null;
+        //REST API call to Get API Document list
+        String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
+                ImportExportConstants.DOCUMENT_SEG;
+        HttpGet request = new HttpGet(url);
+        CompletableFuture<CloseableHttpResponse> pendingResponse = tokenManager.executeAsync(request);
+        return pendingResponse.handle((result, failure) -> null).thenApplyAsync(done -> {
+            CloseableHttpResponse response = null;
+            try {
+                response = RequestExecutor.await(pendingResponse);
+                HttpEntity entity = response.getEntity();
+                return EntityUtils.toString(entity, ImportExportConstants.CHARSET);
+            } catch (IOException e) {
+                log.error("Error occurred while getting API document list", e);
+            } catch (UtilException e) {
+                log.error("Error occurred while getting closableHttpClient for getting API " +
+                        "document list", e);
+            } finally {
+                IOUtils.closeQuietly(response);
+            }
+            return null;
+        }, getIoExecutor());
     }
 
     /**
      * Write API documents in to the zip file
      *
+     * @param archive      archive to add the documents
      * @param uuid         APIId
      * @param documentList resultant string from the getAPIDocuments
-     * @param accessToken  token with scope apim:api_view
+     * @param tokenManager token manager with scope apim:api_view
+     * @param apiFolder    folder of the API inside the archive
+     * @return future completing when the content of the documents is written in to the archive
      */
-    private static void exportAPIDocumentation(String uuid, String documentList, String accessToken,
-                                               String archivePath) throws APIExportException, UtilException {
-        OutputStream outputStream = null;
+    private static CompletableFuture<Void> exportAPIDocumentation(ArchiveSink archive, String uuid,
+                                                                  String documentList,
+                                                                  TokenManager tokenManager,
+                                                                  String apiFolder)
+            throws UtilException {
         ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
-        //Create directory to hold API documents
-        String documentFolderPath = archivePath.concat(File.separator +
-                ImportExportConstants.DOCUMENT_DIRECTORY);
-        ImportExportUtils.createDirectory(documentFolderPath);
+        //Folder of the archive to hold API documents
+        String documentFolder = entryName(apiFolder, ImportExportConstants.DOCUMENT_DIRECTORY);
 
-        //Writing API document list to exporting folder
+        //Writing API document list to the archive
+        String formattedJson = formatDocumentList(documentList);
         try {
-            Object json = mapper.readValue(documentList, Object.class);
-            //Format the document list string and write in to the directory
-            String formattedJson = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(json);
-            writeFile(documentFolderPath + File.separator + ImportExportConstants.DOC_JSON,
+            writeEntry(archive, entryName(documentFolder, ImportExportConstants.DOC_JSON),
                     formattedJson);
         } catch (IOException e) {
-            String errorMsg = "Error occurred while formatting the document list response string";
-            //If formatting failed, writing unformatted string on to the zip
-            writeFile(documentFolderPath + File.separator + ImportExportConstants.DOC_JSON,
-                    documentList);
-            log.warn(errorMsg, e);
+            String errorMsg = "Error occurred while writing the document list to the archive";
+            log.error(errorMsg, e);
+            throw new UtilException(errorMsg, e);
         }
         //Convert document list to json object
         JSONObject jsonObj;
         try {
-            jsonObj = (JSONObject) parser.parse(documentList);
+            jsonObj = (JSONObject) new JSONParser().parse(documentList);
         } catch (ParseException e) {
             String errorMsg = "Error occurred while parsing document list json string to " +
                     "json object,cannot export the API documents";
@@ -519,6 +949,8 @@ class APIExporter {
         //Get all the available documents in to a array
         org.json.simple.JSONArray arr = (org.json.simple.JSONArray)
                 jsonObj.get(ImportExportConstants.DOC_LIST);
+        //The content of all the documents is requested at once
+        List<CompletableFuture<Void>> documentTasks = new ArrayList<>();
         // Traverse through each document
         for (Object anArr : arr) {
             JSONObject document = (JSONObject) anArr;
@@ -532,248 +964,250 @@ class APIExporter {
                 String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
                         ImportExportConstants.DOCUMENT_SEG + ImportExportConstants.URL_SEPARATOR +
                         documentId + ImportExportConstants.CONTENT_SEG;
-                CloseableHttpClient client = HttpClientGenerator.getHttpClient();
                 HttpGet request = new HttpGet(url);
-                request.setHeader(HttpHeaders.AUTHORIZATION,
-                        ImportExportConstants.CONSUMER_KEY_SEGMENT + accessToken);
-                HttpResponse response;
-                try {
-                    response = client.execute(request);
-                } catch (IOException e) {
-                    log.error("Error occurred while exporting document " + documentName, e);
-                    //If throws exception,continue with the next document
-                    continue;
-                }
-                HttpEntity entity = response.getEntity();
-                //Adding FILE type content to zip
-                if (ImportExportConstants.FILE_DOC_TYPE.equalsIgnoreCase(sourceType)) {
-                    //Creating directory to hold FILE type content
-                    String fileTypeFolderPath = documentFolderPath.concat
-                            (File.separator + ImportExportConstants.FILE_DOCUMENT_DIRECTORY);
-                    try {
-                        ImportExportUtils.createDirectory(fileTypeFolderPath);
-                    } catch (UtilException e) {
-                        log.error("Error occurred while creating a directory to hold FILE " +
-                                "type document content", e);
-                        //If throws exception,continue with the next document
-                        continue;
-                    }
-                    //Writing file type content in to the exporting folder
-                    String localFilePath = fileTypeFolderPath + File.separator + document.get
-                            (ImportExportConstants.DOC_NAME);
-                    try {
-                        outputStream = new FileOutputStream(localFilePath);
-                        entity.writeTo(outputStream);
-                    } catch (FileNotFoundException e) {
-                        log.error("File to write the content of the document " + documentName +
-                                " not found", e);
-                    } catch (IOException e) {
-                        log.error("Error occurred while writing the content of file type document "
-                                + documentName + " to the folder", e);
-                    } finally {
-                        IOUtils.closeQuietly(outputStream);
-                    }
-                } else {
-                    //Create directory to hold inline contents
-                    String inlineFolderPath = documentFolderPath.concat(File.separator +
-                            ImportExportConstants.INLINE_DOCUMENT_DIRECTORY);
+                //FILE type and inline contents are kept in separate folders
+                String contentFolder = ImportExportConstants.FILE_DOC_TYPE.equalsIgnoreCase(sourceType) ?
+                        ImportExportConstants.FILE_DOCUMENT_DIRECTORY :
+                        ImportExportConstants.INLINE_DOCUMENT_DIRECTORY;
+                CompletableFuture<CloseableHttpResponse> pendingResponse =
+                        HttpCache.getInstance().executeAsync(tokenManager, request);
+                documentTasks.add(runAfter(pendingResponse, () -> {
+                    CloseableHttpResponse response;
                     try {
-                        ImportExportUtils.createDirectory(inlineFolderPath);
-                    } catch (UtilException e) {
-                        log.error("Error occurred while creating a directory to hold inline " +
-                                "document content of the API ", e);
+                        response = RequestExecutor.await(pendingResponse);
+                    } catch (IOException | UtilException e) {
+                        //If failed, continuing with the other documents
+                        log.error("Error occurred while exporting document " + documentName, e);
+                        return;
                     }
-                    //Writing inline content in to the zip folder
+                    //Writing the document content in to the archive
+                    InputStream inputStream = null;
                     try {
-                        String localFilePath = inlineFolderPath + File.separator +
-                                document.get(ImportExportConstants.DOC_NAME);
-                        outputStream = new FileOutputStream(localFilePath);
-                        entity.writeTo(outputStream);
+                        inputStream = response.getEntity().getContent();
+                        archive.addEntry(entryName(documentFolder, contentFolder, documentName),
+                                inputStream);
                     } catch (IOException e) {
-                        log.error("Error occurred while writing content of inline document" +
-                                documentName + " to the zip", e);
+                        log.error("Error occurred while writing the content of " + sourceType +
+                                " type document " + documentName + " to the archive", e);
                     } finally {
-                        IOUtils.closeQuietly(outputStream);
+                        IOUtils.closeQuietly(inputStream);
+                        IOUtils.closeQuietly(response);
                     }
-                }
-
+                }));
             }
         }
+        return CompletableFuture.allOf(documentTasks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Format the document list of an API to be written in to the archive
+     *
+     * @param documentList document list of the API
+     * @return pretty printed document list, or the given list if it cannot be formatted
+     */
+    private static String formatDocumentList(String documentList) {
+        try {
+            Object json = mapper.readValue(documentList, Object.class);
+            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(json);
+        } catch (IOException e) {
+            String errorMsg = "Error occurred while formatting the document list response string";
+            //If formatting failed, writing unformatted string on to the zip
+            log.warn(errorMsg, e);
+            return documentList;
+        }
     }
 
     /**
      * Method will retrieve the swagger definition of API specified by the uuid using
      * corresponding REST API
      *
-     * @param uuid       api identifier
-     * @param token      access token with exporting scopes
-     * @param folderPath path to the exporting folder
-     * @throws APIExportException If failed to get the swagger definition of the API
+     * @param archive        archive to add the swagger definition
+     * @param uuid           api identifier
+     * @param tokenManager   token manager with exporting scopes
+     * @param metaInfoFolder meta-information folder of the API inside the archive
+     * @return future completing when the swagger definition is written in to the archive, or
+     * failing with APIExportException if failed to get the swagger definition of the API
      */
-    private static void addSwagger(String uuid, String token, String folderPath)
-            throws APIExportException {
+    private static CompletableFuture<Void> addSwagger(ArchiveSink archive, String uuid,
+                                                      TokenManager tokenManager,
+                                                      String metaInfoFolder) {
         ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
         String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid
                 + ImportExportConstants.SWAGGER_SEG;
         HttpGet request = new HttpGet(url);
-        CloseableHttpClient client = null;
-        try {
-            client = HttpClientGenerator.getHttpClient();
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT +
-                    token);
-            CloseableHttpResponse response = client.execute(request);
-            HttpEntity entity = response.getEntity();
-            String unformattedResponse = EntityUtils.toString(entity);
-            //Format the returned swagger definition and write in to the folder to be exported
-            writeFile(folderPath + File.separator + ImportExportConstants.SWAGGER_JSON,
-                    ImportExportUtils.formatJsonString(unformattedResponse));
-        } catch (IOException e) {
-            String errorMsg = "Error occurred while retrieving swagger definition of API " + uuid;
-            log.error(errorMsg, e);
-            throw new APIExportException(errorMsg, e);
-        } catch (UtilException e) {
-            String errorMsg = "Error occurred while getting a closableHttpClient for exporting " +
-                    "swagger";
-            log.error(errorMsg, e);
-            throw new APIExportException(errorMsg, e);
-        } finally {
-            IOUtils.closeQuietly(client);
-        }
+        //Requested conditionally, the definition of an unchanged API is served from the http cache
+        CompletableFuture<CloseableHttpResponse> pendingResponse =
+                HttpCache.getInstance().executeAsync(tokenManager, request);
+        return runAfter(pendingResponse, () -> {
+            CloseableHttpResponse response = null;
+            InputStream swagger = null;
+            try {
+                response = RequestExecutor.await(pendingResponse);
+                //Format the returned swagger definition while streaming it in to the archive
+                swagger = new PrettyPrintingInputStream(response.getEntity().getContent());
+                archive.addEntry(entryName(metaInfoFolder, ImportExportConstants.SWAGGER_JSON),
+                        swagger);
+            } catch (IOException e) {
+                String errorMsg = "Error occurred while retrieving swagger definition of API " + uuid;
+                log.error(errorMsg, e);
+                throw new APIExportException(errorMsg, e);
+            } catch (UtilException e) {
+                String errorMsg = "Error occurred while getting a closableHttpClient for exporting " +
+                        "swagger";
+                log.error(errorMsg, e);
+                throw new APIExportException(errorMsg, e);
+            } finally {
+                IOUtils.closeQuietly(swagger);
+                IOUtils.closeQuietly(response);
+            }
+        });
     }
 
     /**
-     * Save API specific mediation policies inside specific API Folder inside exporting folder
+     * Save API specific mediation policies inside the API folder of the archive
      *
+     * @param archive      archive to add the mediation policy
      * @param config       ApiImportExportConfiguration object
      * @param uuid         API identifier
-     * @param accessToken  access token with exporting scopes
+     * @param tokenManager token manager with exporting scopes
      * @param mediationObj json object correspond to the mediation policy
-     * @param apiFolder    API Folder location inside exporting folder
+     * @param apiFolder    folder of the API inside the archive
+     * @return future completing when the mediation policy is written in to the archive
      */
-    private static void exportApiSpecificMediationPolicies(ApiImportExportConfiguration config,
-                                                           String uuid, String accessToken,
-                                                           JSONObject mediationObj,
-                                                           String apiFolder) throws UtilException {
+    private static CompletableFuture<Void> exportApiSpecificMediationPolicies(
+            ArchiveSink archive, ApiImportExportConfiguration config, String uuid,
+            TokenManager tokenManager, Map<String, Object> mediationObj, String apiFolder) {
         String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
                 ImportExportConstants.MEDIATION_SEG + ImportExportConstants.URL_SEPARATOR +
                 mediationObj.get(ImportExportConstants.UUID);
-        CloseableHttpClient client = null;
-        try {
-            client = HttpClientGenerator.getHttpClient();
-            HttpGet request = new HttpGet(url);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT
-                    + accessToken);
-            CloseableHttpResponse response = client.execute(request);
-            HttpEntity entity = response.getEntity();
-            String mediationPolicy = EntityUtils.toString(entity);
-            //Extracting config from the mediation policy
-            String content = ImportExportUtils.readJsonValues(mediationPolicy,
-                    ImportExportConstants.CONFIG_ELEM);
-            String mediationPoliciesFolder = apiFolder.concat(File.separator +
-                    ImportExportConstants.MEDIATION_FOLDER);
-            Path mediationFolderPath = Paths.get(mediationPoliciesFolder);
-            if (!Files.exists(mediationFolderPath)) {
-                ImportExportUtils.createDirectory(mediationPoliciesFolder);
+        HttpGet request = new HttpGet(url);
+        CompletableFuture<CloseableHttpResponse> pendingResponse = tokenManager.executeAsync(request);
+        return runAfter(pendingResponse, () -> {
+            CloseableHttpResponse response = null;
+            try {
+                response = RequestExecutor.await(pendingResponse);
+                HttpEntity entity = response.getEntity();
+                String mediationPolicy = EntityUtils.toString(entity);
+                //Extracting config from the mediation policy
+                String content = ImportExportUtils.readJsonValues(mediationPolicy,
+                        ImportExportConstants.CONFIG_ELEM);
+                String mediationDirection = (String) mediationObj.get(ImportExportConstants.TYPE_ELEM);
+                //Writing the mediation policy config in to the archive
+                writeEntry(archive, entryName(apiFolder, ImportExportConstants.MEDIATION_FOLDER,
+                        mediationDirection, (String) mediationObj.get(ImportExportConstants.NAME_ELEM)),
+                        content);
+            } catch (IOException e) {
+                log.error("Error occurred while getting API specific mediation policies of API " +
+                        uuid, e);
+            } catch (UtilException e) {
+                log.error("Error occurred while writing mediation policies in to the exporting " +
+                        "folder", e);
+            } finally {
+                IOUtils.closeQuietly(response);
             }
-            String mediationDirection = (String) mediationObj.get(ImportExportConstants.TYPE_ELEM);
-            String directionFolder = mediationPoliciesFolder.concat(File.separator + mediationDirection);
-            Path directionFolderPath = Paths.get(directionFolder);
-            if (!Files.exists(directionFolderPath)) {
-                ImportExportUtils.createDirectory(directionFolder);
-            }
-            //Writing the mediation policy config in to the exporting folder
-            writeFile(directionFolder + File.separator +
-                    mediationObj.get(ImportExportConstants.NAME_ELEM), content);
-        } catch (IOException e) {
-            log.error("Error occurred while getting API specific mediation policies of API " + uuid, e);
-        } finally {
-            IOUtils.closeQuietly(client);
+        });
+    }
+
+    /**
+     * Add Global mediation policies to the archive. Each policy is retrieved once per run, however
+     * many APIs refer it, and APIs exported concurrently wait for the same retrieval
+     *
+     * @param archive      archive to add the mediation policy
+     * @param config       ApiImportExportConfiguration object
+     * @param tokenManager token manager with scope api_view
+     * @param mediationObj json object correspond to the mediation policy
+     * @return future completing when the mediation policy is written in to the archive
+     */
+    private static CompletableFuture<Void> exportGlobalMediationPolicies(
+            ArchiveSink archive, ApiImportExportConfiguration config, TokenManager tokenManager,
+            Map<String, Object> mediationObj) {
+        Object mediationUuid = mediationObj.get(ImportExportConstants.UUID);
+        CompletableFuture<String> policy = new CompletableFuture<>();
+        CompletableFuture<String> existing = globalMediationPolicies.putIfAbsent(mediationUuid, policy);
+        if (existing == null) {
+            //First API referring the policy in this run, retrieving it
+            getGlobalMediationPolicy(config, tokenManager, mediationUuid).whenComplete((content, e) -> {
+                if (e != null) {
+                    //Letting an API exported later retry the policy
+                    globalMediationPolicies.remove(mediationUuid, policy);
+                    policy.completeExceptionally(e);
+                } else {
+                    policy.complete(content);
+                }
+            });
         }
+        final CompletableFuture<String> retrieval = existing == null ? policy : existing;
+        return runAfter(retrieval, () -> {
+            String content;
+            try {
+                content = retrieval.join();
+            } catch (CompletionException e) {
+                log.error("Error occurred while retrieving global mediation policy " +
+                        mediationObj.get(ImportExportConstants.NAME_ELEM), e.getCause());
+                return;
+            }
+            String mediationDirection = (String) mediationObj.get(ImportExportConstants.TYPE_ELEM);
+            try {
+                //Writing the content of mediation policy config in to the archive, global mediation
+                //policies are kept in a folder of the archive root shared by all the APIs, which
+                //writes the policy once
+                writeEntry(archive, entryName(ImportExportConstants.MEDIATION_FOLDER,
+                        mediationDirection, (String) mediationObj.get(ImportExportConstants.NAME_ELEM)),
+                        content);
+            } catch (IOException e) {
+                log.error("Error occurred while writing global mediation policy " +
+                        mediationObj.get(ImportExportConstants.NAME_ELEM) + " to the archive", e);
+            }
+        });
     }
 
     /**
-     * Add Global mediation policies to the exporting folder
+     * Retrieve the config of a global mediation policy from the registry
      *
-     * @param config              ApiImportExportConfiguration object
-     * @param accessToken         access token with scope api_view
-     * @param mediationObj        json object correspond to the mediation policy
-     * @param destinationLocation path to the exporting folder
+     * @param config        ApiImportExportConfiguration object
+     * @param tokenManager  token manager with scope api_view
+     * @param mediationUuid uuid of the mediation policy
+     * @return future config of the mediation policy, failing with UtilException if not retrieved
      */
-    private static void exportGlobalMediationPolicies(ApiImportExportConfiguration config,
-                                                      String accessToken, JSONObject mediationObj,
-                                                      String destinationLocation) throws UtilException {
+    private static CompletableFuture<String> getGlobalMediationPolicy(
+            ApiImportExportConfiguration config, TokenManager tokenManager, Object mediationUuid) {
         String url = config.getPublisherUrl() + ImportExportConstants.MEDIATION_SEG +
-                ImportExportConstants.URL_SEPARATOR + mediationObj.get(ImportExportConstants.UUID);
-        CloseableHttpClient client = null;
-        try {
-            client = HttpClientGenerator.getHttpClient();
-            HttpGet request = new HttpGet(url);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT
-                    + accessToken);
-            CloseableHttpResponse response = client.execute(request);
-            HttpEntity entity = response.getEntity();
-            String mediationPolicy = EntityUtils.toString(entity);
-            //Getting config details of the mediation policy
-            String content = ImportExportUtils.readJsonValues(mediationPolicy,
-                    ImportExportConstants.CONFIG_ELEM);
-            String mediationPoliciesFolder = destinationLocation.concat(File.separator +
-                    ImportExportConstants.MEDIATION_FOLDER);
-            Path folderPath = Paths.get(mediationPoliciesFolder);
-            //Create folder for global mediation policies if not exists.
-            if (!Files.exists(folderPath)) {
-                ImportExportUtils.createDirectory(mediationPoliciesFolder);
+                ImportExportConstants.URL_SEPARATOR + mediationUuid;
+        HttpGet request = new HttpGet(url);
+        CompletableFuture<CloseableHttpResponse> pendingResponse = tokenManager.executeAsync(request);
+        return pendingResponse.handle((result, failure) -> null).thenApplyAsync(done -> {
+            CloseableHttpResponse response = null;
+            try {
+                response = RequestExecutor.await(pendingResponse);
+                HttpEntity entity = response.getEntity();
+                String mediationPolicy = EntityUtils.toString(entity);
+                //Getting config details of the mediation policy
+                return ImportExportUtils.readJsonValues(mediationPolicy,
+                        ImportExportConstants.CONFIG_ELEM);
+            } catch (IOException e) {
+                String errorMsg = "Error occurred while retrieving global mediation policies from " +
+                        "the registry";
+                log.error(errorMsg, e);
+                throw new CompletionException(new UtilException(errorMsg, e));
+            } catch (UtilException e) {
+                throw new CompletionException(e);
+            } finally {
+                IOUtils.closeQuietly(response);
             }
-            String mediationDirection = (String) mediationObj.get(ImportExportConstants.TYPE_ELEM);
-            String directionFolder = mediationPoliciesFolder.concat(File.separator + mediationDirection);
-            Path directionFolderPath = Paths.get(directionFolder);
-            //Create folder for specific mediation types (in/out/fault) if not exists
-            if (!Files.exists(directionFolderPath)) {
-                ImportExportUtils.createDirectory(directionFolder);
-            }
-            //Writing the content of mediation policy config in to the exporting folder
-            writeFile(directionFolder + File.separator +
-                    mediationObj.get(ImportExportConstants.NAME_ELEM), content);
-        } catch (IOException e) {
-            String errorMsg = "Error occurred while retrieving global mediation policies from " +
-                    "the registry";
-            log.error(errorMsg, e);
-            throw new UtilException(errorMsg, e);
-        } finally {
-            IOUtils.closeQuietly(client);
-        }
+        }, getIoExecutor());
     }
 
 
     /**
-     * Write the given content to file specified in path
+     * Write the given content as an entry of the archive
      *
-     * @param path    Location of the file
+     * @param archive archive to add the entry
+     * @param name    name of the entry
      * @param content Content to be written
      */
-    private static void writeFile(String path, String content) throws UtilException {
-
-        FileOutputStream fileStream = null;
-        OutputStreamWriter writer = null;
-        try {
-            fileStream = new FileOutputStream(new File(path));
-            writer = new OutputStreamWriter(fileStream, ImportExportConstants.CHARSET);
-            IOUtils.copy(new StringReader(content), writer);
-        } catch (FileNotFoundException e) {
-            String errorMsg = "File to be write not found";
-            log.error(errorMsg, e);
-            throw new UtilException(errorMsg, e);
-        } catch (UnsupportedEncodingException e) {
-            String errorMsg = "Error occurred while writing details to the file";
-            log.error(errorMsg, e);
-            throw new UtilException(errorMsg, e);
-        } catch (IOException e) {
-            String errorMsg = "Error occurred while coping details to the file";
-            log.error(errorMsg, e);
-            throw new UtilException(errorMsg, e);
-        } finally {
-            IOUtils.closeQuietly(writer);
-            IOUtils.closeQuietly(fileStream);
-        }
+    private static void writeEntry(ArchiveSink archive, String name, String content)
+            throws IOException {
+        archive.addEntry(name, content.getBytes(ImportExportConstants.CHARSET));
     }
 
     /**
@@ -804,42 +1238,103 @@ class APIExporter {
     }
 
     /**
-     * Creating archive of the directory specified by the folder path
+     * Open the journal of a bulk export, identified by the publisher and the list of APIs. If
+     * the journal cannot be used, the export continues without being resumable
      *
-     * @param folderPath file to archive
+     * @param config  ApiImportExportConfiguration type object
+     * @param csvFile path to the csv file
+     * @return journal next to the archive, or null if unable to open it
      */
-    private static void createArchive(String folderPath) {
-        File file = new File(folderPath);
-        //Check if the directory is empty
-        if (file.list().length > 0) {
-            ArchiveGeneratorUtil.archiveDirectory(folderPath);
-            //Check if the zip file created successfully
-            if (new File(folderPath.concat(ImportExportConstants.ZIP_EXTENSION)).exists()) {
-                System.out.println("API exported successfully");
-            } else {
-                System.out.println("API exporting unsuccessful");
-            }
+    private static ExportJournal openJournal(ApiImportExportConfiguration config, String csvFile) {
+        File journalFile = new File(getDestinationFolder(config) + ImportExportConstants.ZIP_EXTENSION +
+                ImportExportConstants.JOURNAL_EXTENSION);
+        try {
+            ImportExportUtils.createDirectory(journalFile.getAbsoluteFile().getParent());
+            String jobId = DigestUtils.sha256Hex(config.getPublisherUrl() + "\n" +
+                    FileUtils.readFileToString(new File(csvFile), ImportExportConstants.CHARSET));
+            return ExportJournal.open(journalFile, jobId);
+        } catch (UtilException | IOException e) {
+            log.warn("Unable to journal the export in " + journalFile + ", an interrupted export " +
+                    "will not be resumable", e);
+            return null;
         }
     }
 
     /**
-     * Set the value been sent to the corresponding json element specified by key
+     * Open the archive to export the APIs in to. If the journal has APIs exported by an
+     * interrupted run, the archive continues after them
      *
-     * @param responseString string to be replace
-     * @param key            key
-     * @param value          new value to be set
+     * @param config  ApiImportExportConfiguration type object
+     * @param journal journal of the export, or null
+     * @return archive at the destination location
+     * @throws APIExportException If unable to create the archive
      */
-    private static String setJsonValues(String responseString, String key, String value) {
+    private static ZipArchiveSink openArchive(ApiImportExportConfiguration config,
+                                              ExportJournal journal) throws APIExportException {
+        File archiveFile = new File(getDestinationFolder(config) + ImportExportConstants.ZIP_EXTENSION);
+        CompressionPolicy compressionPolicy = new CompressionPolicy(config.getCompressionLevel());
         try {
-            JSONObject json = (JSONObject) parser.parse(responseString);
-            //Check the availability of the key
-            if (json.containsKey(key)) {
-                json.put(key, value);
-                return json.toString();
+            ImportExportUtils.createDirectory(archiveFile.getAbsoluteFile().getParent());
+            if (journal != null && journal.getArchiveLength() > 0) {
+                try {
+                    return new ZipArchiveSink(archiveFile, config.getCompressionThreads(),
+                            compressionPolicy, journal);
+                } catch (IOException e) {
+                    log.warn("Unable to resume the archive " + archiveFile + ", exporting all the " +
+                            "APIs again", e);
+                    journal.reset();
+                }
             }
-        } catch (ParseException e) {
-            log.error("error occurred modifying json string ", e);
+            return new ZipArchiveSink(archiveFile, config.getCompressionThreads(), compressionPolicy,
+                    journal);
+        } catch (UtilException | IOException e) {
+            IOUtils.closeQuietly(journal);
+            String errorMsg = "Error occurred while creating the archive " + archiveFile;
+            log.error(errorMsg, e);
+            throw new APIExportException(errorMsg, e);
+        }
+    }
+
+    /**
+     * Open the archive of a previous export given as the baseline, to copy the unchanged APIs
+     * from. If the baseline cannot be read, all the APIs are exported in full
+     *
+     * @param config ApiImportExportConfiguration type object
+     * @return baseline archive, or null if no usable baseline is given
+     */
+    private static BaselineArchive openBaseline(ApiImportExportConfiguration config) {
+        if (StringUtils.isBlank(config.getBaselineArchive())) {
+            return null;
+        }
+        try {
+            return BaselineArchive.open(new File(config.getBaselineArchive()));
+        } catch (IOException e) {
+            log.warn("Unable to use " + config.getBaselineArchive() + " as the baseline archive, " +
+                    "exporting all the APIs in full", e);
+            return null;
+        }
+    }
+
+    /**
+     * Finish the archive with the manifest of the exported APIs, if any API was exported in to it
+     *
+     * @param archive  archive of the exported APIs
+     * @param manifest manifest of the exported APIs
+     */
+    private static void closeArchive(ZipArchiveSink archive, ExportManifest manifest) {
+        //Check if the archive is empty
+        if (archive.getEntryCount() == 0) {
+            archive.abort();
+            System.out.println("API exporting unsuccessful");
+            return;
+        }
+        try {
+            archive.addEntry(ImportExportConstants.MANIFEST_FILE, manifest.toJson());
+            archive.close();
+            System.out.println("API exported successfully");
+        } catch (IOException e) {
+            log.error("Error occurred while writing the archive", e);
+            System.out.println("API exporting unsuccessful");
         }
-        return responseString;
     }
 }
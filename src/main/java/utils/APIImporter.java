@@ -18,14 +18,14 @@
 package utils;
 
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
@@ -34,26 +34,38 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static utils.ImportExportUtils.entryName;
 
 /**
  * This class handles all the activities related to API import
@@ -61,6 +73,21 @@ import java.util.zip.ZipInputStream;
 class APIImporter {
     private static final Log log = LogFactory.getLog(APIImporter.class);
     private static ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
+    //Global mediation policies created in the current run, by type and name
+    private static final Set<String> importedGlobalPolicies = ConcurrentHashMap.newKeySet();
+    //Existing global mediation policies of the publisher, listed once per run
+    private static MediationPolicyIndex globalMediationIndex;
+    //Existing APIs of the publisher, listed once per run
+    private static ApiCatalog apiCatalog;
+    //Steps of the import already done, by this run or an interrupted run of the same import
+    private static ImportJournal importJournal = ImportJournal.inMemory();
+
+    /**
+     * Outcome of importing an API
+     */
+    enum ImportStatus {
+        CREATED, UPDATED, SKIPPED, FAILED
+    }
 
     /**
      * This method handle importing of APIs
@@ -72,286 +99,577 @@ class APIImporter {
     static void importAPIs(String zipFileLocation, String consumerCredentials) throws
             APIImportException, UtilException {
         //Obtaining access tokens
-        String token = ImportExportUtils.getAccessToken
-                (ImportExportConstants.IMPORT_SCOPE, consumerCredentials);
-        //Create temporary directory withing user's current directory to extract the content from
-        // imported folder
-        String currentDirectory = System.getProperty(ImportExportConstants.USER_DIR);
-        //Name the temporary directory with random name
-        String tempDirectoryName = RandomStringUtils.randomAlphanumeric
-                (ImportExportConstants.TEMP_FILENAME_LENGTH);
-        String temporaryDirectory = currentDirectory + File.separator + tempDirectoryName;
-        ImportExportUtils.createDirectory(temporaryDirectory);
-        //unzipping the imported zip folder
-        unzipFolder(zipFileLocation, temporaryDirectory);
+        TokenManager tokenManager = new TokenManager(ImportExportConstants.IMPORT_SCOPE,
+                consumerCredentials);
+        //Reading the API folders directly from the imported zip file, without extracting it
+        ZipArchiveSource archive = openArchive(zipFileLocation);
+        importJournal = openJournal(zipFileLocation);
         try {
-            //Get the list of API folders inside the created temporary folder
-            File[] files = new File(temporaryDirectory).listFiles();
-            if (files != null) {
-                //Publishing each api in imported folder
-                for (File file : files) {
-                    if (!file.getName().equalsIgnoreCase(ImportExportConstants.MEDIATION_FOLDER)) {
-                        //Get all API folder except global mediation policy folder
-                        String pathToApiDirectory = temporaryDirectory + File.separator + file.getName();
-                        createAPI(pathToApiDirectory, token);
-                    }
+            //Get the list of API folders inside the archive, except the global mediation policy
+            //folder
+            List<String> apiFolders = new ArrayList<>();
+            for (String folder : archive.listFolders("")) {
+                if (!folder.equalsIgnoreCase(ImportExportConstants.MEDIATION_FOLDER)) {
+                    apiFolders.add(folder);
                 }
             }
-            //Delete the temporary directory after importing all the contained APIs
-            FileUtils.deleteDirectory(new File(temporaryDirectory));
-        } catch (IOException e) {
-            log.warn("Error occurred while deleting temporary directory", e);
+            if (importJournal.getCompletedApis() > 0) {
+                System.out.println("Resuming the interrupted import, " +
+                        importJournal.getCompletedApis() + " of " + apiFolders.size() +
+                        " APIs already imported");
+            }
+            //Global mediation policies are shared between APIs, hence creating them once before
+            //importing the APIs which refer them
+            importedGlobalPolicies.clear();
+            globalMediationIndex = getGlobalMediationIndex(archive, tokenManager);
+            addSharedMediationPolicies(archive, apiFolders, tokenManager);
+
+            //Publishing each api in imported archive, routing the APIs already existing straight to
+            //update
+            apiCatalog = getApiCatalog(tokenManager);
+            Map<String, ImportStatus> results = importApiFolders(archive, apiFolders, tokenManager);
+            printImportSummary(results);
+            if (importJournal.getCompletedApis() == apiFolders.size()) {
+                importJournal.delete();
+            } else {
+                //Keeping the journal, so running the import again retries only the incomplete steps
+                System.out.println("Some APIs were not imported completely, run the import again " +
+                        "to retry their incomplete steps");
+            }
+        } finally {
+            IOUtils.closeQuietly(importJournal);
+            IOUtils.closeQuietly(archive);
         }
     }
 
     /**
-     * This method unzip the imported folder in to folder specified as outputFolder
+     * Open the journal of importing the given archive in to the configured publisher. If the
+     * journal cannot be used, the import continues without being resumable
      *
-     * @param zipFile      zip file path
-     * @param outputFolder folder to copy the zip content
-     * @throws APIImportException if failed to unzip the folder content
+     * @param zipFile imported zip file
+     * @return journal next to the imported archive
      */
-    private static void unzipFolder(String zipFile, String outputFolder) throws APIImportException {
-
-        byte[] buffer = new byte[ImportExportConstants.defaultBufferSize];
-
-        //Create output directory if not exists
-        File folder = new File(outputFolder);
-        if (!folder.exists()) {
-            folder.mkdir();
+    private static ImportJournal openJournal(String zipFile) {
+        File archiveFile = new File(zipFile);
+        File journalFile = new File(zipFile + ImportExportConstants.IMPORT_JOURNAL_EXTENSION);
+        try {
+            //A changed archive, publisher or update mode is a different import
+            String jobId = DigestUtils.sha256Hex(config.getPublisherUrl() + "\n" +
+                    config.getUpdateApi() + "\n" + archiveFile.getCanonicalPath() + "\n" +
+                    archiveFile.length() + "\n" + archiveFile.lastModified());
+            return ImportJournal.open(journalFile, jobId);
+        } catch (IOException e) {
+            log.warn("Unable to journal the import in " + journalFile + ", an interrupted import " +
+                    "will not be resumable", e);
+            return ImportJournal.inMemory();
         }
-        //Get the zip file content
-        ////TODO close input streams
-        ZipInputStream zis;
+    }
+
+    /**
+     * List the existing APIs of the publisher
+     *
+     * @param tokenManager token manager with importing scopes
+     * @return catalog of the existing APIs
+     */
+    private static ApiCatalog getApiCatalog(TokenManager tokenManager) {
         try {
-            zis = new ZipInputStream(new FileInputStream(zipFile));
-        } catch (FileNotFoundException e) {
-            String errorMsg = "cannot find the zip file to unzip";
-            log.error(errorMsg, e);
-            throw new APIImportException(errorMsg, e);
+            return ApiCatalog.load(config.getPublisherUrl() + ImportExportConstants.APIS_URL,
+                    tokenManager);
+        } catch (UtilException e) {
+            log.warn("Unable to list the existing APIs, existing APIs are looked up when they " +
+                    "conflict", e);
+            return ApiCatalog.empty();
         }
-        //Get the zipped file list entry
-        ZipEntry ze;
-        FileOutputStream fos = null;
+    }
+
+    /**
+     * Open the imported zip file for reading its entries
+     *
+     * @param zipFile zip file path
+     * @return archive source of the zip file
+     * @throws APIImportException if unable to open the zip file
+     */
+    private static ZipArchiveSource openArchive(String zipFile) throws APIImportException {
         try {
-            ze = zis.getNextEntry();
+            return new ZipArchiveSource(zipFile);
         } catch (IOException e) {
-            String errorMsg = "error occurred while getting the zip file entries";
+            String errorMsg = "cannot open the zip file " + zipFile;
             log.error(errorMsg, e);
             throw new APIImportException(errorMsg, e);
         }
-        while (ze != null) {
-            //Get the files inside zip entry, if it is a directory
-            if (ze.isDirectory()) {
+    }
+
+    /**
+     * Import the APIs in the given folders, concurrently if more than one worker thread is
+     * configured
+     *
+     * @param archive      imported archive
+     * @param apiFolders   names of the API folders
+     * @param tokenManager token manager
+     * @return import status of each API folder, ordered by the folder name
+     * @throws APIImportException if the import is interrupted
+     */
+    private static Map<String, ImportStatus> importApiFolders(final ZipArchiveSource archive,
+                                                              List<String> apiFolders,
+                                                              final TokenManager tokenManager)
+            throws APIImportException {
+        Map<String, ImportStatus> results = new TreeMap<>();
+        int threads = Math.min(ImportExportUtils.getPoolThreads(config.getThreads()),
+                Math.max(1, apiFolders.size()));
+        if (threads > 1) {
+            HttpClientGenerator.ensurePoolCapacity(threads);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            Map<String, Future<ImportStatus>> futures = new LinkedHashMap<>();
+            final AtomicInteger processed = new AtomicInteger();
+            final int total = apiFolders.size();
+            for (final String apiFolder : apiFolders) {
+                futures.put(apiFolder, executor.submit(new Callable<ImportStatus>() {
+                    @Override
+                    public ImportStatus call() {
+                        ImportStatus status = createAPI(archive, apiFolder, tokenManager);
+                        ImportExportUtils.printProgress(processed.incrementAndGet(), total);
+                        return status;
+                    }
+                }));
+            }
+            executor.shutdown();
+            for (Map.Entry<String, Future<ImportStatus>> future : futures.entrySet()) {
+                String folderName = future.getKey();
                 try {
-                    ze = zis.getNextEntry();
-                } catch (IOException e) {
-                    String errorMsg = "error occurred while getting the zip entries";
+                    results.put(folderName, future.getValue().get());
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    Thread.currentThread().interrupt();
+                    String errorMsg = "Import of APIs interrupted";
                     log.error(errorMsg, e);
                     throw new APIImportException(errorMsg, e);
+                } catch (ExecutionException e) {
+                    log.error("Unexpected error occurred while importing API " + folderName,
+                            e.getCause());
+                    results.put(folderName, ImportStatus.FAILED);
                 }
-                continue;
             }
-            //If not a directory
-            String fileName = ze.getName();
-            File newFile = new File(outputFolder + File.separator + fileName);
+        } else {
+            for (String apiFolder : apiFolders) {
+                results.put(apiFolder, createAPI(archive, apiFolder, tokenManager));
+                ImportExportUtils.printProgress(results.size(), apiFolders.size());
+            }
+        }
+        return results;
+    }
 
-            //create all non exists folders
-            //else you will hit FileNotFoundException for compressed folder
-            ////todo TEMP directory
-            new File(newFile.getParent()).mkdirs();
-            try {
-                fos = new FileOutputStream(newFile);
-            } catch (FileNotFoundException e) {
-                log.error("File " + fileName + " not created succussfully ", e);
+    /**
+     * Print the number of APIs in each import status, and the APIs which failed to import
+     *
+     * @param results import status of each API folder
+     */
+    private static void printImportSummary(Map<String, ImportStatus> results) {
+        Map<ImportStatus, Integer> counts = new EnumMap<>(ImportStatus.class);
+        List<String> failedApis = new ArrayList<>();
+        for (Map.Entry<String, ImportStatus> result : results.entrySet()) {
+            Integer count = counts.get(result.getValue());
+            counts.put(result.getValue(), count == null ? 1 : count + 1);
+            if (result.getValue() == ImportStatus.FAILED) {
+                failedApis.add(result.getKey());
             }
-            int len;
+        }
+        StringBuilder summary = new StringBuilder("Imported " + results.size() + " API(s) :");
+        for (ImportStatus status : ImportStatus.values()) {
+            Integer count = counts.get(status);
+            summary.append(' ').append(status.name().toLowerCase(Locale.ENGLISH)).append(' ')
+                    .append(count == null ? 0 : count);
+        }
+        System.out.println(summary);
+        if (!failedApis.isEmpty()) {
+            System.out.println("Failed to import " + failedApis);
+        }
+    }
+
+    /**
+     * Create the global mediation policies referred by the APIs to be imported. Each policy is
+     * created once, however many APIs refer it
+     *
+     * @param archive      imported archive
+     * @param apiFolders   names of the API folders
+     * @param tokenManager token manager with importing scopes
+     */
+    private static void addSharedMediationPolicies(ZipArchiveSource archive, List<String> apiFolders,
+                                                   TokenManager tokenManager) {
+        if (!archive.isFolder(ImportExportConstants.MEDIATION_FOLDER)) {
+            return;
+        }
+        for (String apiFolder : apiFolders) {
+            //Only the sequences of the API definition are read here, the rest is skipped
+            List<Map<String, Object>> sequences;
+            InputStream apiDefinition = null;
             try {
-                while ((len = zis.read(buffer)) > 0) {
-                    if (fos != null) {
-                        fos.write(buffer, 0, len);
-                    }
-                }
+                apiDefinition = archive.openEntry(entryName(apiFolder,
+                        ImportExportConstants.META_INFO, ImportExportConstants.API_JSON));
+                sequences = ApiDefinition.readSequences(apiDefinition);
             } catch (IOException e) {
-                log.error("Error occurred while writing file content to the temporary " +
-                        "directory", e);
+                log.warn("Error occurred while reading the mediation policies of " + apiFolder, e);
+                continue;
+            } finally {
+                IOUtils.closeQuietly(apiDefinition);
+            }
+            for (Map<String, Object> mediationPolicy : sequences) {
+                if ((boolean) mediationPolicy.get(ImportExportConstants.SHARED_STATUS) &&
+                        importedGlobalPolicies.add(getMediationKey(mediationPolicy))) {
+                    addGlobalMediation(mediationPolicy, archive, tokenManager);
+                }
             }
+        }
+    }
 
+    /**
+     * List the existing global mediation policies of the publisher, if the imported archive has
+     * global mediation policies
+     *
+     * @param archive      imported archive
+     * @param tokenManager token manager with importing scopes
+     * @return index of the global mediation policies
+     */
+    private static MediationPolicyIndex getGlobalMediationIndex(ZipArchiveSource archive,
+                                                                TokenManager tokenManager) {
+        String url = config.getPublisherUrl() + ImportExportConstants.MEDIATION_SEG;
+        if (archive.isFolder(ImportExportConstants.MEDIATION_FOLDER)) {
             try {
-                ze = zis.getNextEntry();
-            } catch (IOException e) {
-                String errorMsg = "Error occurred while continuing the while getting all the " +
-                        "zip entries";
-                log.error(errorMsg, e);
-                throw new APIImportException(errorMsg, e);
+                return MediationPolicyIndex.load(url, tokenManager);
+            } catch (UtilException e) {
+                log.warn("Unable to list the global mediation policies, existing policies are " +
+                        "looked up when they conflict", e);
             }
         }
+        return MediationPolicyIndex.empty(url);
+    }
+
+    /**
+     * List the existing mediation policies of an API
+     *
+     * @param apiUuid      API uuid
+     * @param tokenManager token manager with importing scopes
+     * @return index of the mediation policies of the API
+     */
+    private static MediationPolicyIndex getApiMediationIndex(String apiUuid,
+                                                             TokenManager tokenManager) {
+        String url = getApiMediationUrl(apiUuid);
         try {
-            zis.closeEntry();
-        } catch (IOException e) {
-            log.error("Error occurred while closing the zip entry ", e);
-        } finally {
-            IOUtils.closeQuietly(fos);
-            IOUtils.closeQuietly(zis);
+            return MediationPolicyIndex.load(url, tokenManager);
+        } catch (UtilException e) {
+            log.warn("Unable to list the mediation policies of API " + apiUuid + ", existing " +
+                    "policies are looked up when they conflict", e);
+            return MediationPolicyIndex.empty(url);
         }
     }
 
+    /**
+     * Returns the url of the mediation policies of an API
+     *
+     * @param apiUuid API uuid
+     * @return url of the mediation policies of the API
+     */
+    private static String getApiMediationUrl(String apiUuid) {
+        return config.getPublisherUrl() + ImportExportConstants.APIS + apiUuid +
+                ImportExportConstants.MEDIATION_SEG;
+    }
+
+    /**
+     * Returns the key identifying a mediation policy by its type and name
+     *
+     * @param mediationPolicy mediation policy object
+     * @return key of the mediation policy
+     */
+    private static String getMediationKey(Map<String, Object> mediationPolicy) {
+        return mediationPolicy.get(ImportExportConstants.TYPE_ELEM) + ImportExportConstants.URL_SEPARATOR +
+                mediationPolicy.get(ImportExportConstants.NAME_ELEM);
+    }
+
     /**
      * Creating each API in the imported zip file
      *
-     * @param apiFolder path to the API folder withing imported folder
-     * @param token     access token
+     * @param archive      imported archive
+     * @param apiFolder    name of the API folder withing imported archive
+     * @param tokenManager token manager
+     * @return import status of the API
      */
-    private static void createAPI(String apiFolder, String token) {
+    private static ImportStatus createAPI(ZipArchiveSource archive, String apiFolder,
+                                          TokenManager tokenManager) {
+        //API completed by an interrupted run of the same import
+        String journaledStatus = importJournal.getValue(apiFolder, ImportJournal.STATUS_STEP);
+        if (journaledStatus != null) {
+            return ImportStatus.valueOf(journaledStatus);
+        }
         try {
             //Getting API definition (api.json) of the imported API
-            String pathToApiJson = apiFolder + ImportExportConstants.JSON_FILE_LOCATION;
-            String apiDefinition = FileUtils.readFileToString(new File(pathToApiJson));
-            String apiName = ImportExportUtils.readJsonValues(apiDefinition,
-                    ImportExportConstants.API_NAME);
+            String apiDefinition = archive.readEntry(entryName(apiFolder,
+                    ImportExportConstants.META_INFO, ImportExportConstants.API_JSON));
+            ApiDefinition definition = ApiDefinition.parse(apiDefinition);
+            String apiName = definition.getName();
+            //API created or updated by an interrupted run, continuing with its remaining steps
+            String journaledUuid = importJournal.getValue(apiFolder, ImportJournal.CREATED_STEP);
+            if (journaledUuid != null) {
+                return completeCreatedApi(archive, apiFolder, definition, journaledUuid,
+                        tokenManager);
+            }
+            journaledUuid = importJournal.getValue(apiFolder, ImportJournal.UPDATED_STEP);
+            if (journaledUuid != null) {
+                return updateApi(apiDefinition, definition, journaledUuid, tokenManager, archive,
+                        apiFolder);
+            }
+            ApiCatalog.CatalogEntry existingApi = apiCatalog.get(definition.getProvider(), apiName,
+                    definition.getVersion());
+            if (existingApi != null) {
+                return importExistingApi(apiDefinition, definition, existingApi.getUuid(),
+                        tokenManager, archive, apiFolder);
+            }
 
             //Creating the API
             String url = config.getPublisherUrl() + ImportExportConstants.APIS_URL;
-            CloseableHttpClient client;
-            try {
-                client = HttpClientGenerator.getHttpClient();
-            } catch (UtilException e) {
-                String errorMsg = "Error occurred while getting a closableHttpClient for creating" +
-                        " the API";
-                log.error(errorMsg, e);
-                return;
-            }
             HttpPost request = new HttpPost(url);
             request.setEntity(new StringEntity(apiDefinition, ImportExportConstants.CHARSET));
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT
-                    + token);
             request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
-            CloseableHttpResponse response = client.execute(request);
-            if (response.getStatusLine().getStatusCode() == Response.Status.CONFLICT.getStatusCode()) {
-                //If API already exists perform update, if enabled
-                if (config.getUpdateApi()) {
-                    updateApi(apiDefinition, token, apiFolder);
-                } else {
-                    //If update disabled
-                    log.info("API " + apiName + " already exists. ");
+            CloseableHttpResponse response = tokenManager.execute(request);
+            int statusCode = response.getStatusLine().getStatusCode();
+            String responseString = null;
+            try {
+                if (response.getEntity() != null) {
+                    responseString = EntityUtils.toString(response.getEntity(),
+                            ImportExportConstants.CHARSET);
                 }
-            } else if (response.getStatusLine().getStatusCode() ==
-                    Response.Status.CREATED.getStatusCode()) {
+            } finally {
+                IOUtils.closeQuietly(response);
+            }
+            if (statusCode == Response.Status.CONFLICT.getStatusCode()) {
+                //API created after listing the catalog
+                return importExistingApi(apiDefinition, definition, null, tokenManager, archive,
+                        apiFolder);
+            } else if (statusCode == Response.Status.CREATED.getStatusCode()) {
                 System.out.println("creating API " + apiName);
                 //Getting uuid of created API
-                HttpEntity entity = response.getEntity();
-                String responseString = EntityUtils.toString(entity, ImportExportConstants.CHARSET);
                 String uuid = ImportExportUtils.readJsonValues(responseString,
                         ImportExportConstants.UUID);
                 if (StringUtils.isNotBlank(uuid)) {
-                    //Importing API thumbnail
-                    if (StringUtils.isNotBlank(ImportExportUtils.readJsonValues(apiDefinition,
-                            ImportExportConstants.THUMBNAIL))) {
-                        addAPIImage(apiFolder, token, uuid);
-                    }
-
-                    File folder = new File(apiFolder);
-                    File[] fileList = folder.listFiles();
-                    for (File file : fileList) {
-                        //Check for the document directory
-                        if (file.getName().equalsIgnoreCase(ImportExportConstants.DOCUMENT_DIRECTORY)) {
-                            //Adding API documentations
-                            addAPIDocuments(apiFolder, token, uuid);
-                        } else if (file.getName().equalsIgnoreCase(ImportExportConstants.WSDL_FILE_NAME)) {
-                            //Add the exported wsdl to the API
-                            addWsdl(apiFolder, uuid, token);
-                        }
-                    }
-                    JSONParser parser = new JSONParser();
-                    JSONObject jsonObj = (JSONObject) parser.parse(apiDefinition);
-                    if (jsonObj.containsKey(ImportExportConstants.SEQUENCES_ELEM)) {
-                        org.json.simple.JSONArray arr = (org.json.simple.JSONArray) jsonObj.
-                                get(ImportExportConstants.SEQUENCES_ELEM);
-                        if (arr.size() > 0) {
-                            //Adding mediation policies
-                            addMediationPolicies(arr, apiFolder, token, uuid);
-                        }
-                    }
-                    System.out.println("API " + apiName + " imported successfully");
+                    apiCatalog.put(definition.getProvider(), apiName, definition.getVersion(),
+                            new ApiCatalog.CatalogEntry(uuid, null));
+                    importJournal.record(apiFolder, ImportJournal.CREATED_STEP, uuid);
+                    return completeCreatedApi(archive, apiFolder, definition, uuid, tokenManager);
                 }
 
-            } else if (response.getStatusLine().getStatusCode() ==
-                    Response.Status.FORBIDDEN.getStatusCode()) {
+            } else if (statusCode == Response.Status.FORBIDDEN.getStatusCode()) {
                 log.error("cannot create different APIs with duplicate context exists");
-            } else if (response.getStatusLine().getStatusCode() ==
-                    Response.Status.BAD_REQUEST.getStatusCode()) {
-                log.error(EntityUtils.toString(response.getEntity()));
-            } else if (response.getStatusLine().getStatusCode() ==
-                    Response.Status.UNAUTHORIZED.getStatusCode()) {
+            } else if (statusCode == Response.Status.BAD_REQUEST.getStatusCode()) {
+                log.error(responseString);
+            } else if (statusCode == Response.Status.UNAUTHORIZED.getStatusCode()) {
                 log.error("Unauthorized request, You cannot create the API since scope validation " +
                         "failed");
             } else {
                 log.error("Error occurred while creating the API " + apiName);
             }
-        } catch (IOException e) {
+        } catch (IOException | UtilException e) {
             log.error("Error occurred while creating the API ", e);
-        } catch (ParseException e) {
-            log.error("Error occurred on parsing api definition in to json object ", e);
         }
+        return ImportStatus.FAILED;
+    }
+
+    /**
+     * Add the thumbnail, documents, wsdl and mediation policies of a created API, skipping the
+     * ones journaled as added
+     *
+     * @param archive      imported archive
+     * @param apiFolder    name of the API folder withing imported archive
+     * @param definition   parsed API definition
+     * @param uuid         uuid of the created API
+     * @param tokenManager token manager
+     * @return import status of the API
+     */
+    private static ImportStatus completeCreatedApi(ZipArchiveSource archive, String apiFolder,
+                                                   ApiDefinition definition, String uuid,
+                                                   TokenManager tokenManager) {
+        boolean complete = true;
+        //Importing API thumbnail
+        if (StringUtils.isNotBlank(definition.getThumbnailUri()) &&
+                isPending(apiFolder, ImportJournal.THUMBNAIL_STEP)) {
+            complete &= recordStep(apiFolder, ImportJournal.THUMBNAIL_STEP,
+                    addAPIImage(archive, apiFolder, tokenManager, uuid));
+        }
+
+        //Check for the document directory
+        if (archive.isFolder(entryName(apiFolder, ImportExportConstants.DOCUMENT_DIRECTORY))) {
+            //Adding API documentations
+            complete &= addAPIDocuments(archive, apiFolder, tokenManager, uuid);
+        }
+        if (archive.isFile(entryName(apiFolder, ImportExportConstants.WSDL_FILE_NAME)) &&
+                isPending(apiFolder, ImportJournal.WSDL_STEP)) {
+            //Add the exported wsdl to the API
+            complete &= recordStep(apiFolder, ImportJournal.WSDL_STEP,
+                    addWsdl(archive, apiFolder, uuid, tokenManager));
+        }
+        List<Map<String, Object>> sequences = definition.getSequences();
+        if (sequences.size() > 0) {
+            //Adding mediation policies, a created API has none to update
+            complete &= addMediationPolicies(sequences, archive, apiFolder, tokenManager,
+                    MediationPolicyIndex.empty(getApiMediationUrl(uuid)));
+        }
+        System.out.println("API " + definition.getName() + " imported successfully");
+        return completeApi(apiFolder, ImportStatus.CREATED, complete);
+    }
+
+    /**
+     * Journal the import status of an API, if all of its steps are done
+     *
+     * @param apiFolder name of the API folder withing imported archive
+     * @param status    import status of the API
+     * @param complete  whether all the steps of the API are done
+     * @return import status of the API
+     */
+    private static ImportStatus completeApi(String apiFolder, ImportStatus status,
+                                            boolean complete) {
+        if (complete) {
+            importJournal.record(apiFolder, ImportJournal.STATUS_STEP, status.name());
+        } else {
+            //Left incomplete in the journal, for the next run to retry the failed steps
+            log.warn("Some steps of importing " + apiFolder + " failed");
+        }
+        return status;
+    }
+
+    /**
+     * Check whether a step of importing an API is not journaled as done
+     *
+     * @param apiFolder name of the API folder withing imported archive
+     * @param step      step of importing the API
+     * @return true if the step is to be done
+     */
+    private static boolean isPending(String apiFolder, String step) {
+        return !importJournal.isDone(apiFolder, step);
+    }
+
+    /**
+     * Journal a step of importing an API, if it succeeded
+     *
+     * @param apiFolder name of the API folder withing imported archive
+     * @param step      step of importing the API
+     * @param done      whether the step succeeded
+     * @return whether the step succeeded
+     */
+    private static boolean recordStep(String apiFolder, String step, boolean done) {
+        if (done) {
+            importJournal.record(apiFolder, step, null);
+        }
+        return done;
+    }
+
+    /**
+     * Check whether the response of a request reports success
+     *
+     * @param response http response
+     * @return true for a 2xx status code
+     */
+    private static boolean isSuccessful(CloseableHttpResponse response) {
+        return response.getStatusLine().getStatusCode() / 100 == 2;
     }
 
     /**
      * Upload the wsdl of created API, if there any
      *
-     * @param apiFolder path to the imported API folder location
+     * @param archive   imported archive
+     * @param apiFolder name of the imported API folder
      * @param uuid      API uuid
-     * @param token     access token with exporting scopes
+     * @param tokenManager token manager with exporting scopes
+     * @return true if the wsdl was uploaded
      */
-    private static void addWsdl(String apiFolder, String uuid, String token) {
+    private static boolean addWsdl(ZipArchiveSource archive, String apiFolder, String uuid,
+                                   TokenManager tokenManager) {
 
         // todo wsdl put
-        CloseableHttpClient client = null;
+        CloseableHttpResponse response = null;
         try {
             String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
                     ImportExportConstants.WSDL_SEG;
-            client = HttpClientGenerator.getHttpClient();
             HttpPost request = new HttpPost(url);
-            String wsdlFilePath = apiFolder.concat(File.separator + ImportExportConstants.WSDL_FILE_NAME);
             //Getting the content of wsdl file
-            byte[] encoded = Files.readAllBytes(Paths.get(wsdlFilePath));
-            String content = new String(encoded, ImportExportConstants.CHARSET);
+            String content = archive.readEntry(entryName(apiFolder,
+                    ImportExportConstants.WSDL_FILE_NAME));
             MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
             multipartEntityBuilder.addTextBody(ImportExportConstants.MULTIPART_WSDL_CONTENT,
                     content, ContentType.TEXT_XML);
             HttpEntity entity = multipartEntityBuilder.build();
             request.setEntity(entity);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT + token);
-            client.execute(request);
+            response = tokenManager.execute(request);
+            return isSuccessful(response);
         } catch (UtilException e) {
             log.error("Error occurred while getting a http client for wsdl upload in api " + uuid, e);
         } catch (IOException e) {
             log.error("Error while uploading the wsdl of the API " + uuid, e);
         } finally {
-            IOUtils.closeQuietly(client);
+            IOUtils.closeQuietly(response);
         }
+        return false;
     }
 
     /**
      * Upload mediation policy to the created API
      *
-     * @param array     array of mediation policies
-     * @param apiFolder path to the imported API folder loaction
-     * @param token     access token with importing scopes
-     * @param apiUuid   API uuid
+     * @param sequences mediation policies of the API
+     * @param archive   imported archive
+     * @param apiFolder name of the imported API folder
+     * @param tokenManager token manager with importing scopes
+     * @param apiMediationIndex index of the existing mediation policies of the API
+     * @return true if all the API specific mediation policies were added
      */
-    static void addMediationPolicies(JSONArray array, String apiFolder, String token, String apiUuid) {
-        for (Object item : array) {
-            JSONObject mediationPolicy = (JSONObject) item;
+    static boolean addMediationPolicies(List<Map<String, Object>> sequences, ZipArchiveSource archive,
+                                        String apiFolder, TokenManager tokenManager,
+                                        MediationPolicyIndex apiMediationIndex) {
+        boolean added = true;
+        for (Map<String, Object> mediationPolicy : sequences) {
             if (!(boolean) mediationPolicy.get(ImportExportConstants.SHARED_STATUS)) {
                 //Shared status= false : API specific mediation policy
-                addApiSpecificMediation(config, mediationPolicy, apiFolder, token, apiUuid);
-            } else {
-                File api = new File(apiFolder);
-                String mediationPolicyDirectory = api.getParent() + File.separator +
-                        ImportExportConstants.MEDIATION_FOLDER;
-                addGlobalMediationPolicies(config, mediationPolicy, mediationPolicyDirectory, token);
+                String step = ImportJournal.MEDIATION_STEP + getMediationKey(mediationPolicy);
+                if (isPending(apiFolder, step)) {
+                    added &= recordStep(apiFolder, step, addApiSpecificMediation(config,
+                            mediationPolicy, archive, apiFolder, tokenManager, apiMediationIndex));
+                }
+            } else if (importedGlobalPolicies.add(getMediationKey(mediationPolicy))) {
+                //Global mediation policies not created before importing the APIs
+                addGlobalMediation(mediationPolicy, archive, tokenManager);
             }
         }
+        return added;
+    }
+
+    /**
+     * Check whether any API specific mediation policy of an API is not journaled as added
+     *
+     * @param sequences mediation policies of the API
+     * @param apiFolder name of the imported API folder
+     * @return true if a mediation policy is to be added
+     */
+    private static boolean hasPendingMediation(List<Map<String, Object>> sequences,
+                                               String apiFolder) {
+        for (Map<String, Object> mediationPolicy : sequences) {
+            if (!(boolean) mediationPolicy.get(ImportExportConstants.SHARED_STATUS) &&
+                    isPending(apiFolder, ImportJournal.MEDIATION_STEP +
+                            getMediationKey(mediationPolicy))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Upload a global mediation policy, unless it is journaled as added
+     *
+     * @param mediationPolicy mediation policy object
+     * @param archive         imported archive
+     * @param tokenManager    token manager with importing scopes
+     */
+    private static void addGlobalMediation(Map<String, Object> mediationPolicy,
+                                           ZipArchiveSource archive, TokenManager tokenManager) {
+        String step = ImportJournal.MEDIATION_STEP + getMediationKey(mediationPolicy);
+        if (isPending(ImportExportConstants.MEDIATION_FOLDER, step)) {
+            recordStep(ImportExportConstants.MEDIATION_FOLDER, step,
+                    addGlobalMediationPolicies(config, mediationPolicy, archive, tokenManager));
+        }
     }
 
     /**
@@ -359,62 +677,52 @@ class APIImporter {
      *
      * @param config          ApiImportExportConfiguration instance
      * @param mediationPolicy mediation policy object
-     * @param apiFolder       path to the imported API folder
-     * @param token           access token with import scopes
-     * @param uuid            API uuid
+     * @param archive         imported archive
+     * @param apiFolder       name of the imported API folder
+     * @param tokenManager    token manager with import scopes
+     * @param apiMediationIndex index of the existing mediation policies of the API
+     * @return false if the mediation policy failed to be added
      */
-    private static void addApiSpecificMediation(ApiImportExportConfiguration config,
-                                                JSONObject mediationPolicy, String apiFolder,
-                                                String token, String uuid) {
+    private static boolean addApiSpecificMediation(ApiImportExportConfiguration config,
+                                                Map<String, Object> mediationPolicy,
+                                                ZipArchiveSource archive,
+                                                String apiFolder, TokenManager tokenManager,
+                                                MediationPolicyIndex apiMediationIndex) {
         //todo method for core
-        Path mediationFolder = Paths.get(apiFolder + File.separator + ImportExportConstants.MEDIATION_FOLDER);
-        if (Files.exists(mediationFolder)) {
+        String mediationFolder = entryName(apiFolder, ImportExportConstants.MEDIATION_FOLDER);
+        if (archive.isFolder(mediationFolder)) {
             String mediationDirection = (String) mediationPolicy.get(ImportExportConstants.TYPE_ELEM);
-            Path directionFolderPath = Paths.get(mediationFolder + File.separator + mediationDirection);
-            if (Files.exists(directionFolderPath)) {
-                Path mediationFilePath = Paths.get(directionFolderPath + File.separator + mediationPolicy.get
-                        (ImportExportConstants.NAME_ELEM));
-                if (Files.exists(mediationFilePath)) {
-                    CloseableHttpClient httpClient = null;
+            String directionFolderPath = entryName(mediationFolder, mediationDirection);
+            if (archive.isFolder(directionFolderPath)) {
+                String mediationFilePath = entryName(directionFolderPath,
+                        (String) mediationPolicy.get(ImportExportConstants.NAME_ELEM));
+                if (archive.isFile(mediationFilePath)) {
                     try {
                         //Getting content of the mediation policy
-                        byte[] encoded = Files.readAllBytes(Paths.get(String.valueOf(mediationFilePath)));
-                        String content = new String(encoded, ImportExportConstants.CHARSET);
+                        String content = archive.readEntry(mediationFilePath);
                         //Generating payload for mediation upload
                         JSONObject obj = new JSONObject();
                         obj.put("name", mediationPolicy.get(ImportExportConstants.NAME_ELEM));
                         obj.put("type", mediationPolicy.get(ImportExportConstants.TYPE_ELEM));
                         obj.put("config", content);
 
-                        String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid + ImportExportConstants.MEDIATION_SEG;
-                        httpClient = HttpClientGenerator.getHttpClient();
-                        HttpPost request = new HttpPost(url);
-                        request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT + token);
-                        request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
-                        request.setEntity(new StringEntity(obj.toJSONString(), ImportExportConstants.CHARSET));
-                        CloseableHttpResponse response = httpClient.execute(request);
-                        if (response.getStatusLine().getStatusCode() == Response.Status.CONFLICT.getStatusCode()) {
-                            if (config.getUpdateApi()) {
-                                //If mediation policy already exists and update enable, update the
-                                //existing mediation policy
-                                updateApiSpecificMediation(config, obj, token, uuid);
-                            }
-                        }
+                        return importMediationPolicy(config, obj, apiMediationIndex, tokenManager);
                     } catch (IOException e) {
                         //todo error report
                         log.error("Error occurred while reading the content of mediation policy" +
                                 mediationPolicy.get("name"));
+                        return false;
                     } catch (UtilException e) {
                         log.error("Error occurred while getting http client for import global " +
                                 "mediation sequence " + mediationPolicy.get(ImportExportConstants.NAME_ELEM));
-                    } finally {
-                        IOUtils.closeQuietly(httpClient);
+                        return false;
                     }
                 }
             }
         } else {
             log.error("Global mediation policy folder not found, cannot add global mediation");
         }
+        return true;
     }
 
     /**
@@ -422,59 +730,44 @@ class APIImporter {
      *
      * @param config                   ApiImportExportConfiguration instance
      * @param mediationPolicy          Mediation object
-     * @param mediationPolicyDirectory path to the global mediation policy directory inside imported
-     *                                 folder
-     * @param token                    access token with importing scopes
-     */
-    private static void addGlobalMediationPolicies(ApiImportExportConfiguration config, JSONObject mediationPolicy,
-                                                   String mediationPolicyDirectory, String token) {
-        Path mediationFolderPath = Paths.get(mediationPolicyDirectory);
-        if (Files.exists(mediationFolderPath)) {
+     * @param archive                  imported archive, holding the global mediation policy
+     *                                 directory
+     * @param tokenManager             token manager with importing scopes
+     * @return false if the mediation policy failed to be added
+     */
+    private static boolean addGlobalMediationPolicies(ApiImportExportConfiguration config,
+                                                   Map<String, Object> mediationPolicy,
+                                                   ZipArchiveSource archive,
+                                                   TokenManager tokenManager) {
+        if (archive.isFolder(ImportExportConstants.MEDIATION_FOLDER)) {
             //Mediation direction : in/out/fault
             String mediationDirection = (String) mediationPolicy.get(ImportExportConstants.TYPE_ELEM);
-            Path directionFolderPath = Paths.get(mediationPolicyDirectory +
-                    File.separator + mediationDirection);
-            if (Files.exists(directionFolderPath)) {
+            String directionFolderPath = entryName(ImportExportConstants.MEDIATION_FOLDER,
+                    mediationDirection);
+            if (archive.isFolder(directionFolderPath)) {
                 //Path to the mediation policy file
-                Path mediationFilePath = Paths.get(directionFolderPath + File.separator +
-                        mediationPolicy.get(ImportExportConstants.NAME_ELEM));
-                if (Files.exists(mediationFilePath)) {
-                    CloseableHttpClient httpClient = null;
+                String mediationFilePath = entryName(directionFolderPath,
+                        (String) mediationPolicy.get(ImportExportConstants.NAME_ELEM));
+                if (archive.isFile(mediationFilePath)) {
                     try {
                         //Extracting mediation policy content
-                        byte[] encoded = Files.readAllBytes(Paths.get(String.valueOf(mediationFilePath)));
-                        String content = new String(encoded, ImportExportConstants.CHARSET);
+                        String content = archive.readEntry(mediationFilePath);
                         //Generating payload for update
                         JSONObject obj = new JSONObject();
                         obj.put("name", mediationPolicy.get(ImportExportConstants.NAME_ELEM));
                         obj.put("type", mediationPolicy.get(ImportExportConstants.TYPE_ELEM));
                         obj.put("config", content);
 
-                        String url = config.getPublisherUrl() + ImportExportConstants.MEDIATION_SEG;
-                        httpClient = HttpClientGenerator.getHttpClient();
-                        HttpPost request = new HttpPost(url);
-                        request.setHeader(HttpHeaders.AUTHORIZATION,
-                                ImportExportConstants.CONSUMER_KEY_SEGMENT + token);
-                        request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
-                        request.setEntity(new StringEntity(obj.toJSONString(),
-                                ImportExportConstants.CHARSET));
-                        CloseableHttpResponse response = httpClient.execute(request);
-                        if (response.getStatusLine().getStatusCode() ==
-                                Response.Status.CONFLICT.getStatusCode()) {
-                            //If the mediation policy already exists and update enabled, update the
-                            // existing mediation policy
-                            if (config.getUpdateApi()) {
-                                updateGlobalMediationSequence(config, obj, token);
-                            }
-                        }
+                        return importMediationPolicy(config, obj, globalMediationIndex,
+                                tokenManager);
                     } catch (IOException e) {
                         log.error("Error occurred while reading the content of mediation policy" +
                                 mediationPolicy.get(ImportExportConstants.NAME_ELEM));
+                        return false;
                     } catch (UtilException e) {
                         log.error("Error occurred while getting http client for import global " +
                                 "mediation sequence " + mediationPolicy.get(ImportExportConstants.NAME_ELEM));
-                    } finally {
-                        IOUtils.closeQuietly(httpClient);
+                        return false;
                     }
                 }
             }
@@ -482,139 +775,138 @@ class APIImporter {
             log.error("Global mediation policy folder not found, cannot add global mediation");
 
         }
+        return true;
     }
 
     /**
-     * Update a already existing global mediation policy
+     * Create a mediation policy, or update the existing policy of the same type and name if update
+     * is enabled. Whether the policy exists is looked up from the index of the target
      *
-     * @param config    ApiImportExportConfiguration instance
-     * @param mediation mediation json object
-     * @param token     access token with importing scopes
+     * @param config       ApiImportExportConfiguration instance
+     * @param mediation    mediation json object
+     * @param index        index of the existing mediation policies of the target
+     * @param tokenManager token manager with importing scopes
+     * @return true if the mediation policy was created, updated or left as it exists
+     * @throws IOException   if unable to create the mediation policy
+     * @throws UtilException if unable to get a http client
      */
-    private static void updateGlobalMediationSequence(ApiImportExportConfiguration config,
-                                                      JSONObject mediation, String token) {
-        //Get all mediation policies to find the corresponding uuid
-        String url = config.getPublisherUrl() + ImportExportConstants.MEDIATION_SEG;
-        //Getting uuid of the existing mediation policy
-        String uuid = getMediationPolicyUuid(url, token, mediation);
-        //Updating the mediation policy specify by the uuid
-        CloseableHttpClient client = null;
-        try {
-            url = url.concat(ImportExportConstants.URL_SEPARATOR + uuid);
-            client = HttpClientGenerator.getHttpClient();
-            HttpPut request = new HttpPut(url);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT +
-                    token);
+    private static boolean importMediationPolicy(ApiImportExportConfiguration config,
+                                              JSONObject mediation, MediationPolicyIndex index,
+                                              TokenManager tokenManager)
+            throws IOException, UtilException {
+        Object type = mediation.get(ImportExportConstants.TYPE_ELEM);
+        Object name = mediation.get(ImportExportConstants.NAME_ELEM);
+        String uuid = index.getUuid(type, name);
+        if (uuid == null) {
+            HttpPost request = new HttpPost(index.getUrl());
             request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
             request.setEntity(new StringEntity(mediation.toJSONString(), ImportExportConstants.CHARSET));
-            client.execute(request);
-        } catch (UtilException e) {
-            log.error("error occurred while getting a ClosableHttpClient,on updating" +
-                    " mediation policy " + mediation.get(ImportExportConstants.NAME_ELEM), e);
-        } catch (IOException e) {
-            log.error("Error while updating the existing mediation policy", e);
-        } finally {
-            IOUtils.closeQuietly(client);
+            CloseableHttpResponse response = tokenManager.execute(request);
+            try {
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode == Response.Status.CREATED.getStatusCode()) {
+                    //Recording the created policy, for the APIs imported later
+                    String createdUuid = ImportExportUtils.readJsonValues(EntityUtils.toString(
+                            response.getEntity(), ImportExportConstants.CHARSET), ImportExportConstants.UUID);
+                    if (StringUtils.isNotBlank(createdUuid)) {
+                        index.put(type, name, createdUuid);
+                    }
+                    return true;
+                } else if (statusCode != Response.Status.CONFLICT.getStatusCode()) {
+                    log.error("Adding mediation policy " + name + " unsuccessful, status code " +
+                            statusCode);
+                    return false;
+                }
+            } finally {
+                IOUtils.closeQuietly(response);
+            }
+            //The policy was created after listing the index, hence listing it again
+            index.reload(tokenManager);
+            uuid = index.getUuid(type, name);
+        }
+        //If the mediation policy already exists and update enabled, update the existing mediation
+        //policy
+        if (config.getUpdateApi()) {
+            if (uuid == null) {
+                log.error("Unable to find the existing mediation policy " + name);
+                return false;
+            }
+            return updateMediationPolicy(index, uuid, mediation, tokenManager);
         }
+        return true;
     }
 
     /**
-     * Update a already existing API specific mediation policy
+     * Update a already existing mediation policy
      *
-     * @param config  ApiImportExportConfiguration instance
-     * @param payload mediation object
-     * @param token   access token with import scopes
-     * @param apiUuid API uuid
+     * @param index        index of the existing mediation policies of the target
+     * @param uuid         uuid of the existing mediation policy
+     * @param mediation    mediation json object
+     * @param tokenManager token manager with importing scopes
+     * @return true if the mediation policy was updated
      */
-    private static void updateApiSpecificMediation(ApiImportExportConfiguration config,
-                                                   JSONObject payload, String token, String apiUuid) {
-
-        String url = config.getPublisherUrl() + ImportExportConstants.APIS + apiUuid +
-                ImportExportConstants.MEDIATION_SEG;
-        //Get the uuid of existing mediation policy
-        String uuid = getMediationPolicyUuid(url, token, payload);
-
+    private static boolean updateMediationPolicy(MediationPolicyIndex index, String uuid,
+                                                 JSONObject mediation, TokenManager tokenManager) {
         //Updating the mediation policy specify by the uuid
-        CloseableHttpClient client = null;
+        CloseableHttpResponse response = null;
         try {
-            url = url.concat(ImportExportConstants.URL_SEPARATOR + uuid);
-            client = HttpClientGenerator.getHttpClient();
+            String url = index.getUrl() + ImportExportConstants.URL_SEPARATOR + uuid;
             HttpPut request = new HttpPut(url);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT + token);
             request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
-            request.setEntity(new StringEntity(payload.toJSONString(), ImportExportConstants.CHARSET));
-            client.execute(request);
+            request.setEntity(new StringEntity(mediation.toJSONString(), ImportExportConstants.CHARSET));
+            response = tokenManager.execute(request);
+            return isSuccessful(response);
         } catch (UtilException e) {
             log.error("error occurred while getting a ClosableHttpClient,on updating" +
-                    " mediation policy " + payload.get(ImportExportConstants.NAME_ELEM), e);
+                    " mediation policy " + mediation.get(ImportExportConstants.NAME_ELEM), e);
         } catch (IOException e) {
             log.error("Error occurred on updating existing mediation policy ", e);
         } finally {
-            IOUtils.closeQuietly(client);
+            IOUtils.closeQuietly(response);
         }
+        return false;
     }
 
-    static String getMediationPolicyUuid(String url, String token, JSONObject obj) {
-        String uuid = null;
-        try {
-            CloseableHttpClient client = HttpClientGenerator.getHttpClient();
-            HttpGet request = new HttpGet(url);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT + token);
-            CloseableHttpResponse response = client.execute(request);
-            String responseString = EntityUtils.toString(response.getEntity(), ImportExportConstants.CHARSET);
-            JSONParser parser = new JSONParser();
-            JSONObject jsonObj = (JSONObject) parser.parse(responseString);
-            JSONArray array = (JSONArray) jsonObj.get(ImportExportConstants.MEDIATION_LIST);
-            for (Object api : array) {
-                JSONObject mediationObj = (JSONObject) api;
-                if (mediationObj.get(ImportExportConstants.NAME_ELEM).equals
-                        (obj.get(ImportExportConstants.NAME_ELEM))) {
-                    uuid = (String) mediationObj.get(ImportExportConstants.UUID);
-                    break;
-                }
-            }
-        } catch (UtilException e) {
-            log.error("Error occurred while getting a ClosableHttpClient, on get all mediation " +
-                    "policies", e);
-        } catch (IOException e) {
-            log.error("Error occurred while getting all global mediation policies", e);
-        } catch (ParseException e) {
-            log.error("Error occurred while parsing get mediation response in to json", e);
+    /**
+     * Import an API which already exists, updating it if update is enabled
+     *
+     * @param payload      payload to update the API
+     * @param definition   parsed API definition of the payload
+     * @param uuid         uuid of the existing API, or null if it is to be looked up
+     * @param tokenManager token manager
+     * @param archive      imported archive
+     * @param folderPath   name of the imported API folder
+     * @return import status of the API
+     */
+    private static ImportStatus importExistingApi(String payload, ApiDefinition definition,
+                                                  String uuid, TokenManager tokenManager,
+                                                  ZipArchiveSource archive, String folderPath) {
+        //If API already exists perform update, if enabled
+        if (config.getUpdateApi()) {
+            return updateApi(payload, definition, uuid, tokenManager, archive, folderPath);
+        } else {
+            //If update disabled
+            log.info("API " + definition.getName() + " already exists. ");
+            return completeApi(folderPath, ImportStatus.SKIPPED, true);
         }
-        return uuid;
     }
 
     /**
-     * Updated an existing API
+     * Find the uuid of an existing API by searching the APIs of its name
      *
-     * @param payload    payload to update the API
-     * @param token      access token
-     * @param folderPath folder path to the imported API folder
+     * @param apiName      name of the API
+     * @param version      version of the API
+     * @param tokenManager token manager
+     * @return uuid of the API, or null if not found
      */
-    private static void updateApi(String payload, String token,
-                                  String folderPath) {
-        String apiName = ImportExportUtils.readJsonValues(payload, ImportExportConstants.API_NAME);
-        String version = ImportExportUtils.readJsonValues(payload, ImportExportConstants.API_VERSION);
-        String identifier = apiName + "-" + version;
-
-        //getting uuid of the existing API
+    private static String findApiUuid(String apiName, String version, TokenManager tokenManager) {
         String uuid = null;
         String httpUrl = config.getPublisherUrl() + ImportExportConstants.APIS_URL + "?query=name:" +
                 apiName;
-        CloseableHttpClient httpClient;
-        try {
-            httpClient = HttpClientGenerator.getHttpClient();
-        } catch (UtilException e) {
-            String errorMsg = "Error occurred while getting a closableHttpClient on getting uuid " +
-                    "of existing API";
-            log.error(errorMsg, e);
-            return;
-        }
         HttpGet httpRequest = new HttpGet(httpUrl);
-        httpRequest.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT
-                + token);
+        CloseableHttpResponse httpResponse = null;
         try {
-            CloseableHttpResponse httpResponse = httpClient.execute(httpRequest);
+            httpResponse = tokenManager.execute(httpRequest);
             if (httpResponse.getStatusLine().getStatusCode() == Response.Status.OK.getStatusCode()) {
                 String responseString = EntityUtils.toString(httpResponse.getEntity());
                 JSONParser parser = new JSONParser();
@@ -628,197 +920,212 @@ class APIImporter {
                     }
                 }
             }
-        } catch (IOException e) {
+        } catch (IOException | UtilException e) {
             System.out.println("error in getting all the apis");
         } catch (ParseException e) {
             System.out.println("error in simplifying response string");
+        } finally {
+            IOUtils.closeQuietly(httpResponse);
         }
+        return uuid;
+    }
 
-        JSONParser parser = new JSONParser();
-        try {
-            JSONObject jsonObj = (JSONObject) parser.parse(payload);
-            if (jsonObj.containsKey(ImportExportConstants.SEQUENCES_ELEM)) {
-                org.json.simple.JSONArray arr = (org.json.simple.JSONArray) jsonObj.
-                        get(ImportExportConstants.SEQUENCES_ELEM);
-                if (arr.size() > 0) {
-                    //Updating mediation policies
-                    addMediationPolicies(arr, folderPath, token, uuid);
-                }
+    /**
+     * Updated an existing API, skipping the steps journaled as done
+     *
+     * @param payload    payload to update the API
+     * @param definition parsed API definition of the payload
+     * @param uuid       uuid of the existing API, or null if it is to be looked up
+     * @param tokenManager token manager
+     * @param archive    imported archive
+     * @param folderPath name of the imported API folder
+     * @return import status of the API
+     */
+    private static ImportStatus updateApi(String payload, ApiDefinition definition, String uuid,
+                                          TokenManager tokenManager, ZipArchiveSource archive,
+                                          String folderPath) {
+        String apiName = definition.getName();
+        String version = definition.getVersion();
+        String identifier = apiName + "-" + version;
+
+        //getting uuid of the existing API
+        if (uuid == null) {
+            uuid = findApiUuid(apiName, version, tokenManager);
+            if (uuid == null) {
+                log.error("Unable to find the existing API " + identifier);
+                return ImportStatus.FAILED;
             }
-        } catch (ParseException e) {
-            log.error("Error while parsing payload to json object during API update", e);
         }
-        //updating API
-        String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid;
-        CloseableHttpClient client;
-        try {
-            client = HttpClientGenerator.getHttpClient();
-        } catch (UtilException e) {
-            String errorMsg = "Error occurred while getting a closableHttpClient for updating " +
-                    "the existing API ";
-            log.error(errorMsg, e);
-            return;
-        }
-        HttpPut request = new HttpPut(url);
-        request.setEntity(new StringEntity(payload, ImportExportConstants.CHARSET));
-        request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT +
-                token);
-        request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
-        try {
-            CloseableHttpResponse response = client.execute(request);
-            if (response.getStatusLine().getStatusCode() == Response.Status.OK.getStatusCode()) {
 
-                //updating API documents
-                updateAPIDocumentation(uuid, identifier, token, folderPath);
+        boolean complete = true;
+        List<Map<String, Object>> sequences = definition.getSequences();
+        if (hasPendingMediation(sequences, folderPath)) {
+            //Updating mediation policies
+            complete = addMediationPolicies(sequences, archive, folderPath, tokenManager,
+                    getApiMediationIndex(uuid, tokenManager));
+        }
+        if (isPending(folderPath, ImportJournal.UPDATED_STEP)) {
+            //updating API
+            String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid;
+            HttpPut request = new HttpPut(url);
+            request.setEntity(new StringEntity(payload, ImportExportConstants.CHARSET));
+            request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
+            try {
+                CloseableHttpResponse response = tokenManager.execute(request);
+                int statusCode = response.getStatusLine().getStatusCode();
+                IOUtils.closeQuietly(response);
+                if (statusCode == Response.Status.OK.getStatusCode()) {
+                    importJournal.record(folderPath, ImportJournal.UPDATED_STEP, uuid);
+                } else if (statusCode == Response.Status.NOT_FOUND.getStatusCode()) {
+                    String status = "API " + identifier + " not found/ does not exists";
+                    log.error(status);
+                    return ImportStatus.FAILED;
+                } else {
+                    String status = "Updating API " + identifier + " unsuccessful";
+                    log.error(status);
+                    return ImportStatus.FAILED;
+                }
+            } catch (IOException | UtilException e) {
+                String errorMsg = "Error occurred while updating, API " + apiName;
+                log.error(errorMsg, e);
+                return ImportStatus.FAILED;
+            }
+        }
 
-                //adding API thumbnail
-                addAPIImage(folderPath, token, uuid);
+        //updating API documents
+        if (isPending(folderPath, ImportJournal.DOCUMENTS_STEP)) {
+            complete &= recordStep(folderPath, ImportJournal.DOCUMENTS_STEP,
+                    updateAPIDocumentation(uuid, identifier, tokenManager, archive, folderPath));
+        }
 
-                //adding wsdl
-                updateWsdl(folderPath, uuid, token);
+        //adding API thumbnail
+        if (isPending(folderPath, ImportJournal.THUMBNAIL_STEP)) {
+            complete &= recordStep(folderPath, ImportJournal.THUMBNAIL_STEP,
+                    addAPIImage(archive, folderPath, tokenManager, uuid));
+        }
 
-                System.out.println("API " + identifier + " updated successfully");
-            } else if (response.getStatusLine().getStatusCode() ==
-                    Response.Status.NOT_FOUND.getStatusCode()) {
-                String status = "API " + identifier + " not found/ does not exists";
-                log.error(status);
-                return;
-            } else {
-                String status = "Updating API " + identifier + " unsuccessful";
-                log.error(status);
-                return;
-            }
-        } catch (IOException e) {
-            String errorMsg = "Error occurred while updating, API " + apiName;
-            log.error(errorMsg, e);
+        //adding wsdl
+        if (archive.isFile(entryName(folderPath, ImportExportConstants.WSDL_FILE_NAME)) &&
+                isPending(folderPath, ImportJournal.WSDL_STEP)) {
+            complete &= recordStep(folderPath, ImportJournal.WSDL_STEP,
+                    updateWsdl(archive, folderPath, uuid, tokenManager));
         }
+
+        System.out.println("API " + identifier + " updated successfully");
+        return completeApi(folderPath, ImportStatus.UPDATED, complete);
     }
 
-    private static void updateWsdl(String folderPath, String uuid, String token) {
+    private static boolean updateWsdl(ZipArchiveSource archive, String folderPath, String uuid,
+                                      TokenManager tokenManager) {
 
-        CloseableHttpClient client = null;
+        CloseableHttpResponse response = null;
         try {
             String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
                     ImportExportConstants.WSDL_SEG;
-            client = HttpClientGenerator.getHttpClient();
             HttpPut request = new HttpPut(url);
-            String wsdlFilePath = folderPath.concat(File.separator + ImportExportConstants.WSDL_FILE_NAME);
             //Getting the content of wsdl file
-            byte[] encoded = Files.readAllBytes(Paths.get(wsdlFilePath));
-            String content = new String(encoded, ImportExportConstants.CHARSET);
+            String content = archive.readEntry(entryName(folderPath,
+                    ImportExportConstants.WSDL_FILE_NAME));
             MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
             multipartEntityBuilder.addTextBody(ImportExportConstants.MULTIPART_WSDL_CONTENT,
                     content, ContentType.TEXT_XML);
             HttpEntity entity = multipartEntityBuilder.build();
             request.setEntity(entity);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT + token);
-            client.execute(request);
+            response = tokenManager.execute(request);
+            return isSuccessful(response);
         } catch (UtilException e) {
             log.error("Error occurred while getting a http client for wsdl upload in api " + uuid, e);
         } catch (IOException e) {
             log.error("Error while uploading the wsdl of the API " + uuid, e);
         } finally {
-            IOUtils.closeQuietly(client);
+            IOUtils.closeQuietly(response);
         }
+        return false;
     }
 
     /**
      * Posting API thumbnail
      *
-     * @param folderPath  imported folder location
-     * @param accessToken access token with importing scopes
+     * @param archive     imported archive
+     * @param folderPath  name of the imported API folder
+     * @param tokenManager token manager with importing scopes
      * @param uuid        API uuid
+     * @return true if the thumbnail was uploaded, or the API has no thumbnail
      */
-    private static void addAPIImage(String folderPath, String accessToken, String uuid) {
-        File apiFolder = new File(folderPath);
-        File[] fileArray = apiFolder.listFiles();
-        if (fileArray != null) {
-            for (File file : fileArray) {
-                //Finding the file with name 'icon'
-                String fileName = file.getName();
-                if (fileName.contains(ImportExportConstants.IMG_NAME)) {
-                    File imageFile = new File(folderPath + ImportExportConstants.ZIP_FILE_SEPARATOR +
-                            fileName);
-                    //Converting image in to multipart entity
+    private static boolean addAPIImage(ZipArchiveSource archive, String folderPath,
+                                       TokenManager tokenManager, String uuid) {
+        for (String fileName : archive.list(folderPath)) {
+            //Finding the file with name 'icon'
+            String imageFile = entryName(folderPath, fileName);
+            if (fileName.contains(ImportExportConstants.IMG_NAME) && archive.isFile(imageFile)) {
+                String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
+                        ImportExportConstants.THUMBNAIL_SEG;
+                CloseableHttpResponse response = null;
+                try {
+                    //Converting image in to multipart entity, streamed from the archive
                     MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
-                    multipartEntityBuilder.addBinaryBody(ImportExportConstants.MULTIPART_FILE,
-                            imageFile);
+                    multipartEntityBuilder.addPart(ImportExportConstants.MULTIPART_FILE,
+                            archive.getContentBody(imageFile));
                     HttpEntity entity = multipartEntityBuilder.build();
-                    String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
-                            ImportExportConstants.THUMBNAIL_SEG;
-                    try {
-                        CloseableHttpClient client = HttpClientGenerator.getHttpClient();
-                        HttpPost request = new HttpPost(url);
-                        request.setHeader(HttpHeaders.AUTHORIZATION,
-                                ImportExportConstants.CONSUMER_KEY_SEGMENT + accessToken);
-                        request.setEntity(entity);
-                        client.execute(request);
-                    } catch (UtilException e) {
-                        log.warn("Error occurred while getting ClosableHttpClient for importing " +
-                                "API thumbnail", e);
-                    } catch (IOException e) {
-                        log.error("Error occurred while uploading the API thumbnail", e);
-                    }
-                    break;
+                    HttpPost request = new HttpPost(url);
+                    request.setEntity(entity);
+                    response = tokenManager.execute(request);
+                    return isSuccessful(response);
+                } catch (UtilException e) {
+                    log.warn("Error occurred while getting ClosableHttpClient for importing " +
+                            "API thumbnail", e);
+                } catch (IOException e) {
+                    log.error("Error occurred while uploading the API thumbnail", e);
+                } finally {
+                    IOUtils.closeQuietly(response);
                 }
+                return false;
             }
         }
+        return true;
     }
 
     /**
-     * Adding API documents to the created API
+     * Adding API documents to the created API. Each document and its content is journaled once
+     * added, so an interrupted import does not create the document again
      *
-     * @param folderPath  folder path for imported API folder
-     * @param accessToken access token
+     * @param archive     imported archive
+     * @param folderPath  name of the imported API folder
+     * @param tokenManager token manager
      * @param uuid        uuid of the created API
+     * @return true if all the documents were added
      */
-    private static void addAPIDocuments(String folderPath, String accessToken, String uuid) {
-        String docSummaryLocation = folderPath + ImportExportConstants.DOCUMENT_FILE_LOCATION;
-        CloseableHttpClient client = null;
+    private static boolean addAPIDocuments(ZipArchiveSource archive, String folderPath,
+                                           TokenManager tokenManager, String uuid) {
         try {
-            //Getting the document list from imported folder
-            String jsonContent = FileUtils.readFileToString(new File(docSummaryLocation));
-            JSONParser parser = new JSONParser();
-            JSONObject jsonObject = (JSONObject) parser.parse(jsonContent);
-            JSONArray array = (JSONArray) jsonObject.get(ImportExportConstants.DOC_LIST);
-            if (array.size() == 0) {
+            //Getting the document list from imported archive
+            List<JSONObject> documents = readDocumentList(archive, folderPath);
+            if (documents.isEmpty()) {
                 log.warn("Imported API doesn't have any documents to be publish");
-            } else {
-                for (Object documentArray : array) {
-                    JSONObject document = (JSONObject) documentArray;
-                    //Publishing each document
-                    String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
-                            ImportExportConstants.DOCUMENT_SEG;
-                    client = HttpClientGenerator.getHttpClient();
-                    HttpPost request = new HttpPost(url);
-                    request.setEntity(new StringEntity(document.toString(), ImportExportConstants.CHARSET));
-                    request.setHeader(HttpHeaders.AUTHORIZATION,
-                            ImportExportConstants.CONSUMER_KEY_SEGMENT + accessToken);
-                    request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
-                    CloseableHttpResponse response = client.execute(request);
-                    if (response.getStatusLine().getStatusCode() ==
-                            Response.Status.CREATED.getStatusCode()) {
-                        //If document created successfully withing created API
-                        String responseString = EntityUtils.toString(response.getEntity(),
-                                ImportExportConstants.CHARSET);
-                        //Getting the source type of the created document (inline/file/url)
-                        String sourceType = document.get(ImportExportConstants.SOURCE_TYPE).toString();
-                        if (sourceType.equalsIgnoreCase(ImportExportConstants.FILE_DOC_TYPE) ||
-                                sourceType.equalsIgnoreCase(ImportExportConstants.INLINE_DOC_TYPE)) {
-                            try {
-                                //Adding content of the inline and file type documents
-                                addDocumentContent(folderPath, uuid, responseString, accessToken);
-                            } catch (UtilException e) {
-                                log.error("Error occurred while updating the content of document " +
-                                        document.get(ImportExportConstants.DOC_NAME), e);
-                            }
-                        }
-                    } else {
-                        log.warn("Error occurred while importing the API document " +
-                                document.get(ImportExportConstants.DOC_NAME));
+            }
+            boolean added = true;
+            for (JSONObject document : documents) {
+                String documentName = (String) document.get(ImportExportConstants.DOC_NAME);
+                String step = ImportJournal.DOCUMENT_STEP + documentName;
+                //Publishing each document
+                String documentId = importJournal.getValue(folderPath, step);
+                if (documentId == null) {
+                    documentId = addAPIDocument(tokenManager, uuid, document);
+                    if (documentId == null) {
+                        added = false;
+                        continue;
                     }
+                    importJournal.record(folderPath, step, documentId);
+                }
+                //Adding content of the inline and file type documents
+                String sourceType = (String) document.get(ImportExportConstants.SOURCE_TYPE);
+                String contentStep = step + ImportExportConstants.CONTENT_SEG;
+                if (hasContent(sourceType) && isPending(folderPath, contentStep)) {
+                    added &= recordStep(folderPath, contentStep, addDocumentContent(archive,
+                            folderPath, uuid, documentId, sourceType, documentName, tokenManager));
                 }
             }
+            return added;
         } catch (IOException e) {
             log.error("error occurred while importing the API documents", e);
         } catch (ParseException e) {
@@ -826,146 +1133,397 @@ class APIImporter {
         } catch (UtilException e) {
             log.warn("Error occurred while getting ClosableHttpClient for " +
                     "import API Documents", e);
+        }
+        return false;
+    }
+
+    /**
+     * Read the document list of an API from the imported archive
+     *
+     * @param archive    imported archive
+     * @param folderPath name of the imported API folder
+     * @return documents of the API, empty if the API has no document list
+     */
+    private static List<JSONObject> readDocumentList(ZipArchiveSource archive, String folderPath)
+            throws IOException, ParseException {
+        List<JSONObject> documents = new ArrayList<>();
+        String docSummaryLocation = entryName(folderPath, ImportExportConstants.DOCUMENT_DIRECTORY,
+                ImportExportConstants.DOC_JSON);
+        if (!archive.isFile(docSummaryLocation)) {
+            return documents;
+        }
+        JSONObject jsonObject = (JSONObject) new JSONParser().parse(archive.readEntry(docSummaryLocation));
+        JSONArray array = (JSONArray) jsonObject.get(ImportExportConstants.DOC_LIST);
+        if (array != null) {
+            for (Object document : array) {
+                documents.add((JSONObject) document);
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Create a document of the API, without its content
+     *
+     * @param tokenManager token manager
+     * @param uuid         uuid of the API
+     * @param document     document from the document list of the archive
+     * @return uuid of the created document, or null if the document was not created
+     */
+    private static String addAPIDocument(TokenManager tokenManager, String uuid, JSONObject document)
+            throws IOException, UtilException {
+        String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
+                ImportExportConstants.DOCUMENT_SEG;
+        HttpPost request = new HttpPost(url);
+        request.setEntity(new StringEntity(document.toString(), ImportExportConstants.CHARSET));
+        request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
+        CloseableHttpResponse response = tokenManager.execute(request);
+        int statusCode = response.getStatusLine().getStatusCode();
+        String responseString;
+        try {
+            responseString = EntityUtils.toString(response.getEntity(),
+                    ImportExportConstants.CHARSET);
         } finally {
-            IOUtils.closeQuietly(client);
+            IOUtils.closeQuietly(response);
         }
+        if (statusCode == Response.Status.CREATED.getStatusCode()) {
+            //If document created successfully withing created API
+            return ImportExportUtils.readJsonValues(responseString, ImportExportConstants.DOC_ID);
+        }
+        log.warn("Error occurred while importing the API document " +
+                document.get(ImportExportConstants.DOC_NAME));
+        return null;
     }
 
     /**
-     * Update the content of a document
+     * Check whether documents of the given source type have a content to be uploaded
      *
-     * @param folderPath  folder path to the imported API folder
-     * @param uuid        uuid of the API
-     * @param response    payload for the publishing document
-     * @param accessToken access token
-     */
-    private static void addDocumentContent(String folderPath, String uuid, String response,
-                                           String accessToken) throws UtilException {
-        //Get uuid of the created document
-        String documentId = ImportExportUtils.readJsonValues(response, ImportExportConstants.DOC_ID);
-        //Get source type of the created document
-        String sourceType = ImportExportUtils.readJsonValues(response,
-                ImportExportConstants.SOURCE_TYPE);
-        //Get the name of the created document
-        String documentName = ImportExportUtils.readJsonValues(response,
-                ImportExportConstants.DOC_NAME);
-        String directoryName;
+     * @param sourceType source type of the document (inline/file/url)
+     * @return true for inline and file type documents
+     */
+    private static boolean hasContent(String sourceType) {
+        return ImportExportConstants.FILE_DOC_TYPE.equalsIgnoreCase(sourceType) ||
+                ImportExportConstants.INLINE_DOC_TYPE.equalsIgnoreCase(sourceType);
+    }
+
+    /**
+     * Returns the location of the content of a document within the imported archive
+     *
+     * @param folderPath   name of the imported API folder
+     * @param sourceType   source type of the document
+     * @param documentName name of the document
+     * @return entry name of the document content
+     */
+    private static String getDocumentContentPath(String folderPath, String sourceType,
+                                                 String documentName) {
         //Setting directory name depending on the document source type
-        //TODO chnge order
-        if (sourceType.equals(ImportExportConstants.INLINE_DOC_TYPE)) {
+        String directoryName;
+        if (ImportExportConstants.INLINE_DOC_TYPE.equalsIgnoreCase(sourceType)) {
             directoryName = ImportExportConstants.INLINE_DOCUMENT_DIRECTORY;
         } else {
             directoryName = ImportExportConstants.FILE_DOCUMENT_DIRECTORY;
         }
-        //Getting document content from the imported folder
-        String documentContentPath = folderPath + ImportExportConstants.DIRECTORY_SEPARATOR +
-                ImportExportConstants.DOCUMENT_DIRECTORY + ImportExportConstants.DIRECTORY_SEPARATOR
-                + directoryName + ImportExportConstants.DIRECTORY_SEPARATOR + documentName;
-        File content = new File(documentContentPath);
+        return entryName(folderPath, ImportExportConstants.DOCUMENT_DIRECTORY, directoryName,
+                documentName);
+    }
+
+    /**
+     * Update the content of a document
+     *
+     * @param archive      imported archive
+     * @param folderPath   name of the imported API folder
+     * @param uuid         uuid of the API
+     * @param documentId   uuid of the document
+     * @param sourceType   source type of the document
+     * @param documentName name of the document
+     * @param tokenManager token manager
+     * @return true if the content was uploaded
+     */
+    private static boolean addDocumentContent(ZipArchiveSource archive, String folderPath,
+                                              String uuid, String documentId, String sourceType,
+                                              String documentName, TokenManager tokenManager) {
+        //Getting document content from the imported archive
+        String documentContentPath = getDocumentContentPath(folderPath, sourceType, documentName);
         HttpEntity entity;
-        if (sourceType.equals(ImportExportConstants.FILE_DOC_TYPE)) {
-            //Setting the  file type content to http entity
+        try {
             MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
-            multipartEntityBuilder.addBinaryBody(ImportExportConstants.MULTIPART_FILE, content);
-            entity = multipartEntityBuilder.build();
-        } else {
-            //Setting inline content to http entity
-            try {
-                String inlineContent = IOUtils.toString(new InputStreamReader(new FileInputStream(content),
-                        ImportExportConstants.CHARSET));
-                MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
+            if (ImportExportConstants.FILE_DOC_TYPE.equalsIgnoreCase(sourceType)) {
+                //Setting the file type content to http entity, streamed from the archive
+                multipartEntityBuilder.addPart(ImportExportConstants.MULTIPART_FILE,
+                        archive.getContentBody(documentContentPath));
+            } else {
+                //Setting inline content to http entity
+                String inlineContent = archive.readEntry(documentContentPath);
                 multipartEntityBuilder.addTextBody(ImportExportConstants.MULTIPART_Inline,
                         inlineContent, ContentType.APPLICATION_OCTET_STREAM);
-                entity = multipartEntityBuilder.build();
-            } catch (IOException e) {
-                String errorMsg = "error occurred while converting inline content to multipart " +
-                        "entity of document " + documentName;
-                log.error(errorMsg, e);
-                throw new UtilException(errorMsg, e);
             }
+            entity = multipartEntityBuilder.build();
+        } catch (IOException e) {
+            String errorMsg = "error occurred while converting content to multipart entity of " +
+                    "document " + documentName;
+            log.error(errorMsg, e);
+            return false;
         }
         //Updating the document content
-        String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
-                ImportExportConstants.DOCUMENT_SEG + ImportExportConstants.ZIP_FILE_SEPARATOR +
-                documentId + ImportExportConstants.CONTENT_SEG;
-        CloseableHttpClient client = null;
+        String url = getDocumentUrl(uuid, documentId) + ImportExportConstants.CONTENT_SEG;
+        CloseableHttpResponse httpResponse = null;
         try {
-            client = HttpClientGenerator.getHttpClient();
             HttpPost request = new HttpPost(url);
-            request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT
-                    + accessToken);
             request.setEntity(entity);
-            client.execute(request);
+            httpResponse = tokenManager.execute(request);
+            return isSuccessful(httpResponse);
         } catch (UtilException e) {
             log.warn("Error occurred while getting ClosableHttpClient on " +
                     "importing document content", e);
         } catch (IOException e) {
-            log.error("error occurred while uploading the content of document " +
-                    ImportExportUtils.readJsonValues(response, ImportExportConstants.DOC_NAME), e);
+            log.error("error occurred while uploading the content of document " + documentName, e);
         } finally {
-            IOUtils.closeQuietly(client);
+            IOUtils.closeQuietly(httpResponse);
         }
+        return false;
+    }
+
+    private static String getDocumentUrl(String uuid, String documentId) {
+        return config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
+                ImportExportConstants.DOCUMENT_SEG + ImportExportConstants.ZIP_FILE_SEPARATOR +
+                documentId;
     }
 
     /**
-     * Update the documents of a existing API
+     * Update the documents of a existing API to match the documents of the imported archive.
+     * Documents are matched by name, and only the documents which differ from the archive are
+     * created, updated or deleted
      *
      * @param uuid       uuid of the API
      * @param apiId      api id of the API(provider-name-version)
-     * @param token      access token
-     * @param folderPath folder path to the imported folder
+     * @param tokenManager token manager
+     * @param archive    imported archive
+     * @param folderPath name of the imported API folder
+     * @return true if the documents were updated
      */
-    private static void updateAPIDocumentation(String uuid, String apiId, String token,
-                                               String folderPath) {
+    private static boolean updateAPIDocumentation(String uuid, String apiId,
+                                                  TokenManager tokenManager,
+                                                  ZipArchiveSource archive, String folderPath) {
         //getting the document list of existing API
         String url = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
                 ImportExportConstants.DOCUMENT_SEG;
-        CloseableHttpClient client = null;
-        try {
-            client = HttpClientGenerator.getHttpClient();
-        } catch (UtilException e) {
-            String errorMsg = "Error while getting ClosableHttpClient for updating API documents";
-            log.warn(errorMsg, e);
-        }
         HttpGet request = new HttpGet(url);
-        request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT +
-                token);
+        CloseableHttpResponse response = null;
         try {
-            HttpResponse response = client.execute(request);
+            response = tokenManager.execute(request);
             if (response.getStatusLine().getStatusCode() == Response.Status.OK.getStatusCode()) {
-                String responseString = EntityUtils.toString(response.getEntity());
-                //parsing string array of documents in to a jsonArray
-                JSONParser parser = new JSONParser();
-                JSONObject jsonObj = (JSONObject) parser.parse(responseString);
+                String responseString = EntityUtils.toString(response.getEntity(),
+                        ImportExportConstants.CHARSET);
+                IOUtils.closeQuietly(response);
+                //Existing documents of the API by name
+                JSONObject jsonObj = (JSONObject) new JSONParser().parse(responseString);
                 JSONArray array = (JSONArray) jsonObj.get(ImportExportConstants.DOC_LIST);
-                //accessing each document in the document array
-                for (Object anArray : array) {
+                Map<Object, JSONObject> existingDocuments = new LinkedHashMap<>();
+                for (Object anArray : array != null ? array : new JSONArray()) {
                     JSONObject obj = (JSONObject) anArray;
-                    //getting document id and delete each existing document
-                    String documentId = (String) obj.get(ImportExportConstants.DOC_ID);
-                    String deleteUrl = config.getPublisherUrl() + ImportExportConstants.APIS + uuid +
-                            ImportExportConstants.DOCUMENT_SEG +
-                            ImportExportConstants.ZIP_FILE_SEPARATOR + documentId;
-                    CloseableHttpClient httpclient =
-                            HttpClientGenerator.getHttpClient();
-                    HttpDelete deleteRequest = new HttpDelete(deleteUrl);
-                    deleteRequest.setHeader(HttpHeaders.AUTHORIZATION,
-                            ImportExportConstants.CONSUMER_KEY_SEGMENT + token);
-                    httpclient.execute(deleteRequest);
+                    existingDocuments.put(obj.get(ImportExportConstants.DOC_NAME), obj);
                 }
-                //adding new documentation
-                addAPIDocuments(folderPath, token, uuid);
+                //Reading the archived documents before changing anything
+                List<JSONObject> documents = readDocumentList(archive, folderPath);
+                int created = 0;
+                int updated = 0;
+                int failed = 0;
+                boolean complete = true;
+                for (JSONObject document : documents) {
+                    JSONObject existing = existingDocuments.remove(
+                            document.get(ImportExportConstants.DOC_NAME));
+                    if (existing == null) {
+                        String documentId = addAPIDocument(tokenManager, uuid, document);
+                        String sourceType = (String) document.get(ImportExportConstants.SOURCE_TYPE);
+                        if (documentId == null) {
+                            complete = false;
+                            failed++;
+                            continue;
+                        }
+                        if (hasContent(sourceType)) {
+                            complete &= addDocumentContent(archive, folderPath, uuid, documentId,
+                                    sourceType, (String) document.get(ImportExportConstants.DOC_NAME),
+                                    tokenManager);
+                        }
+                        created++;
+                    } else {
+                        try {
+                            if (updateAPIDocument(archive, folderPath, tokenManager, uuid, document,
+                                    existing)) {
+                                updated++;
+                            }
+                        } catch (IOException | UtilException e) {
+                            //Left incomplete, so the documents are updated again on resume
+                            log.warn("Error occurred while updating a document of API " + apiId,
+                                    e);
+                            complete = false;
+                            failed++;
+                        }
+                    }
+                }
+                //Deleting the documents which are not in the archive
+                int deleted = 0;
+                for (JSONObject existing : existingDocuments.values()) {
+                    String documentId = (String) existing.get(ImportExportConstants.DOC_ID);
+                    HttpDelete deleteRequest = new HttpDelete(getDocumentUrl(uuid, documentId));
+                    CloseableHttpResponse deleteResponse = tokenManager.execute(deleteRequest);
+                    try {
+                        if (isSuccessful(deleteResponse)) {
+                            deleted++;
+                        } else {
+                            log.warn("Error occurred while deleting the API document " +
+                                    existing.get(ImportExportConstants.DOC_NAME) + ", status " +
+                                    deleteResponse.getStatusLine().getStatusCode());
+                            complete = false;
+                        }
+                    } finally {
+                        IOUtils.closeQuietly(deleteResponse);
+                    }
+                }
+                log.info("Documents of API " + apiId + " : created " + created + " updated " +
+                        updated + " deleted " + deleted + " unchanged " +
+                        (documents.size() - created - updated - failed) + " failed " +
+                        (failed + existingDocuments.size() - deleted));
+                return complete;
             } else {
                 String errorMsg = "Error occurred while getting the document list of API " + apiId;
                 log.warn(errorMsg);
             }
-        } catch (IOException | ParseException e) {
+        } catch (IOException | ParseException | UtilException e) {
             String errorMsg = "Error occurred while updating the documents of API " + apiId;
             log.warn(errorMsg, e);
-        } catch (UtilException e) {
-            String errorMsg = "Error occurred while getting a ClosableHttpClient on updating" +
-                    " the API documents";
-            log.warn(errorMsg, e);
+        } finally {
+            IOUtils.closeQuietly(response);
         }
+        return false;
+    }
+
+    /**
+     * Update an existing document to match the archived document. The metadata is updated if any
+     * of its archived values differ, and the content is uploaded if its digest differs from the
+     * digest of the existing content
+     *
+     * @param archive      imported archive
+     * @param folderPath   name of the imported API folder
+     * @param tokenManager token manager
+     * @param uuid         uuid of the API
+     * @param document     document from the document list of the archive
+     * @param existing     existing document of the API with the same name
+     * @return true if the document was updated, false if it was unchanged
+     * @throws UtilException if the metadata or the content of the document could not be updated
+     */
+    private static boolean updateAPIDocument(ZipArchiveSource archive, String folderPath,
+                                             TokenManager tokenManager, String uuid,
+                                             JSONObject document, JSONObject existing)
+            throws IOException, UtilException {
+        String documentId = (String) existing.get(ImportExportConstants.DOC_ID);
+        String documentName = (String) document.get(ImportExportConstants.DOC_NAME);
+        boolean updated = false;
+        if (!isSameMetadata(document, existing)) {
+            //Archived values of the document, with the id of the existing document
+            Map<Object, Object> payload = new LinkedHashMap<>();
+            for (Object key : document.keySet()) {
+                payload.put(key, document.get(key));
+            }
+            payload.put(ImportExportConstants.DOC_ID, documentId);
+            HttpPut request = new HttpPut(getDocumentUrl(uuid, documentId));
+            request.setEntity(new StringEntity(JSONValue.toJSONString(payload),
+                    ImportExportConstants.CHARSET));
+            request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
+            CloseableHttpResponse response = tokenManager.execute(request);
+            int statusCode = response.getStatusLine().getStatusCode();
+            IOUtils.closeQuietly(response);
+            if (statusCode != Response.Status.OK.getStatusCode()) {
+                throw new UtilException("Error occurred while updating the API document " +
+                        documentName + ", status " + statusCode);
+            }
+            updated = true;
+        }
+        String sourceType = (String) document.get(ImportExportConstants.SOURCE_TYPE);
+        if (hasContent(sourceType)) {
+            String documentContentPath = getDocumentContentPath(folderPath, sourceType, documentName);
+            if (archive.isFile(documentContentPath) &&
+                    !isSameContent(archive, documentContentPath, uuid, documentId, tokenManager)) {
+                if (!addDocumentContent(archive, folderPath, uuid, documentId, sourceType,
+                        documentName, tokenManager)) {
+                    throw new UtilException("Error occurred while updating the content of " +
+                            "document " + documentName);
+                }
+                updated = true;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Check whether the existing document has the same values as the archived document, other
+     * than the document id
+     *
+     * @param document archived document
+     * @param existing existing document
+     * @return true if all the archived values are the same
+     */
+    private static boolean isSameMetadata(JSONObject document, JSONObject existing) {
+        for (Object key : document.keySet()) {
+            if (!ImportExportConstants.DOC_ID.equals(key) &&
+                    !Objects.equals(document.get(key), existing.get(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the content of an existing document is the same as the archived content, by
+     * comparing their SHA-256 digests. The existing content is not read if its length differs from
+     * the archived content, and is requested conditionally through the http cache, so an unchanged
+     * content cached by an earlier run is not downloaded again
+     *
+     * @param archive             imported archive
+     * @param documentContentPath location of the document content within the archive
+     * @param uuid                uuid of the API
+     * @param documentId          uuid of the existing document
+     * @param tokenManager        token manager
+     * @return true if the contents are the same
+     */
+    private static boolean isSameContent(ZipArchiveSource archive, String documentContentPath,
+                                         String uuid, String documentId, TokenManager tokenManager)
+            throws IOException, UtilException {
+        HttpGet request = new HttpGet(getDocumentUrl(uuid, documentId) +
+                ImportExportConstants.CONTENT_SEG);
+        CloseableHttpResponse response = RequestExecutor.await(
+                HttpCache.getInstance().executeAsync(tokenManager, request));
+        try {
+            HttpEntity entity = response.getEntity();
+            if (response.getStatusLine().getStatusCode() != Response.Status.OK.getStatusCode() ||
+                    entity == null) {
+                return false;
+            }
+            long archivedSize = archive.getSize(documentContentPath);
+            if (entity.getContentLength() >= 0 && archivedSize >= 0 &&
+                    entity.getContentLength() != archivedSize) {
+                return false;
+            }
+            InputStream archivedContent = archive.openEntry(documentContentPath);
+            try {
+                return sha256Hex(archivedContent).equals(sha256Hex(entity.getContent()));
+            } finally {
+                IOUtils.closeQuietly(archivedContent);
+            }
+        } finally {
+            IOUtils.closeQuietly(response);
+        }
+    }
+
+    /**
+     * Compute the SHA-256 digest of the stream, reading it with a pooled buffer
+     *
+     * @param content stream to read to the end, not closed
+     * @return hex encoded digest
+     */
+    private static String sha256Hex(InputStream content) throws IOException {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        BufferPool.copy(new DigestInputStream(content, digest), NullOutputStream.NULL_OUTPUT_STREAM);
+        return Hex.encodeHexString(digest.digest());
     }
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access token issued by the token endpoint, along with its refresh token, expiry time and the
+ * credentials of the client it was issued to
+ */
+class AccessToken {
+
+    private final String token;
+    private final String refreshToken;
+    private final long expiresAt;
+    private final String consumerCredentials;
+
+    AccessToken(String token, String refreshToken, long expiresAt, String consumerCredentials) {
+        this.token = token;
+        this.refreshToken = refreshToken;
+        this.expiresAt = expiresAt;
+        this.consumerCredentials = consumerCredentials;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    String getRefreshToken() {
+        return refreshToken;
+    }
+
+    long getExpiresAt() {
+        return expiresAt;
+    }
+
+    String getConsumerCredentials() {
+        return consumerCredentials;
+    }
+
+    /**
+     * Check whether the token expires within the expiry margin, and should be refreshed before use
+     *
+     * @return true if the token is about to expire
+     */
+    boolean isExpiring() {
+        return expiresAt - TimeUnit.SECONDS.toMillis(ImportExportConstants.TOKEN_EXPIRY_MARGIN_SECONDS)
+                <= System.currentTimeMillis();
+    }
+}
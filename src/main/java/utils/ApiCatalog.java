@@ -0,0 +1,126 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.simple.JSONObject;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Catalog of the APIs existing in the publisher, by their provider, name and version. The catalog
+ * is listed once before importing, so that each imported API goes straight to be created or
+ * updated
+ */
+class ApiCatalog {
+    private static final Log log = LogFactory.getLog(ApiCatalog.class);
+
+    //Existing APIs by provider, name and version
+    private final ConcurrentMap<String, CatalogEntry> apis = new ConcurrentHashMap<>();
+
+    /**
+     * Create an empty catalog, for when the existing APIs could not be listed
+     *
+     * @return empty catalog
+     */
+    static ApiCatalog empty() {
+        return new ApiCatalog();
+    }
+
+    /**
+     * Create a catalog listing the existing APIs of the publisher
+     *
+     * @param url          url of the APIs of the publisher
+     * @param tokenManager token manager with importing scopes
+     * @return catalog of the existing APIs
+     * @throws UtilException if unable to list the APIs
+     */
+    static ApiCatalog load(String url, TokenManager tokenManager) throws UtilException {
+        ApiCatalog catalog = new ApiCatalog();
+        for (Object api : ImportExportUtils.listResources(url, tokenManager)) {
+            JSONObject apiObj = (JSONObject) api;
+            catalog.put(apiObj.get(ImportExportConstants.API_PROVIDER),
+                    apiObj.get(ImportExportConstants.API_NAME),
+                    apiObj.get(ImportExportConstants.API_VERSION),
+                    new CatalogEntry((String) apiObj.get(ImportExportConstants.UUID),
+                            apiObj.get(ImportExportConstants.LAST_UPDATED)));
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Listed " + catalog.apis.size() + " existing APIs");
+        }
+        return catalog;
+    }
+
+    /**
+     * Returns an existing API
+     *
+     * @param provider provider of the API
+     * @param name     name of the API
+     * @param version  version of the API
+     * @return catalog entry of the API, or null if the API was not listed
+     */
+    CatalogEntry get(Object provider, Object name, Object version) {
+        return apis.get(getKey(provider, name, version));
+    }
+
+    /**
+     * Record an API, created while importing
+     *
+     * @param provider provider of the API
+     * @param name     name of the API
+     * @param version  version of the API
+     * @param entry    catalog entry of the API
+     */
+    void put(Object provider, Object name, Object version, CatalogEntry entry) {
+        if (entry.getUuid() != null) {
+            apis.put(getKey(provider, name, version), entry);
+        }
+    }
+
+    private static String getKey(Object provider, Object name, Object version) {
+        return provider + "-" + name + "-" + version;
+    }
+
+    /**
+     * An existing API of the catalog
+     */
+    static class CatalogEntry {
+        private final String uuid;
+        private final Object lastUpdated;
+
+        CatalogEntry(String uuid, Object lastUpdated) {
+            this.uuid = uuid;
+            this.lastUpdated = lastUpdated;
+        }
+
+        String getUuid() {
+            return uuid;
+        }
+
+        /**
+         * Returns the time the API was last updated, as given by the publisher
+         *
+         * @return last updated time, or null if the publisher does not give it
+         */
+        String getLastUpdated() {
+            return lastUpdated != null ? String.valueOf(lastUpdated) : null;
+        }
+    }
+}
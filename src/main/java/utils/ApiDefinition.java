@@ -0,0 +1,189 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * API definition (api.json) parsed once, and carried through the export or import of the API. The
+ * values needed on the way are read from the parsed document, changes are made on it, and it is
+ * serialized once when written in to the archive. Fields keep the order of the original document
+ */
+class ApiDefinition {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> DOCUMENT_TYPE =
+            new TypeReference<Map<String, Object>>() {
+            };
+    private static final TypeReference<List<Map<String, Object>>> SEQUENCES_TYPE =
+            new TypeReference<List<Map<String, Object>>>() {
+            };
+
+    private final Map<String, Object> document;
+
+    private ApiDefinition(Map<String, Object> document) {
+        this.document = document;
+    }
+
+    /**
+     * Parse an API definition from the given stream, detecting its unicode encoding
+     *
+     * @param content stream to read the API definition from, closed after reading
+     * @return parsed API definition
+     * @throws IOException if the content is not a json object
+     */
+    static ApiDefinition parse(InputStream content) throws IOException {
+        return new ApiDefinition(mapper.<Map<String, Object>>readValue(content, DOCUMENT_TYPE));
+    }
+
+    /**
+     * Parse an API definition from the given string
+     *
+     * @param content API definition
+     * @return parsed API definition
+     * @throws IOException if the content is not a json object
+     */
+    static ApiDefinition parse(String content) throws IOException {
+        return new ApiDefinition(mapper.<Map<String, Object>>readValue(content, DOCUMENT_TYPE));
+    }
+
+    /**
+     * Read only the mediation sequences of an API definition, skipping over the rest of the
+     * document without building it
+     *
+     * @param content stream to read the API definition from
+     * @return mediation sequences, empty if the API has none
+     */
+    static List<Map<String, Object>> readSequences(InputStream content) throws IOException {
+        JsonParser parser = mapper.getJsonFactory().createJsonParser(content);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("API definition is not a json object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (ImportExportConstants.SEQUENCES_ELEM.equals(field) &&
+                        value == JsonToken.START_ARRAY) {
+                    return mapper.readValue(parser, SEQUENCES_TYPE);
+                }
+                parser.skipChildren();
+            }
+            return Collections.emptyList();
+        } finally {
+            parser.close();
+        }
+    }
+
+    String getName() {
+        return getString(ImportExportConstants.API_NAME);
+    }
+
+    String getVersion() {
+        return getString(ImportExportConstants.API_VERSION);
+    }
+
+    String getProvider() {
+        return getString(ImportExportConstants.API_PROVIDER);
+    }
+
+    String getUuid() {
+        return getString(ImportExportConstants.UUID);
+    }
+
+    String getStatus() {
+        return getString(ImportExportConstants.STATUS_CONSTANT);
+    }
+
+    String getThumbnailUri() {
+        return getString(ImportExportConstants.THUMBNAIL);
+    }
+
+    String getWsdlUri() {
+        return getString(ImportExportConstants.WSDL_URI);
+    }
+
+    /**
+     * Returns the time the API was last updated, as given by the publisher
+     *
+     * @return last updated time, or null if the publisher does not give it
+     */
+    String getLastUpdated() {
+        Object value = document.get(ImportExportConstants.LAST_UPDATED);
+        return value != null ? String.valueOf(value) : null;
+    }
+
+    /**
+     * Returns the mediation sequences of the API
+     *
+     * @return mediation sequences, empty if the API has none
+     */
+    @SuppressWarnings("unchecked")
+    List<Map<String, Object>> getSequences() {
+        Object sequences = document.get(ImportExportConstants.SEQUENCES_ELEM);
+        if (sequences instanceof List) {
+            return (List<Map<String, Object>>) sequences;
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Set the status of the API, if the definition has a status
+     *
+     * @param status new status
+     */
+    void setStatus(String status) {
+        replace(ImportExportConstants.STATUS_CONSTANT, status);
+    }
+
+    /**
+     * Clear the scopes of the API, if the definition has scopes
+     */
+    void clearScope() {
+        replace(ImportExportConstants.SCOPE_CONSTANT, null);
+    }
+
+    private void replace(String key, Object value) {
+        if (document.containsKey(key)) {
+            document.put(key, value);
+        }
+    }
+
+    private String getString(String key) {
+        Object value = document.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * Serialize the API definition as pretty printed json
+     *
+     * @return UTF-8 encoded API definition
+     */
+    byte[] toFormattedJson() throws IOException {
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(document);
+    }
+}
@@ -40,11 +40,36 @@ class ApiImportExportConfiguration {
     private String clientName;
     private String zipFile;
     private boolean updateApi;
+    private int maxConnections = ImportExportConstants.DEFAULT_MAX_CONNECTIONS;
+    private int maxConnectionsPerRoute = ImportExportConstants.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private int keepAliveSeconds = ImportExportConstants.DEFAULT_KEEP_ALIVE_SECONDS;
+    private int idleConnectionSeconds = ImportExportConstants.DEFAULT_IDLE_CONNECTION_SECONDS;
+    private String httpTransport = ImportExportConstants.DEFAULT_HTTP_TRANSPORT;
+    private int reactorThreads = ImportExportConstants.DEFAULT_REACTOR_THREADS;
+    private boolean responseCompression = ImportExportConstants.DEFAULT_RESPONSE_COMPRESSION;
+    private boolean requestCompression = ImportExportConstants.DEFAULT_REQUEST_COMPRESSION;
+    private boolean httpCache = ImportExportConstants.DEFAULT_HTTP_CACHE;
+    private String httpCachePath;
+    private int httpCacheSize = ImportExportConstants.DEFAULT_HTTP_CACHE_SIZE;
+    private int readRequestRate = ImportExportConstants.DEFAULT_READ_REQUEST_RATE;
+    private int writeRequestRate = ImportExportConstants.DEFAULT_WRITE_REQUEST_RATE;
+    private int maxRetries = ImportExportConstants.DEFAULT_MAX_RETRIES;
+    private int retryBackoffMillis = ImportExportConstants.DEFAULT_RETRY_BACKOFF_MILLIS;
+    private int circuitFailureThreshold = ImportExportConstants.DEFAULT_CIRCUIT_FAILURE_THRESHOLD;
+    private int circuitOpenSeconds = ImportExportConstants.DEFAULT_CIRCUIT_OPEN_SECONDS;
+    private boolean adaptiveConcurrency = ImportExportConstants.DEFAULT_ADAPTIVE_CONCURRENCY;
+    private int threads = ImportExportConstants.DEFAULT_THREADS;
+    private int ioThreads = ImportExportConstants.DEFAULT_IO_THREADS;
+    private int compressionThreads = ImportExportConstants.DEFAULT_COMPRESSION_THREADS;
+    private int compressionLevel = ImportExportConstants.DEFAULT_COMPRESSION_LEVEL;
+    private boolean cacheCredentials = ImportExportConstants.DEFAULT_CACHE_CREDENTIALS;
+    private String credentialStorePath;
+    private String baselineArchive;
 
 
     private static ApiImportExportConfiguration instance;
 
-    static ApiImportExportConfiguration getInstance() {
+    static synchronized ApiImportExportConfiguration getInstance() {
         if (instance == null) {
             instance = new ApiImportExportConfiguration();
         }
@@ -172,4 +197,203 @@ class ApiImportExportConfiguration {
         return updateApi;
     }
 
+    void setMaxConnections(int value) {
+        maxConnections = value;
+    }
+
+    int getMaxConnections() {
+        return maxConnections;
+    }
+
+    void setMaxConnectionsPerRoute(int value) {
+        maxConnectionsPerRoute = value;
+    }
+
+    int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    void setKeepAliveSeconds(int value) {
+        keepAliveSeconds = value;
+    }
+
+    int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    void setIdleConnectionSeconds(int value) {
+        idleConnectionSeconds = value;
+    }
+
+    int getIdleConnectionSeconds() {
+        return idleConnectionSeconds;
+    }
+
+    void setHttpTransport(String value) {
+        httpTransport = value;
+    }
+
+    String getHttpTransport() {
+        return httpTransport;
+    }
+
+    void setReactorThreads(int value) {
+        reactorThreads = value;
+    }
+
+    int getReactorThreads() {
+        return reactorThreads;
+    }
+
+    void setResponseCompression(boolean value) {
+        responseCompression = value;
+    }
+
+    boolean getResponseCompression() {
+        return responseCompression;
+    }
+
+    void setRequestCompression(boolean value) {
+        requestCompression = value;
+    }
+
+    boolean getRequestCompression() {
+        return requestCompression;
+    }
+
+    void setHttpCache(boolean value) {
+        httpCache = value;
+    }
+
+    boolean getHttpCache() {
+        return httpCache;
+    }
+
+    void setHttpCachePath(String value) {
+        httpCachePath = value;
+    }
+
+    String getHttpCachePath() {
+        return httpCachePath;
+    }
+
+    void setHttpCacheSize(int value) {
+        httpCacheSize = value;
+    }
+
+    int getHttpCacheSize() {
+        return httpCacheSize;
+    }
+
+    void setReadRequestRate(int value) {
+        readRequestRate = value;
+    }
+
+    int getReadRequestRate() {
+        return readRequestRate;
+    }
+
+    void setWriteRequestRate(int value) {
+        writeRequestRate = value;
+    }
+
+    int getWriteRequestRate() {
+        return writeRequestRate;
+    }
+
+    void setMaxRetries(int value) {
+        maxRetries = value;
+    }
+
+    int getMaxRetries() {
+        return maxRetries;
+    }
+
+    void setRetryBackoffMillis(int value) {
+        retryBackoffMillis = value;
+    }
+
+    int getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    void setCircuitFailureThreshold(int value) {
+        circuitFailureThreshold = value;
+    }
+
+    int getCircuitFailureThreshold() {
+        return circuitFailureThreshold;
+    }
+
+    void setCircuitOpenSeconds(int value) {
+        circuitOpenSeconds = value;
+    }
+
+    int getCircuitOpenSeconds() {
+        return circuitOpenSeconds;
+    }
+
+    void setAdaptiveConcurrency(boolean value) {
+        adaptiveConcurrency = value;
+    }
+
+    boolean getAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    void setThreads(int value) {
+        threads = value;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    void setIoThreads(int value) {
+        ioThreads = value;
+    }
+
+    int getIoThreads() {
+        return ioThreads;
+    }
+
+    void setCompressionThreads(int value) {
+        compressionThreads = value;
+    }
+
+    int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    void setCompressionLevel(int value) {
+        compressionLevel = value;
+    }
+
+    int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    void setCacheCredentials(boolean value) {
+        cacheCredentials = value;
+    }
+
+    boolean getCacheCredentials() {
+        return cacheCredentials;
+    }
+
+    void setCredentialStorePath(String value) {
+        credentialStorePath = value;
+    }
+
+    String getCredentialStorePath() {
+        return credentialStorePath;
+    }
+
+    void setBaselineArchive(String value) {
+        baselineArchive = value;
+    }
+
+    String getBaselineArchive() {
+        return baselineArchive;
+    }
 }
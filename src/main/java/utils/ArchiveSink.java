@@ -0,0 +1,52 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Destination of the entries of an exported archive. Entry names are relative to the root of the
+ * archive, and use '/' as the separator
+ */
+interface ArchiveSink {
+
+    /**
+     * Add an entry with the given content
+     *
+     * @param name    name of the entry
+     * @param content content of the entry
+     */
+    void addEntry(String name, byte[] content) throws IOException;
+
+    /**
+     * Add an entry with the content read from the given stream. The stream is not closed
+     *
+     * @param name    name of the entry
+     * @param content stream to read the content of the entry from
+     */
+    void addEntry(String name, InputStream content) throws IOException;
+
+    /**
+     * Add an entry copied as it is from the archive of a previous export
+     *
+     * @param name     name of the entry, in both archives
+     * @param baseline archive to copy the entry from
+     */
+    void copyEntry(String name, BaselineArchive baseline) throws IOException;
+}
@@ -0,0 +1,320 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.protocol.RequestAcceptEncoding;
+import org.apache.http.client.protocol.ResponseContentEncoding;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.entity.ContentOutputStream;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SharedOutputBuffer;
+import org.apache.http.util.EntityUtils;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport sending the requests with the non-blocking http client. All the connections are
+ * multiplexed over a few reactor threads, so the requests in flight are bounded only by the
+ * connection pool and not by the threads of the tool. Responses are read by the reactor, in to
+ * memory or to a temporary file if large, and handed over to the callers on a separate thread so a
+ * slow caller never stalls the other connections.
+ */
+class AsyncHttpTransport implements HttpTransport {
+
+    private static final Log log = LogFactory.getLog(AsyncHttpTransport.class);
+
+    private final CloseableHttpAsyncClient client;
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final ExecutorService callbackExecutor;
+    private final ResponseContentEncoding contentEncoding;
+
+    /**
+     * Create the non-blocking transport with its connection pool, and start its reactor
+     *
+     * @param config     ApiImportExportConfiguration object
+     * @param sslContext SSL context of the https connections
+     * @throws IOException if unable to start the reactor
+     */
+    AsyncHttpTransport(ApiImportExportConfiguration config, SSLContext sslContext)
+            throws IOException {
+        IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(config.getReactorThreads())
+                .setSoKeepAlive(true)
+                .build();
+        Registry<SchemeIOSessionStrategy> sessionStrategyRegistry =
+                RegistryBuilder.<SchemeIOSessionStrategy>create()
+                        .register("http", NoopIOSessionStrategy.INSTANCE)
+                        .register("https", new SSLIOSessionStrategy(sslContext,
+                                SSLIOSessionStrategy.ALLOW_ALL_HOSTNAME_VERIFIER))
+                        .build();
+        connectionManager = new PoolingNHttpClientConnectionManager(
+                new DefaultConnectingIOReactor(reactorConfig), sessionStrategyRegistry);
+        connectionManager.setMaxTotal(config.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+
+        HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(new HttpClientGenerator.KeepAliveStrategy(
+                        config.getKeepAliveSeconds()));
+        if (config.getResponseCompression()) {
+            //Unlike the blocking client, the non-blocking client neither requests compressed
+            //responses nor decompresses them by itself
+            builder.addInterceptorLast(new RequestAcceptEncoding());
+            contentEncoding = new ResponseContentEncoding();
+        } else {
+            contentEncoding = null;
+        }
+        client = builder.build();
+        client.start();
+
+        final AtomicInteger count = new AtomicInteger();
+        callbackExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "http-callback-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.debug("Non-blocking http transport started with " + config.getReactorThreads() +
+                " reactor threads");
+    }
+
+    @Override
+    public CompletableFuture<CloseableHttpResponse> send(HttpUriRequest request) {
+        final CompletableFuture<CloseableHttpResponse> response = new CompletableFuture<>();
+        client.execute(createProducer(request), new SpoolingResponseConsumer(),
+                new FutureCallback<HttpResponse>() {
+                    @Override
+                    public void completed(HttpResponse result) {
+                        BufferedResponse bufferedResponse = new BufferedResponse(result);
+                        if (contentEncoding != null) {
+                            try {
+                                //Decompressed while the caller reads the content
+                                contentEncoding.process(bufferedResponse, HttpClientContext.create());
+                            } catch (HttpException | IOException e) {
+                                IOUtils.closeQuietly(bufferedResponse);
+                                complete(response, null, new ClientProtocolException(e));
+                                return;
+                            }
+                        }
+                        complete(response, bufferedResponse, null);
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        complete(response, null, e);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        complete(response, null, new IOException("Request " + request.getMethod() +
+                                " " + request.getURI() + " cancelled"));
+                    }
+                });
+        return response;
+    }
+
+    /**
+     * Complete the future of a request outside the reactor thread, or on the calling thread once
+     * the transport is closed
+     */
+    private void complete(CompletableFuture<CloseableHttpResponse> future,
+                          CloseableHttpResponse response, Exception failure) {
+        Runnable completion = () -> {
+            if (failure == null) {
+                future.complete(response);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        };
+        try {
+            callbackExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
+
+    /**
+     * The non-blocking client reads the request entity from its content stream, which entities
+     * written only to an output stream, such as multipart forms, do not provide. Such an entity is
+     * written by a separate thread in to a bounded buffer, which the reactor sends as it fills, so
+     * uploads are never copied in to memory as a whole
+     *
+     * @param request request to be sent
+     * @return producer of the request
+     */
+    private HttpAsyncRequestProducer createProducer(HttpUriRequest request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntityEnclosingRequest enclosingRequest = (HttpEntityEnclosingRequest) request;
+            HttpEntity entity = enclosingRequest.getEntity();
+            if (entity != null && !(entity instanceof AbstractHttpEntity)) {
+                return new StreamingRequestProducer(URIUtils.extractHost(request.getURI()),
+                        enclosingRequest, new StreamingContentProducer(entity));
+            }
+        }
+        return HttpAsyncMethods.create(request);
+    }
+
+    @Override
+    public void setPoolLimits(int maxConnections, int maxConnectionsPerRoute) {
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+    }
+
+    @Override
+    public void closeIdleConnections(int idleSeconds) {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+        callbackExecutor.shutdown();
+        log.debug("Non-blocking http transport closed");
+    }
+
+    /**
+     * Producer of a request with its entity streamed by a {@link StreamingContentProducer}
+     */
+    private static class StreamingRequestProducer extends BasicAsyncRequestProducer {
+
+        StreamingRequestProducer(HttpHost target, HttpEntityEnclosingRequest request,
+                                 HttpAsyncContentProducer producer) {
+            super(target, request, producer);
+        }
+    }
+
+    /**
+     * Content of a request entity, written to a bounded buffer by a separate thread and sent by
+     * the reactor. The writer waits while the buffer is full, and the reactor stops asking for
+     * content while it is empty. Each attempt of a request writes the entity again
+     */
+    private class StreamingContentProducer implements HttpAsyncContentProducer {
+
+        private final HttpEntity entity;
+        private final SharedOutputBuffer buffer = new SharedOutputBuffer(
+                ImportExportConstants.ARCHIVE_BUFFER_SIZE, HeapByteBufferAllocator.INSTANCE);
+        private boolean started;
+        private volatile boolean closed;
+        private volatile IOException failure;
+
+        StreamingContentProducer(HttpEntity entity) {
+            this.entity = entity;
+        }
+
+        @Override
+        public void produceContent(ContentEncoder encoder, final IOControl ioControl)
+                throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            buffer.produceContent(encoder, ioControl);
+            if (!started) {
+                started = true;
+                try {
+                    callbackExecutor.execute(() -> write(ioControl));
+                } catch (RejectedExecutionException e) {
+                    throw new IOException("Transport is already closed", e);
+                }
+            }
+        }
+
+        private void write(IOControl ioControl) {
+            OutputStream outputStream = new ContentOutputStream(buffer);
+            try {
+                entity.writeTo(outputStream);
+                //Marks the end of the content
+                outputStream.close();
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    //Failing the request at the next output event
+                    failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                    ioControl.requestOutput();
+                }
+            }
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            //Releases the writer, if waiting for the request which is no longer sent
+            buffer.shutdown();
+        }
+    }
+
+    /**
+     * Response read by the reactor. Closing it discards the content not consumed
+     */
+    private static class BufferedResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        BufferedResponse(HttpResponse response) {
+            super(response.getStatusLine());
+            setHeaders(response.getAllHeaders());
+            setEntity(response.getEntity());
+        }
+
+        @Override
+        public void close() throws IOException {
+            EntityUtils.consume(getEntity());
+        }
+    }
+}
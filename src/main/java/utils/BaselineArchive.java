@@ -0,0 +1,335 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Archive of a previous export, used as the baseline of an incremental export. The central
+ * directory of the zip file is read once, and the compressed data of an entry is copied in to the
+ * new archive as it is, without inflating and deflating it again
+ */
+class BaselineArchive implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int FLAG_ENCRYPTED = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final Charset UTF8 = Charset.forName(ImportExportConstants.CHARSET);
+
+    private final File archiveFile;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final Map<String, RawEntry> entries = new HashMap<>();
+    private ExportManifest manifest;
+
+    private BaselineArchive(File archiveFile) throws IOException {
+        this.archiveFile = archiveFile;
+        this.file = new RandomAccessFile(archiveFile, "r");
+        this.channel = file.getChannel();
+    }
+
+    /**
+     * Open the archive of a previous export, reading its central directory and manifest
+     *
+     * @param archiveFile zip file of the previous export
+     * @return baseline archive
+     * @throws IOException if the file is not a zip file, or has no manifest
+     */
+    static BaselineArchive open(File archiveFile) throws IOException {
+        BaselineArchive archive = new BaselineArchive(archiveFile);
+        try {
+            archive.readCentralDirectory();
+            archive.readManifest();
+            return archive;
+        } catch (IOException e) {
+            IOUtils.closeQuietly(archive);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the manifest of the previous export
+     *
+     * @return manifest
+     */
+    ExportManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Check whether the archive has an entry with the given name, which can be copied
+     *
+     * @param name name of the entry
+     * @return true if the entry exists
+     */
+    boolean hasEntry(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Returns the entry with the given name
+     *
+     * @param name name of the entry
+     * @return entry
+     * @throws FileNotFoundException if the archive has no such entry
+     */
+    RawEntry getEntry(String name) throws FileNotFoundException {
+        RawEntry entry = entries.get(name);
+        if (entry == null) {
+            throw new FileNotFoundException("Entry " + name + " not found in " + archiveFile);
+        }
+        return entry;
+    }
+
+    /**
+     * Open a stream to read the compressed data of the given entry
+     *
+     * @param entry entry of the archive
+     * @return stream of the compressed data
+     */
+    InputStream openRawEntry(RawEntry entry) throws IOException {
+        ByteBuffer header = read(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Invalid local header of entry " + entry.name + " in " + archiveFile);
+        }
+        long dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE +
+                (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        return new ChannelInputStream(dataOffset, entry.compressedSize);
+    }
+
+    private void readManifest() throws IOException {
+        RawEntry entry = getEntry(ImportExportConstants.MANIFEST_FILE);
+        InputStream content = openRawEntry(entry);
+        Inflater inflater = null;
+        try {
+            if (entry.deflated) {
+                //The inflater needs an extra byte after a deflate stream without a header
+                inflater = new Inflater(true);
+                content = new InflaterInputStream(new SequenceInputStream(content,
+                        new ByteArrayInputStream(new byte[1])), inflater);
+            }
+            manifest = ExportManifest.parse(content);
+        } finally {
+            IOUtils.closeQuietly(content);
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    private void readCentralDirectory() throws IOException {
+        //Finding the end of central directory record, which may be followed by a comment
+        long length = channel.size();
+        int tailLength = (int) Math.min(length, END_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(length - tailLength, tailLength);
+        int end = -1;
+        for (int i = tailLength - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException(archiveFile + " is not a zip file");
+        }
+        long count = tail.getShort(end + 10) & 0xFFFF;
+        long centralDirectorySize = tail.getInt(end + 12) & ZIP64_MAGIC;
+        long centralDirectoryOffset = tail.getInt(end + 16) & ZIP64_MAGIC;
+        int locator = end - ZIP64_LOCATOR_SIZE;
+        if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+            ByteBuffer zip64End = read(tail.getLong(locator + 8), 56);
+            if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                throw new IOException("Invalid zip64 end of central directory in " + archiveFile);
+            }
+            count = zip64End.getLong(32);
+            centralDirectorySize = zip64End.getLong(40);
+            centralDirectoryOffset = zip64End.getLong(48);
+        }
+        if (centralDirectorySize > Integer.MAX_VALUE) {
+            throw new IOException("Central directory of " + archiveFile + " is too large");
+        }
+        ByteBuffer directory = read(centralDirectoryOffset, (int) centralDirectorySize);
+        int position = 0;
+        for (long i = 0; i < count; i++) {
+            if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Invalid central directory in " + archiveFile);
+            }
+            int flags = directory.getShort(position + 8) & 0xFFFF;
+            int method = directory.getShort(position + 10) & 0xFFFF;
+            long crc = directory.getInt(position + 16) & ZIP64_MAGIC;
+            long compressedSize = directory.getInt(position + 20) & ZIP64_MAGIC;
+            long size = directory.getInt(position + 24) & ZIP64_MAGIC;
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int commentLength = directory.getShort(position + 32) & 0xFFFF;
+            long offset = directory.getInt(position + 42) & ZIP64_MAGIC;
+            byte[] name = new byte[nameLength];
+            directory.position(position + CENTRAL_HEADER_SIZE);
+            directory.get(name);
+            //Values too large for the header are in the zip64 extra field, in this order
+            int extra = position + CENTRAL_HEADER_SIZE + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = directory.getShort(extra) & 0xFFFF;
+                int dataLength = directory.getShort(extra + 2) & 0xFFFF;
+                if (id == ZIP64_EXTRA_ID) {
+                    int field = extra + 4;
+                    if (size == ZIP64_MAGIC) {
+                        size = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC) {
+                        compressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (offset == ZIP64_MAGIC) {
+                        offset = directory.getLong(field);
+                    }
+                }
+                extra += 4 + dataLength;
+            }
+            //Only the entries which can be copied as they are, are indexed
+            if ((flags & FLAG_ENCRYPTED) == 0 && (method == METHOD_STORED || method == METHOD_DEFLATED)) {
+                String entryName = new String(name, UTF8);
+                entries.put(entryName, new RawEntry(entryName, method == METHOD_DEFLATED, crc, size,
+                        compressedSize, offset));
+            }
+            position = extraEnd + commentLength;
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (data.hasRemaining()) {
+            if (channel.read(data, position + data.position()) < 0) {
+                throw new EOFException("Unexpected end of " + archiveFile);
+            }
+        }
+        data.flip();
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Entry of the baseline archive, with the values of its central directory header
+     */
+    static class RawEntry {
+
+        private final String name;
+        private final boolean deflated;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final long localHeaderOffset;
+
+        RawEntry(String name, boolean deflated, long crc, long size, long compressedSize,
+                 long localHeaderOffset) {
+            this.name = name;
+            this.deflated = deflated;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        boolean isDeflated() {
+            return deflated;
+        }
+
+        long getCrc() {
+            return crc;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getCompressedSize() {
+            return compressedSize;
+        }
+    }
+
+    /**
+     * Stream of a region of the zip file, read with positional reads so that several entries can
+     * be read at the same time
+     */
+    private class ChannelInputStream extends InputStream {
+
+        private long position;
+        private long remaining;
+
+        ChannelInputStream(long position, long length) {
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of " + archiveFile);
+            }
+            position += n;
+            remaining -= n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport sending the requests with the blocking http client, each request holding a thread of
+ * the transport until its response arrives. Used unless the non-blocking transport is configured,
+ * and as its fallback.
+ */
+class BlockingHttpTransport implements HttpTransport {
+
+    private static final Log log = LogFactory.getLog(BlockingHttpTransport.class);
+
+    private final CloseableHttpClient client;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final ExecutorService executor;
+
+    /**
+     * Create the blocking transport with its connection pool
+     *
+     * @param config     ApiImportExportConfiguration object
+     * @param sslContext SSL context of the https connections
+     */
+    BlockingHttpTransport(ApiImportExportConfiguration config, SSLContext sslContext) {
+        //       Create an SSL Socket Factory, to use weakened "trust strategy";
+        //       and create a Registry, to register it.
+        SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext,
+                SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+        Registry<ConnectionSocketFactory> socketFactoryRegistry =
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", sslSocketFactory)
+                        .build();
+
+        // Creating connection-manager using Registry.
+        //      -- allows multi-threaded use
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setMaxTotal(config.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setSslcontext(sslContext)
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(new HttpClientGenerator.KeepAliveStrategy(
+                        config.getKeepAliveSeconds()));
+        if (!config.getResponseCompression()) {
+            //The client requests compressed responses and decompresses them by default
+            builder.disableContentCompression();
+        }
+        client = builder.build();
+
+        //The requests in flight are bounded by the connection pool, not by the threads
+        final AtomicInteger count = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "http-blocking-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<CloseableHttpResponse> send(final HttpUriRequest request) {
+        final CompletableFuture<CloseableHttpResponse> response = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    response.complete(client.execute(request));
+                } catch (IOException | RuntimeException e) {
+                    response.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            response.completeExceptionally(new IOException("Http transport is closed", e));
+        }
+        return response;
+    }
+
+    @Override
+    public void setPoolLimits(int maxConnections, int maxConnectionsPerRoute) {
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+    }
+
+    @Override
+    public void closeIdleConnections(int idleSeconds) {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        client.close();
+        log.debug("Blocking http transport closed");
+    }
+}
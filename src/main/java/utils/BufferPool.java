@@ -0,0 +1,96 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of the large buffers used to stream the content of archive entries, documents and
+ * thumbnails. Each copy borrows a buffer from the pool and returns it when done, so streaming many
+ * binary assets concurrently neither allocates a buffer per copy nor falls back to small buffers.
+ */
+final class BufferPool {
+
+    private static final BlockingQueue<byte[]> buffers =
+            new ArrayBlockingQueue<>(ImportExportConstants.MAX_POOLED_BUFFERS);
+
+    private BufferPool() {
+    }
+
+    /**
+     * Borrow a buffer of {@link ImportExportConstants#ARCHIVE_BUFFER_SIZE} bytes, which must be
+     * returned with {@link #release(byte[])} once no longer used
+     *
+     * @return pooled buffer, or a new buffer if none is available in the pool
+     */
+    static byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[ImportExportConstants.ARCHIVE_BUFFER_SIZE];
+    }
+
+    /**
+     * Return a buffer to the pool. Buffers beyond the size of the pool are left to be collected
+     *
+     * @param buffer buffer borrowed from the pool
+     */
+    static void release(byte[] buffer) {
+        if (buffer != null && buffer.length == ImportExportConstants.ARCHIVE_BUFFER_SIZE) {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Copy the whole stream with a pooled buffer. Neither stream is closed
+     *
+     * @param input  stream to read from
+     * @param output stream to write to
+     * @return number of bytes copied
+     */
+    static long copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = acquire();
+        try {
+            return IOUtils.copyLarge(input, output, buffer);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Copy up to the given number of bytes of the stream with a pooled buffer. Neither stream is
+     * closed
+     *
+     * @param input  stream to read from
+     * @param output stream to write to
+     * @param length maximum number of bytes to copy
+     * @return number of bytes copied
+     */
+    static long copy(InputStream input, OutputStream output, long length) throws IOException {
+        byte[] buffer = acquire();
+        try {
+            return IOUtils.copyLarge(input, output, 0, length, buffer);
+        } finally {
+            release(buffer);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Chooses how each entry of an exported archive is compressed. Entries which are already
+ * compressed, such as images and zip based documents, are stored as they are, since deflating them
+ * again costs CPU for next to no saving. Text entries are deflated at the configured level, and the
+ * content of any other entry is sampled to estimate how well it would compress.
+ */
+class CompressionPolicy {
+
+    //Level of the entries stored without compression
+    static final int STORED = Deflater.NO_COMPRESSION;
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            ImportExportConstants.PNG_TYPE, ImportExportConstants.JPG_TYPE,
+            ImportExportConstants.JPEG_TYPE, ImportExportConstants.GIF_TYPE, "webp", "zip", "jar",
+            "war", "gz", "tgz", "bz2", "xz", "7z", "rar", "docx", "xlsx", "pptx", "odt", "ods",
+            "odp", "epub", "mp3", "mp4", "woff", "woff2"));
+    private static final Set<String> TEXT_EXTENSIONS = new HashSet<>(Arrays.asList("json", "xml",
+            "wsdl", "xsd", "yaml", "yml", "txt", "html", "htm", "md", "csv", "css", "js"));
+    //Leading bytes of formats which are compressed regardless of the name of the entry
+    private static final byte[][] COMPRESSED_SIGNATURES = {
+            {(byte) 0x89, 'P', 'N', 'G'},
+            {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF},
+            {'G', 'I', 'F', '8'},
+            {'P', 'K', 3, 4},
+            {(byte) 0x1F, (byte) 0x8B}
+    };
+    //Entries smaller than this are deflated at the configured level without being sampled
+    private static final int MIN_SAMPLED_SIZE = 1024;
+    private static final int SAMPLE_BLOCKS = 4;
+    private static final int SAMPLE_BLOCK_SIZE = 4 * 1024;
+    //Sampled entropies, in bits per byte, above which entries are stored or deflated fast
+    private static final double STORED_ENTROPY = 7.5;
+    private static final double FAST_ENTROPY = 6.5;
+
+    private final int level;
+
+    /**
+     * Create a policy deflating compressible entries at the given level
+     *
+     * @param level deflate level, from 1 (fastest) to 9 (smallest)
+     */
+    CompressionPolicy(int level) {
+        this.level = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, level));
+    }
+
+    /**
+     * Returns the deflate level for an entry, judging by its name and the leading part of its
+     * content
+     *
+     * @param name   name of the entry
+     * @param data   array holding the leading part of the content
+     * @param offset offset of the content
+     * @param length length of the content available in the array
+     * @return deflate level, or {@link #STORED} if the entry is to be stored without compression
+     */
+    int getLevel(String name, byte[] data, int offset, int length) {
+        String extension = getExtension(name);
+        if (COMPRESSED_EXTENSIONS.contains(extension) || hasCompressedSignature(data, offset, length)) {
+            return STORED;
+        }
+        if (TEXT_EXTENSIONS.contains(extension) || length < MIN_SAMPLED_SIZE) {
+            return level;
+        }
+        double entropy = estimateEntropy(data, offset, length);
+        if (entropy >= STORED_ENTROPY) {
+            return STORED;
+        } else if (entropy >= FAST_ENTROPY) {
+            return Math.min(level, Deflater.BEST_SPEED);
+        }
+        return level;
+    }
+
+    private static String getExtension(String name) {
+        int separator = name.lastIndexOf(ImportExportConstants.ZIP_FILE_SEPARATOR);
+        int dot = name.lastIndexOf('.');
+        return dot > separator ? name.substring(dot + 1).toLowerCase(Locale.ENGLISH) : "";
+    }
+
+    private static boolean hasCompressedSignature(byte[] data, int offset, int length) {
+        for (byte[] signature : COMPRESSED_SIGNATURES) {
+            if (length >= signature.length) {
+                int index = 0;
+                while (index < signature.length && data[offset + index] == signature[index]) {
+                    index++;
+                }
+                if (index == signature.length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estimate the entropy of the content from the byte frequencies of a few blocks spread over it
+     *
+     * @param data   array holding the content
+     * @param offset offset of the content
+     * @param length length of the content
+     * @return entropy in bits per byte, from 0 to 8
+     */
+    private static double estimateEntropy(byte[] data, int offset, int length) {
+        int[] counts = new int[256];
+        int blockSize = Math.min(SAMPLE_BLOCK_SIZE, length / SAMPLE_BLOCKS);
+        int step = length / SAMPLE_BLOCKS;
+        int total = 0;
+        for (int block = 0; block < SAMPLE_BLOCKS; block++) {
+            int start = offset + block * step;
+            for (int index = start; index < start + blockSize; index++) {
+                counts[data[index] & 0xFF]++;
+            }
+            total += blockSize;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double probability = (double) count / total;
+                entropy -= probability * Math.log(probability);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+}
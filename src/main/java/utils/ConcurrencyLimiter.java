@@ -0,0 +1,147 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive limit of the requests in flight, adjusted in the manner of TCP congestion control. While
+ * the responses keep their latency the limit grows, doubling every round trip until the first back
+ * off and by one every round trip after it. When the latency inflates, or the server throttles or
+ * fails requests, the limit is cut by a fraction. Requests over the limit wait without holding a
+ * thread, and are let through in order as the requests in flight complete.
+ */
+class ConcurrencyLimiter {
+
+    private static final Log log = LogFactory.getLog(ConcurrencyLimiter.class);
+    //fraction of the limit kept when backing off
+    private static final double BACKOFF_RATIO = 0.75;
+    //smoothed latency over this multiple of the minimum latency is taken as an overloaded server
+    private static final double LATENCY_TOLERANCE = 2.0;
+    //latency inflation below this is taken as noise
+    private static final long LATENCY_SLACK = TimeUnit.MILLISECONDS.toNanos(5);
+    //weight of a new sample in the smoothed latency
+    private static final double LATENCY_SMOOTHING = 0.2;
+    //number of samples after which the minimum latency is measured again
+    private static final int MIN_LATENCY_WINDOW = 500;
+
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+    private boolean slowStart = true;
+    private double smoothedLatency;
+    private long minLatency = Long.MAX_VALUE;
+    private int samples;
+    private long lastBackoff;
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+    /**
+     * Create a concurrency limiter
+     *
+     * @param initialLimit number of requests allowed in flight at first
+     * @param maxLimit     maximum number of requests allowed in flight
+     */
+    ConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(1, initialLimit));
+    }
+
+    /**
+     * Acquire a permit to send a request within the limit, without waiting for it
+     *
+     * @return future completed once the request can be sent
+     */
+    CompletableFuture<Void> acquireAsync() {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this) {
+            if (!waiters.isEmpty() || inFlight >= (int) limit) {
+                waiters.add(permit);
+                return permit;
+            }
+            inFlight++;
+        }
+        permit.complete(null);
+        return permit;
+    }
+
+    /**
+     * Record the outcome of a request sent after {@link #acquireAsync()}, adjusting the limit and
+     * letting the waiting requests through
+     *
+     * @param latency    nanoseconds taken by the server to respond
+     * @param overloaded whether the server throttled or failed the request
+     */
+    void release(long latency, boolean overloaded) {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        synchronized (this) {
+            adjustLimit(latency, overloaded);
+            while (!waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                granted.add(waiters.poll());
+            }
+        }
+        //Requests are let through outside the lock, as they are sent on this thread
+        for (CompletableFuture<Void> permit : granted) {
+            permit.complete(null);
+        }
+    }
+
+    private void adjustLimit(long latency, boolean overloaded) {
+        inFlight--;
+        if (++samples % MIN_LATENCY_WINDOW == 0) {
+            //Measuring the minimum latency again, in case the server got slower for good
+            minLatency = (long) smoothedLatency;
+        }
+        smoothedLatency = smoothedLatency == 0 ? latency :
+                smoothedLatency + (latency - smoothedLatency) * LATENCY_SMOOTHING;
+        minLatency = Math.min(minLatency, latency);
+        long now = System.nanoTime();
+        if (overloaded || smoothedLatency > minLatency * LATENCY_TOLERANCE + LATENCY_SLACK) {
+            //Backing off once per round trip, not for each of the requests sent before backing off
+            if (lastBackoff == 0 || now - lastBackoff > smoothedLatency) {
+                limit = Math.max(1, limit * BACKOFF_RATIO);
+                slowStart = false;
+                lastBackoff = now;
+                if (log.isDebugEnabled()) {
+                    log.debug("Concurrency limit decreased to " + (int) limit + ", latency " +
+                            TimeUnit.NANOSECONDS.toMillis((long) smoothedLatency) + " ms");
+                }
+            }
+        } else if (inFlight + 1 >= (int) limit && limit < maxLimit) {
+            //Growing the limit only while it is used up
+            limit = Math.min(maxLimit, limit + (slowStart ? 1 : 1 / limit));
+        }
+    }
+
+    /**
+     * Returns the current limit of the requests in flight
+     *
+     * @return concurrency limit
+     */
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Encrypted on-disk cache of the registered client, the access tokens of each scope and the
+ * validated publisher urls. Entries are kept per client registration url and user, and encrypted
+ * with a key derived from the user's password, so repeated runs of the tool can skip registering
+ * the client, generating tokens and validating the publisher url. Runs sharing the store update it
+ * under a file lock, each merging its change in to the entry as currently stored.
+ */
+class CredentialStore {
+
+    private static final Log log = LogFactory.getLog(CredentialStore.class);
+    private static final Charset UTF_8 = Charset.forName(ImportExportConstants.CHARSET);
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final String KEY_ALGORITHM = "AES";
+    private static final String KEY_DERIVATION = "PBKDF2WithHmacSHA256";
+    private static final int KEY_DERIVATION_ITERATIONS = 65536;
+    private static final int KEY_LENGTH = 128;
+    private static final int TAG_LENGTH = 128;
+    private static final int SALT_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final String VALUE_SEPARATOR = ":";
+    private static final String LOCK_EXTENSION = ".lock";
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static CredentialStore instance;
+
+    private final boolean enabled;
+    private final File storeFile;
+    private final File lockFile;
+    private final String entryKey;
+    private final char[] password;
+    private final SecureRandom random = new SecureRandom();
+    private byte[] salt;
+    private SecretKey secretKey;
+    private Entry entry;
+
+    private CredentialStore(ApiImportExportConfiguration config) {
+        this.enabled = config.getCacheCredentials() && config.getPassword() != null;
+        this.storeFile = new File(getStorePath(config));
+        this.lockFile = new File(storeFile.getPath() + LOCK_EXTENSION);
+        this.entryKey = DigestUtils.sha256Hex(config.getDcrUrl() + "\n" + config.getUsername());
+        this.password = config.getPassword();
+    }
+
+    static synchronized CredentialStore getInstance() {
+        if (instance == null) {
+            instance = new CredentialStore(ApiImportExportConfiguration.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached consumer credentials of the registered client
+     *
+     * @return encoded consumer key and consumer secret, or null if not cached
+     */
+    synchronized String getClientCredentials() {
+        return getEntry().getClientCredentials();
+    }
+
+    /**
+     * Cache the consumer credentials of a newly registered client. Tokens of any previously
+     * registered client are discarded
+     *
+     * @param consumerCredentials encoded consumer key and consumer secret
+     */
+    synchronized void saveClientCredentials(String consumerCredentials) {
+        update(current -> {
+            current.setClientCredentials(consumerCredentials);
+            current.getTokens().clear();
+        });
+    }
+
+    /**
+     * Remove the cached client along with its tokens, when it is no longer accepted by the server
+     */
+    synchronized void removeClientCredentials() {
+        if (getEntry().getClientCredentials() != null) {
+            update(current -> {
+                current.setClientCredentials(null);
+                current.getTokens().clear();
+            });
+        }
+    }
+
+    /**
+     * Returns the cached access token of the given scope, which may have expired
+     *
+     * @param scope token scope
+     * @return access token, or null if there is no token cached
+     */
+    synchronized AccessToken getAccessToken(String scope) {
+        Entry current = getEntry();
+        Token token = current.getTokens().get(scope);
+        if (token == null || token.getAccessToken() == null) {
+            return null;
+        }
+        return new AccessToken(token.getAccessToken(), token.getRefreshToken(),
+                token.getExpiresAt(), current.getClientCredentials());
+    }
+
+    /**
+     * Cache an access token of the given scope. Tokens without an expiry time are not cached
+     *
+     * @param scope       token scope
+     * @param accessToken access token
+     */
+    synchronized void saveAccessToken(String scope, AccessToken accessToken) {
+        if (accessToken.getExpiresAt() == Long.MAX_VALUE) {
+            return;
+        }
+        Token token = new Token();
+        token.setAccessToken(accessToken.getToken());
+        token.setRefreshToken(accessToken.getRefreshToken());
+        token.setExpiresAt(accessToken.getExpiresAt());
+        update(current -> current.getTokens().put(scope, token));
+    }
+
+    /**
+     * Check whether the given publisher url was validated in a previous run
+     *
+     * @param publisherUrl publisher url
+     * @return true if the url is known to be valid
+     */
+    synchronized boolean isValidPublisherUrl(String publisherUrl) {
+        return getEntry().getPublisherUrls().contains(publisherUrl);
+    }
+
+    /**
+     * Record a validated publisher url
+     *
+     * @param publisherUrl publisher url
+     */
+    synchronized void saveValidPublisherUrl(String publisherUrl) {
+        if (!getEntry().getPublisherUrls().contains(publisherUrl)) {
+            update(current -> {
+                if (!current.getPublisherUrls().contains(publisherUrl)) {
+                    current.getPublisherUrls().add(publisherUrl);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the decrypted entry of the current client registration url and user, loading it
+     * from the store file on first access
+     *
+     * @return store entry, empty if not found or not readable with the user's password
+     */
+    private Entry getEntry() {
+        if (entry == null) {
+            entry = enabled ? readEntry(loadProperties()) : new Entry();
+        }
+        return entry;
+    }
+
+    private Entry readEntry(Properties properties) {
+        String value = properties.getProperty(entryKey);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return mapper.readValue(decrypt(value), Entry.class);
+            } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
+                //Entry written with a different password, or corrupted
+                log.debug("Ignoring unreadable credential store entry", e);
+            }
+        }
+        return new Entry();
+    }
+
+    /**
+     * Apply a change to the entry and write it to the store file, keeping the entries of other urls
+     * and users. The store is locked while it is read and written, and the change is applied to
+     * the entry as currently stored, so changes made by other runs sharing the store are kept
+     *
+     * @param change change to the entry
+     */
+    private void update(Consumer<Entry> change) {
+        if (!enabled) {
+            change.accept(getEntry());
+            return;
+        }
+        Path temporaryFile = null;
+        OutputStream outputStream = null;
+        FileChannel lockChannel = null;
+        try {
+            File directory = storeFile.getAbsoluteFile().getParentFile();
+            ImportExportUtils.createDirectory(directory.getPath());
+            lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            FileLock lock = lockChannel.lock();
+            try {
+                Properties properties = loadProperties();
+                Entry current = readEntry(properties);
+                change.accept(current);
+                entry = current;
+                properties.setProperty(entryKey, encrypt(mapper.writeValueAsString(current)));
+                temporaryFile = Files.createTempFile(directory.toPath(), storeFile.getName(), null);
+                try {
+                    Files.setPosixFilePermissions(temporaryFile,
+                            PosixFilePermissions.fromString("rw-------"));
+                } catch (UnsupportedOperationException e) {
+                    log.debug("File permissions of the credential store cannot be restricted", e);
+                }
+                outputStream = new FileOutputStream(temporaryFile.toFile());
+                properties.store(outputStream, null);
+                outputStream.close();
+                Files.move(temporaryFile, storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | GeneralSecurityException | UtilException e) {
+            log.warn("Error occurred while saving the credential store " + storeFile, e);
+            //Keeping the change for the rest of the run
+            change.accept(getEntry());
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+            IOUtils.closeQuietly(lockChannel);
+            if (temporaryFile != null) {
+                FileUtils.deleteQuietly(temporaryFile.toFile());
+            }
+        }
+    }
+
+    private Properties loadProperties() {
+        Properties properties = new Properties();
+        if (storeFile.isFile()) {
+            InputStream inputStream = null;
+            try {
+                inputStream = new FileInputStream(storeFile);
+                properties.load(inputStream);
+            } catch (IOException e) {
+                log.warn("Error occurred while reading the credential store " + storeFile, e);
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+        }
+        return properties;
+    }
+
+    private String encrypt(String plainText) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, getSecretKey(null), new GCMParameterSpec(TAG_LENGTH, iv));
+        cipher.updateAAD(entryKey.getBytes(UTF_8));
+        byte[] cipherText = cipher.doFinal(plainText.getBytes(UTF_8));
+        return Base64.encodeBase64String(salt) + VALUE_SEPARATOR + Base64.encodeBase64String(iv) +
+                VALUE_SEPARATOR + Base64.encodeBase64String(cipherText);
+    }
+
+    private String decrypt(String value) throws GeneralSecurityException {
+        String[] parts = value.split(VALUE_SEPARATOR);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid credential store entry");
+        }
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, getSecretKey(Base64.decodeBase64(parts[0])),
+                new GCMParameterSpec(TAG_LENGTH, Base64.decodeBase64(parts[1])));
+        cipher.updateAAD(entryKey.getBytes(UTF_8));
+        return new String(cipher.doFinal(Base64.decodeBase64(parts[2])), UTF_8);
+    }
+
+    /**
+     * Returns the key derived from the user's password. The key is derived once per run, with the
+     * salt of the stored entry if there is one, or a new random salt
+     *
+     * @param entrySalt salt of the stored entry, or null when encrypting
+     * @return secret key
+     */
+    private SecretKey getSecretKey(byte[] entrySalt) throws GeneralSecurityException {
+        if (secretKey == null || (entrySalt != null && !Arrays.equals(entrySalt, salt))) {
+            if (entrySalt != null) {
+                salt = entrySalt;
+            } else if (salt == null) {
+                salt = new byte[SALT_LENGTH];
+                random.nextBytes(salt);
+            }
+            SecretKeyFactory factory = SecretKeyFactory.getInstance(KEY_DERIVATION);
+            PBEKeySpec spec = new PBEKeySpec(password, salt, KEY_DERIVATION_ITERATIONS, KEY_LENGTH);
+            try {
+                secretKey = new SecretKeySpec(factory.generateSecret(spec).getEncoded(), KEY_ALGORITHM);
+            } finally {
+                spec.clearPassword();
+            }
+        }
+        return secretKey;
+    }
+
+    /**
+     * Returns the location of the credential store, by default inside the user's home directory
+     *
+     * @param config ApiImportExportConfiguration object
+     * @return path to the credential store file
+     */
+    private static String getStorePath(ApiImportExportConfiguration config) {
+        if (StringUtils.isNotBlank(config.getCredentialStorePath())) {
+            return config.getCredentialStorePath();
+        }
+        return System.getProperty(ImportExportConstants.USER_HOME) + File.separator +
+                ImportExportConstants.CREDENTIAL_STORE_DIRECTORY + File.separator +
+                ImportExportConstants.CREDENTIAL_STORE_FILE;
+    }
+
+    /**
+     * Entry of the store, for a client registration url and user
+     */
+    static class Entry {
+
+        private String clientCredentials;
+        private Map<String, Token> tokens = new HashMap<>();
+        private List<String> publisherUrls = new ArrayList<>();
+
+        public String getClientCredentials() {
+            return clientCredentials;
+        }
+
+        public void setClientCredentials(String clientCredentials) {
+            this.clientCredentials = clientCredentials;
+        }
+
+        public Map<String, Token> getTokens() {
+            return tokens;
+        }
+
+        public void setTokens(Map<String, Token> tokens) {
+            this.tokens = tokens != null ? tokens : new HashMap<String, Token>();
+        }
+
+        public List<String> getPublisherUrls() {
+            return publisherUrls;
+        }
+
+        public void setPublisherUrls(List<String> publisherUrls) {
+            this.publisherUrls = publisherUrls != null ? publisherUrls : new ArrayList<String>();
+        }
+    }
+
+    /**
+     * Access token of a scope, cached in an entry of the store
+     */
+    static class Token {
+
+        private String accessToken;
+        private String refreshToken;
+        private long expiresAt;
+
+        @JsonProperty(ImportExportConstants.ACCESS_TOKEN)
+        public String getAccessToken() {
+            return accessToken;
+        }
+
+        @JsonProperty(ImportExportConstants.ACCESS_TOKEN)
+        public void setAccessToken(String accessToken) {
+            this.accessToken = accessToken;
+        }
+
+        @JsonProperty(ImportExportConstants.REFRESH_TOKEN)
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+
+        @JsonProperty(ImportExportConstants.REFRESH_TOKEN)
+        public void setRefreshToken(String refreshToken) {
+            this.refreshToken = refreshToken;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public void setExpiresAt(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+}
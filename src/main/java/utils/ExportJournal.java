@@ -0,0 +1,145 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal of a bulk export, kept next to the archive being written. Each exported API is journaled
+ * once its entries are durably written in to the archive, along with the length of the archive at
+ * that point, so an export interrupted by a crash can be resumed from the last journaled API
+ * instead of starting over.
+ */
+class ExportJournal extends Journal {
+
+    //Journaled APIs by the api id (provider-name-version), in the order they were exported
+    private final Map<String, ExportManifest.ApiRecord> completedApis = new LinkedHashMap<>();
+    private long archiveLength;
+
+    private ExportJournal(File journalFile, String jobId) {
+        super(journalFile, jobId);
+    }
+
+    /**
+     * Open the journal of an export job, reading the APIs already exported if the journal was
+     * left by an interrupted run of the same job
+     *
+     * @param journalFile journal file
+     * @param jobId       identifier of the export job
+     * @return journal
+     * @throws IOException if unable to read or write the journal
+     */
+    static ExportJournal open(File journalFile, String jobId) throws IOException {
+        ExportJournal journal = new ExportJournal(journalFile, jobId);
+        journal.open();
+        return journal;
+    }
+
+    @Override
+    void readLine(byte[] content, int offset, int length) throws IOException {
+        Checkpoint checkpoint = mapper.readValue(content, offset, length, Checkpoint.class);
+        completedApis.put(checkpoint.getApi(), checkpoint.getRecord());
+        archiveLength = checkpoint.getArchiveLength();
+    }
+
+    @Override
+    void clear() {
+        completedApis.clear();
+        archiveLength = 0;
+    }
+
+    /**
+     * Journal exported APIs. The entries of the APIs must already be durably written in to the
+     * archive
+     *
+     * @param records       entries of the APIs by the api id(provider-name-version)
+     * @param archiveLength length of the archive after the entries of the APIs
+     * @throws IOException if unable to write the journal
+     */
+    synchronized void append(Map<String, ExportManifest.ApiRecord> records, long archiveLength)
+            throws IOException {
+        List<byte[]> lines = new ArrayList<>(records.size());
+        for (Map.Entry<String, ExportManifest.ApiRecord> record : records.entrySet()) {
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.setApi(record.getKey());
+            checkpoint.setRecord(record.getValue());
+            checkpoint.setArchiveLength(archiveLength);
+            lines.add(mapper.writeValueAsBytes(checkpoint));
+        }
+        writeLines(lines);
+        completedApis.putAll(records);
+        this.archiveLength = archiveLength;
+    }
+
+    /**
+     * Returns the APIs journaled as exported
+     *
+     * @return records of the exported APIs by the api id
+     */
+    synchronized Map<String, ExportManifest.ApiRecord> getCompletedApis() {
+        return new LinkedHashMap<>(completedApis);
+    }
+
+    /**
+     * Returns the length of the archive after the last journaled API
+     *
+     * @return archive length, or 0 if no API is journaled
+     */
+    synchronized long getArchiveLength() {
+        return archiveLength;
+    }
+
+    /**
+     * Line of the journal recording an exported API
+     */
+    static class Checkpoint {
+
+        private String api;
+        private ExportManifest.ApiRecord record;
+        private long archiveLength;
+
+        public String getApi() {
+            return api;
+        }
+
+        public void setApi(String api) {
+            this.api = api;
+        }
+
+        public ExportManifest.ApiRecord getRecord() {
+            return record;
+        }
+
+        public void setRecord(ExportManifest.ApiRecord record) {
+            this.record = record;
+        }
+
+        public long getArchiveLength() {
+            return archiveLength;
+        }
+
+        public void setArchiveLength(long archiveLength) {
+            this.archiveLength = archiveLength;
+        }
+    }
+}
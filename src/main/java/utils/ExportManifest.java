@@ -0,0 +1,150 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Manifest of an exported archive, recording each exported API with the archive entries it was
+ * exported in to and the digests of their content. The manifest of a previous export tells which
+ * APIs are unchanged since, and which entries of that archive can be copied for them
+ */
+class ExportManifest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Map<String, ApiRecord>>> MANIFEST_TYPE =
+            new TypeReference<Map<String, Map<String, ApiRecord>>>() {
+            };
+    private static final String APIS_ELEM = "apis";
+
+    //Exported APIs by the api id (provider-name-version), ordered by the api id
+    private final Map<String, ApiRecord> apis = new TreeMap<>();
+
+    /**
+     * Record an exported API
+     *
+     * @param apiId  api id of the API(provider-name-version)
+     * @param record entries of the API
+     */
+    synchronized void putApi(String apiId, ApiRecord record) {
+        apis.put(apiId, record);
+    }
+
+    /**
+     * Returns the record of an exported API
+     *
+     * @param apiId api id of the API(provider-name-version)
+     * @return record of the API, or null if the API is not in the manifest
+     */
+    synchronized ApiRecord getApi(String apiId) {
+        return apis.get(apiId);
+    }
+
+    /**
+     * Returns the digest of an entry, as recorded by any of the APIs
+     *
+     * @param name name of the entry
+     * @return hex encoded SHA-256 digest of the content, or null if no API recorded the entry
+     */
+    synchronized String getDigest(String name) {
+        for (ApiRecord record : apis.values()) {
+            String digest = record.getEntries().get(name);
+            if (digest != null) {
+                return digest;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Serialize the manifest as pretty printed json
+     *
+     * @return UTF-8 encoded manifest
+     */
+    synchronized byte[] toJson() throws IOException {
+        return mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(
+                Collections.singletonMap(APIS_ELEM, apis));
+    }
+
+    /**
+     * Read a manifest from the given stream
+     *
+     * @param content stream to read the manifest from
+     * @return manifest
+     * @throws IOException if the content is not a manifest
+     */
+    static ExportManifest parse(InputStream content) throws IOException {
+        Map<String, Map<String, ApiRecord>> json = mapper.readValue(content, MANIFEST_TYPE);
+        ExportManifest manifest = new ExportManifest();
+        if (json != null && json.get(APIS_ELEM) != null) {
+            manifest.apis.putAll(json.get(APIS_ELEM));
+        }
+        return manifest;
+    }
+
+    /**
+     * Exported API, with the digests of its entries by the entry name
+     */
+    static class ApiRecord {
+
+        private String folder;
+        private String lastUpdated;
+        private Map<String, String> entries = new LinkedHashMap<>();
+
+        ApiRecord() {
+        }
+
+        ApiRecord(String folder, String lastUpdated, Map<String, String> entries) {
+            this.folder = folder;
+            this.lastUpdated = lastUpdated;
+            this.entries = new TreeMap<>(entries);
+        }
+
+        public String getFolder() {
+            return folder;
+        }
+
+        public void setFolder(String folder) {
+            this.folder = folder;
+        }
+
+        public String getLastUpdated() {
+            return lastUpdated;
+        }
+
+        public void setLastUpdated(String lastUpdated) {
+            this.lastUpdated = lastUpdated;
+        }
+
+        public Map<String, String> getEntries() {
+            return entries;
+        }
+
+        public void setEntries(Map<String, String> entries) {
+            this.entries = entries;
+        }
+    }
+}
@@ -0,0 +1,602 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Size bounded on-disk cache of the responses retrieved while exporting APIs. Responses are kept
+ * with their validators (ETag and Last-Modified) and requested again conditionally, so repeated
+ * exports of the same environment download only what changed on the server. The least recently
+ * used responses are evicted when the cache grows beyond its size.
+ */
+class HttpCache {
+
+    private static final Log log = LogFactory.getLog(HttpCache.class);
+    private static final String BODY_EXTENSION = ".body";
+    private static final String META_EXTENSION = ".meta";
+
+    //properties of an entry's meta file
+    private static final String URL = "url";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String CONTENT_TYPE = "contentType";
+    private static final String SIZE = "size";
+
+    private static HttpCache instance;
+
+    private final boolean enabled;
+    private final File directory;
+    private final long maxSize;
+    //entries in the order of their use, the least recently used first
+    private Map<String, Entry> entries;
+    private long size;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private HttpCache(ApiImportExportConfiguration config) {
+        this.enabled = config.getHttpCache();
+        this.directory = new File(getCachePath(config));
+        this.maxSize = config.getHttpCacheSize() * 1024L * 1024L;
+    }
+
+    static synchronized HttpCache getInstance() {
+        if (instance == null) {
+            instance = new HttpCache(ApiImportExportConfiguration.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Execute the GET request conditionally, if a response of the same url is cached. The cached
+     * response is returned when the server responds that it is not modified, and successful
+     * responses with validators are added to the cache
+     *
+     * @param tokenManager token manager with the scope of the request
+     * @param request      GET request to be executed
+     * @return future completed with the response, which must be closed by the caller
+     */
+    CompletableFuture<CloseableHttpResponse> executeAsync(final TokenManager tokenManager,
+                                                          final HttpGet request) {
+        if (!enabled) {
+            return tokenManager.executeAsync(request);
+        }
+        requests.incrementAndGet();
+        final String url = request.getURI().toString();
+        final String key = DigestUtils.sha256Hex(url);
+        final Entry entry = getEntry(key, url);
+        if (entry != null) {
+            if (entry.etag != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, entry.etag);
+            }
+            if (entry.lastModified != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified);
+            }
+        }
+        return tokenManager.executeAsync(request).thenCompose(response -> {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_NOT_MODIFIED && entry != null) {
+                IOUtils.closeQuietly(response);
+                CloseableHttpResponse cachedResponse = getCachedResponse(key, entry);
+                if (cachedResponse != null) {
+                    hits.incrementAndGet();
+                    return CompletableFuture.completedFuture(cachedResponse);
+                }
+                //Evicted while the request was in flight, requesting the whole response again
+                request.removeHeaders(HttpHeaders.IF_NONE_MATCH);
+                request.removeHeaders(HttpHeaders.IF_MODIFIED_SINCE);
+                return tokenManager.executeAsync(request)
+                        .thenApply(retried -> cache(key, url, retried));
+            }
+            return CompletableFuture.completedFuture(cache(key, url, response));
+        });
+    }
+
+    /**
+     * Add the response to the cache if it is successful
+     *
+     * @param key      key of the cache entry
+     * @param url      url of the request
+     * @param response response of the request
+     * @return response to be returned to the caller, in place of the given response
+     */
+    private CloseableHttpResponse cache(String key, String url, CloseableHttpResponse response) {
+        if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+            return response;
+        }
+        try {
+            return store(key, url, response);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(response);
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Log how many of the responses were served from the cache
+     */
+    void logStatistics() {
+        if (enabled && requests.get() > 0) {
+            log.info(hits.get() + " of " + requests.get() + " responses served from the http cache " +
+                    directory);
+        }
+    }
+
+    /**
+     * Add the response to the cache if it has validators and is not too large to be cached. The
+     * response is written to the cache while the caller reads it, and cached once read to the end
+     *
+     * @param key      key of the cache entry
+     * @param url      url of the request
+     * @param response successful response of the request
+     * @return response to be returned to the caller, in place of the given response
+     * @throws IOException if failed to read the response
+     */
+    private CloseableHttpResponse store(String key, String url, CloseableHttpResponse response)
+            throws IOException {
+        String etag = getHeader(response, HttpHeaders.ETAG);
+        String lastModified = getHeader(response, HttpHeaders.LAST_MODIFIED);
+        HttpEntity entity = response.getEntity();
+        long maxEntrySize = Math.min(maxSize, ImportExportConstants.HTTP_CACHE_MAX_ENTRY_SIZE);
+        if ((etag == null && lastModified == null) || entity == null ||
+                entity.getContentLength() > maxEntrySize) {
+            return response;
+        }
+        File bodyFile;
+        OutputStream body;
+        try {
+            FileUtils.forceMkdir(directory);
+            bodyFile = Files.createTempFile(directory.toPath(), key, null).toFile();
+            body = new BufferedOutputStream(new FileOutputStream(bodyFile));
+        } catch (IOException e) {
+            log.warn("Error occurred while caching the response of " + url, e);
+            return response;
+        }
+        InputStream content;
+        try {
+            content = entity.getContent();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(body);
+            FileUtils.deleteQuietly(bodyFile);
+            throw e;
+        }
+        String contentType = entity.getContentType() == null ? null : entity.getContentType().getValue();
+        Entry entry = new Entry(url, etag, lastModified, contentType, 0);
+        InputStreamEntity cachingEntity = new InputStreamEntity(new CachingInputStream(content, key,
+                entry, bodyFile, body, maxEntrySize), entity.getContentLength());
+        cachingEntity.setContentType(contentType);
+        response.setEntity(cachingEntity);
+        return response;
+    }
+
+    /**
+     * Returns the cached entry of the url, marking it as the most recently used
+     *
+     * @param key key of the cache entry
+     * @param url url of the request
+     * @return cached entry or null if the url is not cached
+     */
+    private synchronized Entry getEntry(String key, String url) {
+        Entry entry = getEntries().get(key);
+        if (entry == null || !entry.url.equals(url)) {
+            return null;
+        }
+        //Modified time of the body keeps the order of use across runs
+        if (!getBodyFile(key).setLastModified(System.currentTimeMillis())) {
+            log.debug("Unable to update the modified time of the cached response of " + url);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the cached response of the entry. The body is opened while the cache is locked, so
+     * the content stays readable if the entry is evicted or replaced before the response is closed
+     *
+     * @param key   key of the cache entry
+     * @param entry cache entry validated by the server
+     * @return cached response or null if the entry is no longer cached
+     */
+    private synchronized CloseableHttpResponse getCachedResponse(String key, Entry entry) {
+        if (getEntries().get(key) != entry) {
+            return null;
+        }
+        InputStream body;
+        try {
+            body = new FileInputStream(getBodyFile(key));
+        } catch (FileNotFoundException e) {
+            log.debug("Body of the cached response of " + entry.url + " is missing", e);
+            remove(key);
+            return null;
+        }
+        InputStreamEntity entity = new InputStreamEntity(body, entry.size);
+        entity.setContentType(entry.contentType);
+        return new CachedResponse(entity, body);
+    }
+
+    /**
+     * Move the entry in to the cache directory, replacing the previous entry of the same key and
+     * evicting the least recently used entries if the cache grows beyond its size
+     *
+     * @param key      key of the cache entry
+     * @param entry    cache entry
+     * @param bodyFile temporary file in the cache directory holding the body of the response
+     * @throws IOException if failed to write the entry
+     */
+    private void put(String key, Entry entry, File bodyFile) throws IOException {
+        //The meta file is written aside and moved in to the cache along with the body
+        Path metaFile = Files.createTempFile(directory.toPath(), key, null);
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(metaFile.toFile());
+            entry.toProperties().store(outputStream, null);
+            outputStream.close();
+            synchronized (this) {
+                Map<String, Entry> currentEntries = getEntries();
+                remove(key);
+                //A body without a meta file is never used, if the move of the meta file failed
+                Files.move(bodyFile.toPath(), getBodyFile(key).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(metaFile, getMetaFile(key).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                currentEntries.put(key, entry);
+                size += entry.size;
+                evict();
+            }
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+            FileUtils.deleteQuietly(metaFile.toFile());
+        }
+    }
+
+    /**
+     * Remove the least recently used entries until the cache is within its size
+     */
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Entry>> leastRecentlyUsed = getEntries().entrySet().iterator();
+        while (size > maxSize && leastRecentlyUsed.hasNext()) {
+            Map.Entry<String, Entry> evicted = leastRecentlyUsed.next();
+            size -= evicted.getValue().size;
+            leastRecentlyUsed.remove();
+            FileUtils.deleteQuietly(getMetaFile(evicted.getKey()));
+            FileUtils.deleteQuietly(getBodyFile(evicted.getKey()));
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry entry = getEntries().remove(key);
+        if (entry != null) {
+            size -= entry.size;
+        }
+        FileUtils.deleteQuietly(getMetaFile(key));
+    }
+
+    /**
+     * Returns the entries of the cache directory, read at the first use of the cache. Entries of
+     * which the body is missing, and files left by interrupted writes, are removed
+     *
+     * @return entries in the order of their use
+     */
+    private synchronized Map<String, Entry> getEntries() {
+        if (entries != null) {
+            return entries;
+        }
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return entries;
+        }
+        final Map<String, Long> lastUsed = new LinkedHashMap<>();
+        Map<String, Entry> found = new LinkedHashMap<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(META_EXTENSION)) {
+                continue;
+            }
+            String key = StringUtils.removeEnd(name, META_EXTENSION);
+            File bodyFile = getBodyFile(key);
+            Entry entry = readEntry(file);
+            if (entry == null || bodyFile.length() != entry.size) {
+                FileUtils.deleteQuietly(file);
+                continue;
+            }
+            found.put(key, entry);
+            lastUsed.put(key, bodyFile.lastModified());
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!found.containsKey(StringUtils.removeEnd(name, BODY_EXTENSION)) &&
+                    !found.containsKey(StringUtils.removeEnd(name, META_EXTENSION))) {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+        List<String> keys = new ArrayList<>(found.keySet());
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                return Long.compare(lastUsed.get(first), lastUsed.get(second));
+            }
+        });
+        for (String key : keys) {
+            Entry entry = found.get(key);
+            entries.put(key, entry);
+            size += entry.size;
+        }
+        //The size of the cache may have been reduced since the last run
+        evict();
+        return entries;
+    }
+
+    private Entry readEntry(File metaFile) {
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(metaFile);
+            Properties properties = new Properties();
+            properties.load(inputStream);
+            return Entry.fromProperties(properties);
+        } catch (IOException | IllegalArgumentException e) {
+            log.debug("Ignoring unreadable http cache entry " + metaFile, e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    private File getBodyFile(String key) {
+        return new File(directory, key + BODY_EXTENSION);
+    }
+
+    private File getMetaFile(String key) {
+        return new File(directory, key + META_EXTENSION);
+    }
+
+    private static String getHeader(CloseableHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    /**
+     * Returns the location of the http cache, by default inside the user's home directory
+     *
+     * @param config ApiImportExportConfiguration object
+     * @return path to the http cache directory
+     */
+    private static String getCachePath(ApiImportExportConfiguration config) {
+        if (StringUtils.isNotBlank(config.getHttpCachePath())) {
+            return config.getHttpCachePath();
+        }
+        return System.getProperty(ImportExportConstants.USER_HOME) + File.separator +
+                ImportExportConstants.CREDENTIAL_STORE_DIRECTORY + File.separator +
+                ImportExportConstants.HTTP_CACHE_DIRECTORY;
+    }
+
+    /**
+     * Content of a response, written to a temporary file of the cache as it is read. The file is
+     * added to the cache when the content is read to the end and the stream is closed, and
+     * discarded if the content is not read completely or is too large to be cached
+     */
+    private class CachingInputStream extends FilterInputStream {
+
+        private final String key;
+        private final Entry entry;
+        private final File bodyFile;
+        private final long maxEntrySize;
+        private final byte[] single = new byte[1];
+        //null once the content is no longer cached
+        private OutputStream body;
+        private long length;
+        private boolean ended;
+        private boolean closed;
+
+        CachingInputStream(InputStream content, String key, Entry entry, File bodyFile,
+                           OutputStream body, long maxEntrySize) {
+            super(content);
+            this.key = key;
+            this.entry = entry;
+            this.bodyFile = bodyFile;
+            this.body = body;
+            this.maxEntrySize = maxEntrySize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value == -1) {
+                ended = true;
+            } else {
+                single[0] = (byte) value;
+                write(single, 0, 1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                ended = true;
+            } else {
+                write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long length) throws IOException {
+            //Skipped content is not cached
+            discard();
+            return super.skip(length);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                if (body != null) {
+                    try {
+                        body.close();
+                        if (ended) {
+                            put(key, new Entry(entry.url, entry.etag, entry.lastModified,
+                                    entry.contentType, length), bodyFile);
+                        }
+                    } catch (IOException e) {
+                        log.warn("Error occurred while caching the response of " + entry.url, e);
+                    } finally {
+                        FileUtils.deleteQuietly(bodyFile);
+                    }
+                }
+            }
+        }
+
+        private void write(byte[] buffer, int offset, int count) {
+            if (body == null) {
+                return;
+            }
+            if (length + count > maxEntrySize) {
+                discard();
+                return;
+            }
+            try {
+                body.write(buffer, offset, count);
+                length += count;
+            } catch (IOException e) {
+                //The caller keeps reading the response, which is just not cached
+                log.warn("Error occurred while caching the response of " + entry.url, e);
+                discard();
+            }
+        }
+
+        private void discard() {
+            IOUtils.closeQuietly(body);
+            body = null;
+            FileUtils.deleteQuietly(bodyFile);
+        }
+    }
+
+    /**
+     * Validators and content type of a cached response
+     */
+    private static class Entry {
+
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private final String contentType;
+        private final long size;
+
+        Entry(String url, String etag, String lastModified, String contentType, long size) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.size = size;
+        }
+
+        Properties toProperties() {
+            Properties properties = new Properties();
+            properties.setProperty(URL, url);
+            if (etag != null) {
+                properties.setProperty(ETAG, etag);
+            }
+            if (lastModified != null) {
+                properties.setProperty(LAST_MODIFIED, lastModified);
+            }
+            if (contentType != null) {
+                properties.setProperty(CONTENT_TYPE, contentType);
+            }
+            properties.setProperty(SIZE, String.valueOf(size));
+            return properties;
+        }
+
+        static Entry fromProperties(Properties properties) {
+            String url = properties.getProperty(URL);
+            String size = properties.getProperty(SIZE);
+            if (url == null || size == null) {
+                throw new IllegalArgumentException("Invalid http cache entry");
+            }
+            return new Entry(url, properties.getProperty(ETAG), properties.getProperty(LAST_MODIFIED),
+                    properties.getProperty(CONTENT_TYPE), Long.parseLong(size));
+        }
+    }
+
+    /**
+     * Response served from the cache, in place of a response of which the content is not modified
+     */
+    private static class CachedResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        private final InputStream body;
+
+        CachedResponse(HttpEntity entity, InputStream body) {
+            super(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+            this.body = body;
+            setEntity(entity);
+        }
+
+        @Override
+        public void close() {
+            IOUtils.closeQuietly(body);
+        }
+    }
+}
@@ -20,80 +20,197 @@ package utils;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.http.config.Registry;
-import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.socket.PlainConnectionSocketFactory;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.ssl.SSLContextBuilder;
 import org.apache.http.conn.ssl.TrustStrategy;
-import org.apache.http.conn.ssl.X509HostnameVerifier;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
 
-import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
+import java.io.IOException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
 
-
+/**
+ * Owns the http transport shared by every REST call made during a run of the tool. The transport
+ * and its connection pool are created once, so TLS sessions and keep-alive connections are reused
+ * across API exports and imports instead of being set up for each request. The non-blocking
+ * transport is used unless the blocking transport is configured, or the non-blocking transport
+ * fails to start.
+ */
 public class HttpClientGenerator {
 
     private static final Log log = LogFactory.getLog(HttpClientGenerator.class);
 
+    private static HttpTransport transport;
+    private static IdleConnectionEvictor evictor;
+
     /**
-     * Returns a closableHttpClient from a connection manager pool
+     * Returns the shared http transport, creating it along with the connection pool on the first
+     * call. Callers must close the responses they get, but never the transport itself
      *
-     * @return a closable http client
+     * @return http transport
+     */
+    static synchronized HttpTransport getTransport() throws UtilException {
+        if (transport == null) {
+            ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
+            transport = createTransport(config);
+            //Close connections that have been idle longer than the configured time
+            evictor = new IdleConnectionEvictor(transport, config.getIdleConnectionSeconds());
+            evictor.start();
+        }
+        return transport;
+    }
+
+    /**
+     * Raise the connection pool limits, if needed, so that the given number of requests can be
+     * executed in parallel without waiting for a free connection
+     *
+     * @param connections number of parallel requests
+     */
+    static synchronized void ensurePoolCapacity(int connections) {
+        ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
+        if (config.getAdaptiveConcurrency()) {
+            //The concurrency limiter keeps the requests in flight within the pool
+            return;
+        }
+        if (config.getMaxConnectionsPerRoute() < connections) {
+            log.info("Increasing the maximum connections per route to " + connections);
+            config.setMaxConnectionsPerRoute(connections);
+        }
+        if (config.getMaxConnections() < connections) {
+            config.setMaxConnections(connections);
+        }
+        if (transport != null) {
+            transport.setPoolLimits(config.getMaxConnections(), config.getMaxConnectionsPerRoute());
+        }
+    }
+
+    /**
+     * Close the shared http transport and release all the pooled connections, at the end of the
+     * run
+     */
+    public static synchronized void closeHttpClient() {
+        if (evictor != null) {
+            evictor.shutdown();
+            evictor = null;
+        }
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (IOException e) {
+                log.warn("Error occurred while closing the http transport", e);
+            }
+            transport = null;
+        }
+    }
+
+    private static HttpTransport createTransport(ApiImportExportConfiguration config)
+            throws UtilException {
+
+        // Setup a Trust Strategy that allows all certificates.
+        SSLContext sslContext;
+        try {
+            sslContext = new SSLContextBuilder().loadTrustMaterial(null, new TrustStrategy() {
+                public boolean isTrusted(X509Certificate[] arg0, String arg1)
+                        throws CertificateException {
+                    return true;
+                }
+            }).build();
+        } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException e) {
+            String errorMsg = "error occurred while disabling SSL certificate validation";
+            log.error(errorMsg, e);
+            throw new UtilException(errorMsg, e);
+        }
+
+        if (ImportExportConstants.ASYNC_TRANSPORT.equalsIgnoreCase(config.getHttpTransport())) {
+            try {
+                return new AsyncHttpTransport(config, sslContext);
+            } catch (IOException e) {
+                log.warn("Unable to start the non-blocking http transport, falling back to the " +
+                        "blocking transport", e);
+            }
+        } else if (!ImportExportConstants.BLOCKING_TRANSPORT.equalsIgnoreCase(config.getHttpTransport())) {
+            log.warn("Unknown http transport " + config.getHttpTransport() + ", using the " +
+                    "blocking transport");
+        }
+        return new BlockingHttpTransport(config, sslContext);
+    }
+
+    /**
+     * Keep-alive strategy honouring the timeout in the server's Keep-Alive header, and falling back
+     * to the configured duration when the server does not send one
      */
+    static class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
 
-    public static CloseableHttpClient getHttpClient() throws UtilException {
+        private final long defaultKeepAlive;
 
+        KeepAliveStrategy(int keepAliveSeconds) {
+            this.defaultKeepAlive = TimeUnit.SECONDS.toMillis(keepAliveSeconds);
+        }
 
-            HttpClientBuilder b = HttpClientBuilder.create();
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            HeaderElementIterator it = new BasicHeaderElementIterator(
+                    response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement element = it.nextElement();
+                if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        return TimeUnit.SECONDS.toMillis(Long.parseLong(element.getValue()));
+                    } catch (NumberFormatException e) {
+                        log.debug("Ignoring invalid keep-alive timeout " + element.getValue());
+                    }
+                }
+            }
+            return defaultKeepAlive;
+        }
+    }
+
+    /**
+     * Daemon thread which periodically drops expired and idle connections from the pool, so a
+     * connection closed by the server is not handed out for the next request
+     */
+    private static class IdleConnectionEvictor extends Thread {
 
-            // Setup a Trust Strategy that allows all certificates.
-            SSLContext sslContext;
+        private final HttpTransport transport;
+        private final int idleSeconds;
+        private volatile boolean shutdown;
+
+        IdleConnectionEvictor(HttpTransport transport, int idleSeconds) {
+            super("idle-connection-evictor");
+            setDaemon(true);
+            this.transport = transport;
+            this.idleSeconds = idleSeconds;
+        }
+
+        @Override
+        public void run() {
             try {
-                sslContext = new SSLContextBuilder().loadTrustMaterial(null, new TrustStrategy() {
-                    public boolean isTrusted(X509Certificate[] arg0, String arg1)
-                            throws CertificateException {
-                        return true;
+                while (!shutdown) {
+                    synchronized (this) {
+                        wait(TimeUnit.SECONDS.toMillis(Math.max(1, idleSeconds / 2)));
                     }
-                }).build();
-            } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException e) {
-                String errorMsg = "error occurred while disabling SSL certificate validation";
-                log.error(errorMsg, e);
-                throw new UtilException(errorMsg, e);
+                    transport.closeIdleConnections(idleSeconds);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void shutdown() {
+            shutdown = true;
+            synchronized (this) {
+                notifyAll();
             }
-            b.setSslcontext(sslContext);
-
-            // Allow all Hostnames
-            HostnameVerifier hostnameVerifier =
-                    SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
-
-            //       Create an SSL Socket Factory, to use weakened "trust strategy";
-            //       and create a Registry, to register it.
-            SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext,
-                    (X509HostnameVerifier) hostnameVerifier);
-            Registry<ConnectionSocketFactory> socketFactoryRegistry =
-                    RegistryBuilder.<ConnectionSocketFactory>create()
-                            .register("http", PlainConnectionSocketFactory.getSocketFactory())
-                            .register("https", sslSocketFactory)
-                            .build();
-
-            // Creating connection-manager using Registry.
-            //      -- allows multi-threaded use
-            PoolingHttpClientConnectionManager connMgr =
-                    new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-            b.setConnectionManager(connMgr);
-
-            // Finally, build the HttpClient;
-            CloseableHttpClient client = b.build();
-            return client;
+        }
     }
 }
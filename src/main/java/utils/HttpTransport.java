@@ -0,0 +1,56 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends the requests made to the publisher and the gateway. A transport returns as soon as the
+ * request is handed over, and completes the returned future with the response, so a caller never
+ * needs to hold a thread while the request is in flight.
+ */
+interface HttpTransport extends Closeable {
+
+    /**
+     * Send the request
+     *
+     * @param request request to be sent
+     * @return future completed with the response, which must be closed by the caller, or with the
+     * I/O error the request failed with
+     */
+    CompletableFuture<CloseableHttpResponse> send(HttpUriRequest request);
+
+    /**
+     * Change the limits of the connection pool of the transport
+     *
+     * @param maxConnections         maximum connections in total
+     * @param maxConnectionsPerRoute maximum connections to a single host
+     */
+    void setPoolLimits(int maxConnections, int maxConnectionsPerRoute);
+
+    /**
+     * Close the connections expired, or idle longer than the given time
+     *
+     * @param idleSeconds seconds a connection may stay idle
+     */
+    void closeIdleConnections(int idleSeconds);
+}
@@ -113,7 +113,8 @@ class ImportExport {
                 }
             }
         }
-
+        //Releasing the pooled connections of the run
+        HttpClientGenerator.closeHttpClient();
     }
 
     /**
@@ -138,6 +139,26 @@ class ImportExport {
         String zipFile = System.getProperty(ImportExportConstants.ZIP_FILE_PROP);
         String updateApi = System.getProperty(ImportExportConstants.UPDATE_API_PROP);
         String clientName = System.getProperty(ImportExportConstants.CLIENT_NAME_PROP);
+        String maxConnections = System.getProperty(ImportExportConstants.MAX_CONNECTIONS_PROP);
+        String maxConnectionsPerRoute =
+                System.getProperty(ImportExportConstants.MAX_CONNECTIONS_PER_ROUTE_PROP);
+        String httpTransport = System.getProperty(ImportExportConstants.HTTP_TRANSPORT_PROP);
+        String reactorThreads = System.getProperty(ImportExportConstants.REACTOR_THREADS_PROP);
+        String compressResponses = System.getProperty(ImportExportConstants.RESPONSE_COMPRESSION_PROP);
+        String compressRequests = System.getProperty(ImportExportConstants.REQUEST_COMPRESSION_PROP);
+        String httpCache = System.getProperty(ImportExportConstants.HTTP_CACHE_PROP);
+        String httpCachePath = System.getProperty(ImportExportConstants.HTTP_CACHE_PATH_PROP);
+        String httpCacheSize = System.getProperty(ImportExportConstants.HTTP_CACHE_SIZE_PROP);
+        String readRate = System.getProperty(ImportExportConstants.READ_REQUEST_RATE_PROP);
+        String writeRate = System.getProperty(ImportExportConstants.WRITE_REQUEST_RATE_PROP);
+        String adaptiveConcurrency = System.getProperty(ImportExportConstants.ADAPTIVE_CONCURRENCY_PROP);
+        String threads = System.getProperty(ImportExportConstants.THREADS_PROP);
+        String ioThreads = System.getProperty(ImportExportConstants.IO_THREADS_PROP);
+        String compressionThreads = System.getProperty(ImportExportConstants.COMPRESSION_THREADS_PROP);
+        String compressionLevel = System.getProperty(ImportExportConstants.COMPRESSION_LEVEL_PROP);
+        String cacheCredentials = System.getProperty(ImportExportConstants.CACHE_CREDENTIALS_PROP);
+        String credentialStore = System.getProperty(ImportExportConstants.CREDENTIAL_STORE_PROP);
+        String baseline = System.getProperty(ImportExportConstants.BASELINE_PROP);
 
         //If a user config file given,overriding default configurations with it.
         if (StringUtils.isNotBlank(configFile)) {
@@ -184,6 +205,71 @@ class ImportExport {
         if (StringUtils.isNotBlank(clientName)) {
             config.setClientName(clientName);
         }
+        if (StringUtils.isNotBlank(maxConnections)) {
+            config.setMaxConnections(ImportExportUtils.parseIntValue(maxConnections,
+                    config.getMaxConnections()));
+        }
+        if (StringUtils.isNotBlank(maxConnectionsPerRoute)) {
+            config.setMaxConnectionsPerRoute(ImportExportUtils.parseIntValue(maxConnectionsPerRoute,
+                    config.getMaxConnectionsPerRoute()));
+        }
+        if (StringUtils.isNotBlank(httpTransport)) {
+            config.setHttpTransport(httpTransport.trim());
+        }
+        if (StringUtils.isNotBlank(reactorThreads)) {
+            config.setReactorThreads(ImportExportUtils.parseIntValue(reactorThreads,
+                    config.getReactorThreads()));
+        }
+        if (StringUtils.isNotBlank(compressResponses)) {
+            config.setResponseCompression(Boolean.parseBoolean(compressResponses));
+        }
+        if (StringUtils.isNotBlank(compressRequests)) {
+            config.setRequestCompression(Boolean.parseBoolean(compressRequests));
+        }
+        if (StringUtils.isNotBlank(httpCache)) {
+            config.setHttpCache(Boolean.parseBoolean(httpCache));
+        }
+        if (StringUtils.isNotBlank(httpCachePath)) {
+            config.setHttpCachePath(httpCachePath);
+        }
+        if (StringUtils.isNotBlank(httpCacheSize)) {
+            config.setHttpCacheSize(ImportExportUtils.parseIntValue(httpCacheSize,
+                    config.getHttpCacheSize()));
+        }
+        if (StringUtils.isNotBlank(readRate)) {
+            config.setReadRequestRate(ImportExportUtils.parseIntValue(readRate,
+                    config.getReadRequestRate()));
+        }
+        if (StringUtils.isNotBlank(writeRate)) {
+            config.setWriteRequestRate(ImportExportUtils.parseIntValue(writeRate,
+                    config.getWriteRequestRate()));
+        }
+        if (StringUtils.isNotBlank(adaptiveConcurrency)) {
+            config.setAdaptiveConcurrency(Boolean.parseBoolean(adaptiveConcurrency));
+        }
+        if (StringUtils.isNotBlank(threads)) {
+            config.setThreads(ImportExportUtils.parseIntValue(threads, config.getThreads()));
+        }
+        if (StringUtils.isNotBlank(ioThreads)) {
+            config.setIoThreads(ImportExportUtils.parseIntValue(ioThreads, config.getIoThreads()));
+        }
+        if (StringUtils.isNotBlank(compressionThreads)) {
+            config.setCompressionThreads(ImportExportUtils.parseIntValue(compressionThreads,
+                    config.getCompressionThreads()));
+        }
+        if (StringUtils.isNotBlank(compressionLevel)) {
+            config.setCompressionLevel(ImportExportUtils.parseIntValue(compressionLevel,
+                    config.getCompressionLevel()));
+        }
+        if (StringUtils.isNotBlank(cacheCredentials)) {
+            config.setCacheCredentials(Boolean.parseBoolean(cacheCredentials));
+        }
+        if (StringUtils.isNotBlank(credentialStore)) {
+            config.setCredentialStorePath(credentialStore);
+        }
+        if (StringUtils.isNotBlank(baseline)) {
+            config.setBaselineArchive(baseline);
+        }
 
         //Validating publisher url
         boolean value = checkPublisherUrl(config.getPublisherUrl());
@@ -30,17 +30,9 @@ public class ImportExportConstants {
     //archive constants
     public static final String DOCUMENT_DIRECTORY = "docs";
     public static final String INLINE_DOCUMENT_DIRECTORY = "InlineContents";
-    public static final String JSON_FILE_LOCATION = DIRECTORY_SEPARATOR + "meta-information" +
-            DIRECTORY_SEPARATOR + "api.json";
-    public static final String DOCUMENT_FILE_LOCATION = DIRECTORY_SEPARATOR + "docs" +
-            DIRECTORY_SEPARATOR + "docs.json";
     public static final char ZIP_FILE_SEPARATOR = '/';
-    //length of the name of the temporary directory
-    public static final int TEMP_FILENAME_LENGTH = 5;
     //image File name
     public static final String IMG_NAME = "icon";
-    //default buffer size
-    public static final int defaultBufferSize = 1024;
 
 
     //OAuth constants
@@ -52,6 +44,9 @@ public class ImportExportConstants {
     public static final String CLIENT_ID = "clientId";
     public static final String CLIENT_SECRET = "clientSecret";
     public static final String ACCESS_TOKEN = "access_token";
+    public static final String EXPIRES_IN = "expires_in";
+    public static final String REFRESH_TOKEN = "refresh_token";
+    public static final String REFRESH_GRANT_TYPE = "refresh_token";
     public static final String USERNAME = "username";
 
     //default configuration location
@@ -74,9 +69,35 @@ public class ImportExportConstants {
     public static final String DESTINATION_FOLDER = "destination.file.name";
     public static final String ZIP_FILE = "zip.file";
     public static final String UPDATE_API = "update.existing.API";
+    public static final String MAX_CONNECTIONS = "http.max.connections";
+    public static final String MAX_CONNECTIONS_PER_ROUTE = "http.max.connections.per.route";
+    public static final String KEEP_ALIVE_SECONDS = "http.keep.alive.seconds";
+    public static final String IDLE_CONNECTION_SECONDS = "http.idle.connection.seconds";
+    public static final String HTTP_TRANSPORT = "http.transport";
+    public static final String REACTOR_THREADS = "http.reactor.threads";
+    public static final String RESPONSE_COMPRESSION = "http.compression.responses";
+    public static final String REQUEST_COMPRESSION = "http.compression.requests";
+    public static final String HTTP_CACHE = "http.cache.enabled";
+    public static final String HTTP_CACHE_PATH = "http.cache.path";
+    public static final String HTTP_CACHE_SIZE = "http.cache.max.megabytes";
+    public static final String READ_REQUEST_RATE = "http.read.requests.per.second";
+    public static final String WRITE_REQUEST_RATE = "http.write.requests.per.second";
+    public static final String MAX_RETRIES = "http.retry.max";
+    public static final String RETRY_BACKOFF_MILLIS = "http.retry.backoff.millis";
+    public static final String CIRCUIT_FAILURE_THRESHOLD = "http.circuit.failure.threshold";
+    public static final String CIRCUIT_OPEN_SECONDS = "http.circuit.open.seconds";
+    public static final String ADAPTIVE_CONCURRENCY = "adaptive.concurrency";
+    public static final String THREADS = "worker.threads";
+    public static final String IO_THREADS = "io.threads";
+    public static final String COMPRESSION_THREADS = "archive.compression.threads";
+    public static final String COMPRESSION_LEVEL = "archive.compression.level";
+    public static final String CACHE_CREDENTIALS = "credential.cache.enabled";
+    public static final String CREDENTIAL_STORE = "credential.store.path";
+    public static final String BASELINE_ARCHIVE = "baseline.archive";
 
     //system property constants
     public static final String USER_DIR = "user.dir";
+    public static final String USER_HOME = "user.home";
     public static final String API_NAME = "name";
     public static final String API_VERSION = "version";
     public static final String API_PROVIDER = "provider";
@@ -94,6 +115,100 @@ public class ImportExportConstants {
     public static final String ZIP_FILE_PROP = "zip";
     public static final String UPDATE_API_PROP = "updateIfExists";
     public static final String CLIENT_NAME_PROP = "clientName";
+    public static final String MAX_CONNECTIONS_PROP = "maxConnections";
+    public static final String MAX_CONNECTIONS_PER_ROUTE_PROP = "maxConnectionsPerRoute";
+    public static final String HTTP_TRANSPORT_PROP = "transport";
+    public static final String REACTOR_THREADS_PROP = "reactorThreads";
+    public static final String RESPONSE_COMPRESSION_PROP = "compressResponses";
+    public static final String REQUEST_COMPRESSION_PROP = "compressRequests";
+    public static final String HTTP_CACHE_PROP = "httpCache";
+    public static final String HTTP_CACHE_PATH_PROP = "httpCachePath";
+    public static final String HTTP_CACHE_SIZE_PROP = "httpCacheSize";
+    public static final String READ_REQUEST_RATE_PROP = "readRate";
+    public static final String WRITE_REQUEST_RATE_PROP = "writeRate";
+    public static final String ADAPTIVE_CONCURRENCY_PROP = "adaptiveConcurrency";
+    public static final String THREADS_PROP = "threads";
+    public static final String IO_THREADS_PROP = "ioThreads";
+    public static final String COMPRESSION_THREADS_PROP = "compressionThreads";
+    public static final String COMPRESSION_LEVEL_PROP = "compressionLevel";
+    public static final String CACHE_CREDENTIALS_PROP = "cacheCredentials";
+    public static final String CREDENTIAL_STORE_PROP = "credentialStore";
+    public static final String BASELINE_PROP = "baseline";
+
+    //http connection pool defaults
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    public static final int DEFAULT_KEEP_ALIVE_SECONDS = 30;
+    public static final int DEFAULT_IDLE_CONNECTION_SECONDS = 30;
+
+    //http transports, the non-blocking transport being used only when configured
+    public static final String ASYNC_TRANSPORT = "async";
+    public static final String BLOCKING_TRANSPORT = "blocking";
+    public static final String DEFAULT_HTTP_TRANSPORT = BLOCKING_TRANSPORT;
+    //threads dispatching the I/O events of all the connections of the non-blocking transport
+    public static final int DEFAULT_REACTOR_THREADS = Runtime.getRuntime().availableProcessors();
+
+    //http compression defaults, responses are requested compressed and large text request bodies
+    //are sent compressed, unless the server rejects them
+    public static final boolean DEFAULT_RESPONSE_COMPRESSION = true;
+    public static final boolean DEFAULT_REQUEST_COMPRESSION = true;
+    public static final int REQUEST_COMPRESSION_MIN_SIZE = 4 * 1024;
+    public static final String GZIP_ENCODING = "gzip";
+    //responses larger than this are spooled to a file by the non-blocking transport, instead of
+    //being read in to memory
+    public static final int RESPONSE_MEMORY_LIMIT = 1024 * 1024;
+
+    //http cache defaults, the swagger, wsdl, thumbnail and document contents of exported APIs are
+    //kept in the user's home directory and requested again only if changed on the server
+    public static final boolean DEFAULT_HTTP_CACHE = true;
+    public static final String HTTP_CACHE_DIRECTORY = "http-cache";
+    public static final int DEFAULT_HTTP_CACHE_SIZE = 256;
+    //responses larger than this are not cached
+    public static final int HTTP_CACHE_MAX_ENTRY_SIZE = 16 * 1024 * 1024;
+
+    //request rate limit, retry and circuit breaker defaults
+    public static final int DEFAULT_READ_REQUEST_RATE = 50;
+    public static final int DEFAULT_WRITE_REQUEST_RATE = 20;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final int DEFAULT_RETRY_BACKOFF_MILLIS = 500;
+    //retries are never delayed longer than this
+    public static final int MAX_RETRY_BACKOFF_MILLIS = 30 * 1000;
+    public static final int DEFAULT_CIRCUIT_FAILURE_THRESHOLD = 10;
+    public static final int DEFAULT_CIRCUIT_OPEN_SECONDS = 30;
+
+    //worker pool defaults
+    public static final int DEFAULT_THREADS = 1;
+    //whether the requests in flight are limited by the latency of the publisher, up to the maximum
+    //connections per route, instead of by the number of threads
+    public static final boolean DEFAULT_ADAPTIVE_CONCURRENCY = true;
+    public static final int DEFAULT_IO_THREADS = 4;
+
+    //archive defaults
+    public static final int ARCHIVE_BUFFER_SIZE = 64 * 1024;
+    //buffers of the archive buffer size kept for reuse by the copies of binary content
+    public static final int MAX_POOLED_BUFFERS = 64;
+    //entries of an API larger than this are spooled to a file until the API is exported
+    public static final int STAGED_ENTRY_MEMORY_LIMIT = 1024 * 1024;
+    //entries larger than this are split in to chunks compressed in parallel
+    public static final int COMPRESSION_CHUNK_SIZE = 512 * 1024;
+    public static final int DEFAULT_COMPRESSION_THREADS = Runtime.getRuntime().availableProcessors();
+    //deflate level of compressible entries, from 1 (fastest) to 9 (smallest)
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    //manifest of the exported APIs, at the root of the archive
+    public static final String MANIFEST_FILE = "manifest.json";
+    //committed APIs are journaled with a single sync of the archive once this many APIs, or once
+    //this many seconds since the last sync, are committed
+    public static final int JOURNAL_CHECKPOINT_APIS = 32;
+    public static final int JOURNAL_CHECKPOINT_SECONDS = 5;
+    //APIs staged by each export worker ahead of the first API not yet written in to the archive
+    public static final int EXPORT_AHEAD_APIS_PER_THREAD = 4;
+
+    //credential store defaults
+    public static final boolean DEFAULT_CACHE_CREDENTIALS = true;
+    public static final String CREDENTIAL_STORE_DIRECTORY = ".importExport";
+    public static final String CREDENTIAL_STORE_FILE = "credentials";
+    //tokens expiring within this time are refreshed before use
+    public static final int TOKEN_EXPIRY_MARGIN_SECONDS = 60;
 
     //REST API constants
     public static final String CREATED = "CREATED";
@@ -110,6 +225,11 @@ public class ImportExportConstants {
     public static final String APIS_URL = "/apis";
     public static final String MEDIATION_SEG = "/policies/mediation";
     public static final String WSDL_SEG = "/wsdl";
+    //number of resources listed per request, when listing them page by page
+    public static final int LIST_PAGE_LIMIT = 100;
+    //links to the next page of a listing, at the top level or inside its pagination element
+    public static final String LIST_NEXT = "next";
+    public static final String LIST_PAGINATION = "pagination";
 
     //json string constants
     public static final String STATUS_CONSTANT = "status";
@@ -122,6 +242,7 @@ public class ImportExportConstants {
     public static final String DOC_NAME = "name";
     public static final String THUMBNAIL = "thumbnailUri";
     public static final String WSDL_URI = "wsdlUri";
+    public static final String LAST_UPDATED = "lastUpdatedTime";
     public static final String FILE_DOCUMENT_DIRECTORY = "FileContents";
     public static final String INLINE_DOC_TYPE = "INLINE";
     public static final String FILE_DOC_TYPE = "FILE";
@@ -145,6 +266,9 @@ public class ImportExportConstants {
     public static final String DOC_JSON = "docs.json";
     public static final String SWAGGER_JSON = "swagger.json";
     public static final String ZIP_EXTENSION = ".zip";
+    public static final String PART_EXTENSION = ".part";
+    public static final String JOURNAL_EXTENSION = ".journal";
+    public static final String IMPORT_JOURNAL_EXTENSION = ".import.journal";
     public static final String MEDIATION_FOLDER = "mediation_policies";
     public static final String WSDL_FILE_NAME = "wsdl";
 
@@ -167,6 +291,8 @@ public class ImportExportConstants {
     public static final String BMP_IMG = "image/bmp";
     public static final String GIF_TYPE = "gif";
     public static final String GIF_IMG = "image/gif";
+    //bytes of a thumbnail read ahead to find its image type
+    public static final int IMG_TYPE_PEEK_SIZE = 16;
     public static final boolean DEFAULT_SAAS_APP = true;
 
 
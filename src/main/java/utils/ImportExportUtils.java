@@ -30,11 +30,10 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
-import org.codehaus.jackson.map.ObjectMapper;
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -50,6 +49,7 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.log4j.Logger.getLogger;
 
@@ -61,7 +61,8 @@ class ImportExportUtils {
     private static final Logger log = getLogger(ImportExportUtils.class);
 
     /**
-     * Registering the clientApplication
+     * Registering the clientApplication, or reusing the client registered by a previous run with
+     * the same registration url and user
      *
      * @param username user name of the logged in user
      * @param password password of the logged in user
@@ -69,6 +70,11 @@ class ImportExportUtils {
      */
     public static String registerClient(String username, String password) throws UtilException {
 
+        String cachedCredentials = CredentialStore.getInstance().getClientCredentials();
+        if (cachedCredentials != null) {
+            log.debug("Reusing the client registered by a previous run");
+            return cachedCredentials;
+        }
         ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
         String userPwd = username + ":" + password;
         //Encoding user name and password to base 64
@@ -90,17 +96,15 @@ class ImportExportUtils {
         jsonObject.put(ImportExportConstants.SAAS_APP, ImportExportConstants.DEFAULT_SAAS_APP);
 
         //REST API call for registering client
-        CloseableHttpResponse response;
-        CloseableHttpClient client = null;
+        CloseableHttpResponse response = null;
         try {
             String url = config.getDcrUrl();
-            client = HttpClientGenerator.getHttpClient();
             HttpPost request = new HttpPost(url);
             request.setEntity(new StringEntity(jsonObject.toJSONString(), ImportExportConstants.CHARSET));
             request.setHeader(HttpHeaders.AUTHORIZATION,
                     ImportExportConstants.AUTHORIZATION_KEY_SEGMENT + encodedCredentials);
             request.setHeader(HttpHeaders.CONTENT_TYPE, ImportExportConstants.CONTENT_JSON);
-            response = client.execute(request);
+            response = RequestExecutor.getInstance().execute(request);
 
             if (response.getStatusLine().getStatusCode() == Response.Status.OK.getStatusCode()) {
                 String jsonString = EntityUtils.toString(response.getEntity());
@@ -110,7 +114,9 @@ class ImportExportUtils {
                         jsonObj.get(ImportExportConstants.CLIENT_SECRET);
                 byte[] bytes = Base64.encodeBase64(consumerCredentials.getBytes
                         (Charset.defaultCharset()));
-                return new String(bytes, ImportExportConstants.CHARSET);
+                String encodedConsumerCredentials = new String(bytes, ImportExportConstants.CHARSET);
+                CredentialStore.getInstance().saveClientCredentials(encodedConsumerCredentials);
+                return encodedConsumerCredentials;
             } else if (response.getStatusLine().getStatusCode() == Response.Status.UNAUTHORIZED.getStatusCode()) {
                 String errorMsg = "invalid username or password entered ,cannot register the client";
                 log.error(errorMsg);
@@ -137,18 +143,57 @@ class ImportExportUtils {
             log.error(msg, e);
             throw new UtilException(msg, e);
         } finally {
-            IOUtils.closeQuietly(client);
+            IOUtils.closeQuietly(response);
+        }
+    }
+
+    /**
+     * Retrieve a access token with requested scope, reusing a token generated by a previous run
+     * while it is still valid, or refreshing it if it has expired
+     *
+     * @param scope               required token scope
+     * @param consumerCredentials encoded consumerKey and consumerSecret
+     * @return access token along with its refresh token and expiry time
+     */
+    static AccessToken getAccessToken(String scope, String consumerCredentials) throws UtilException {
+        AccessToken cachedToken = CredentialStore.getInstance().getAccessToken(scope);
+        if (cachedToken != null && consumerCredentials.equals(cachedToken.getConsumerCredentials())) {
+            if (!cachedToken.isExpiring()) {
+                return cachedToken;
+            }
+            if (cachedToken.getRefreshToken() != null) {
+                try {
+                    return refreshAccessToken(scope, cachedToken);
+                } catch (UtilException e) {
+                    log.debug("Unable to refresh the cached access token", e);
+                }
+            }
         }
+        return generateAccessToken(scope, consumerCredentials, true);
     }
 
     /**
-     * Retrieve a access token with requested scope
+     * Generate a new access token with requested scope using the password grant
      *
      * @param scope               required token scope
      * @param consumerCredentials encoded consumerKey and consumerSecret
+     * @return access token along with its refresh token and expiry time
      */
+    static AccessToken generateAccessToken(String scope, String consumerCredentials)
+            throws UtilException {
+        return generateAccessToken(scope, consumerCredentials, true);
+    }
 
-    static String getAccessToken(String scope, String consumerCredentials) throws UtilException {
+    /**
+     * Generate a new access token with requested scope using the password grant
+     *
+     * @param scope               required token scope
+     * @param consumerCredentials encoded consumerKey and consumerSecret
+     * @param reRegister          whether to register the client again if the cached client is
+     *                            rejected
+     */
+    private static AccessToken generateAccessToken(String scope, String consumerCredentials,
+                                                   boolean reRegister) throws UtilException {
 
         ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
         //Mapping payload to a List
@@ -160,20 +205,86 @@ class ImportExportUtils {
                 String.valueOf(config.getPassword())));
         params.add(new BasicNameValuePair(ImportExportConstants.SCOPE_CONSTANT, scope));
 
+        CredentialStore store = CredentialStore.getInstance();
+        AccessToken accessToken = requestAccessToken(params, consumerCredentials);
+        if (accessToken == null && reRegister && consumerCredentials.equals(store.getClientCredentials())) {
+            //The client registered by a previous run is no longer known to the server
+            log.warn("Cached client registration rejected, registering the client again");
+            store.removeClientCredentials();
+            String newCredentials = registerClient(config.getUsername(),
+                    String.valueOf(config.getPassword()));
+            return generateAccessToken(scope, newCredentials, false);
+        }
+        if (accessToken == null) {
+            String errorMsg = "Unable to generate an access token with scope " + scope;
+            log.error(errorMsg);
+            throw new UtilException(errorMsg);
+        }
+        store.saveAccessToken(scope, accessToken);
+        return accessToken;
+    }
+
+    /**
+     * Refresh an access token using the refresh token grant
+     *
+     * @param scope       token scope
+     * @param accessToken access token to be refreshed
+     * @return new access token along with its refresh token and expiry time
+     */
+    static AccessToken refreshAccessToken(String scope, AccessToken accessToken) throws UtilException {
+        List<NameValuePair> params = new ArrayList<>(3);
+        params.add(new BasicNameValuePair(ImportExportConstants.TOKEN_GRANT_TYPE,
+                ImportExportConstants.REFRESH_GRANT_TYPE));
+        params.add(new BasicNameValuePair(ImportExportConstants.REFRESH_TOKEN,
+                accessToken.getRefreshToken()));
+        params.add(new BasicNameValuePair(ImportExportConstants.SCOPE_CONSTANT, scope));
+
+        AccessToken refreshedToken = requestAccessToken(params, accessToken.getConsumerCredentials());
+        if (refreshedToken == null) {
+            String errorMsg = "Unable to refresh the access token with scope " + scope;
+            log.debug(errorMsg);
+            throw new UtilException(errorMsg);
+        }
+        CredentialStore.getInstance().saveAccessToken(scope, refreshedToken);
+        return refreshedToken;
+    }
+
+    /**
+     * Request an access token from the token endpoint
+     *
+     * @param params              token request parameters
+     * @param consumerCredentials encoded consumerKey and consumerSecret
+     * @return access token, or null if the token endpoint rejected the request
+     */
+    private static AccessToken requestAccessToken(List<NameValuePair> params, String consumerCredentials)
+            throws UtilException {
+
         //REST API call for get tokens
-        CloseableHttpClient client = HttpClientGenerator.getHttpClient();
-        String url = config.getGatewayUrl();
+        String url = ApiImportExportConfiguration.getInstance().getGatewayUrl();
+        CloseableHttpResponse response = null;
         try {
             HttpPost request = new HttpPost(url);
             request.setEntity(new UrlEncodedFormEntity(params, ImportExportConstants.CHARSET));
             request.setHeader(HttpHeaders.AUTHORIZATION,
                     ImportExportConstants.AUTHORIZATION_KEY_SEGMENT + consumerCredentials);
-            CloseableHttpResponse response;
-            response = client.execute(request);
+            response = RequestExecutor.getInstance().execute(request);
+            int statusCode = response.getStatusLine().getStatusCode();
             String responseString = EntityUtils.toString(response.getEntity());
+            if (statusCode != Response.Status.OK.getStatusCode()) {
+                log.debug("Token request failed with status " + statusCode + " : " + responseString);
+                return null;
+            }
             JSONObject jsonObj = (JSONObject) new JSONParser().parse(responseString);
-            //Extract access token form the response string and return
-            return ((String) jsonObj.get(ImportExportConstants.ACCESS_TOKEN));
+            //Extract access token, refresh token and validity period form the response string
+            String token = (String) jsonObj.get(ImportExportConstants.ACCESS_TOKEN);
+            if (token == null) {
+                return null;
+            }
+            Object expiresIn = jsonObj.get(ImportExportConstants.EXPIRES_IN);
+            long expiresAt = expiresIn instanceof Number ? System.currentTimeMillis() +
+                    TimeUnit.SECONDS.toMillis(((Number) expiresIn).longValue()) : Long.MAX_VALUE;
+            return new AccessToken(token, (String) jsonObj.get(ImportExportConstants.REFRESH_TOKEN),
+                    expiresAt, consumerCredentials);
         } catch (ParseException e) {
             String errorMsg = "Error occurred while extracting access token from the response";
             log.error(errorMsg, e);
@@ -183,7 +294,7 @@ class ImportExportUtils {
             log.error(errorMsg, e);
             throw new UtilException(errorMsg, e);
         } finally {
-            IOUtils.closeQuietly(client);
+            IOUtils.closeQuietly(response);
         }
     }
 
@@ -239,6 +350,7 @@ class ImportExportUtils {
         config.setLog4JFilePath(prop.getProperty(ImportExportConstants.LOG4J_FILE));
         config.setApiFilePath(prop.getProperty(ImportExportConstants.API_LIST_FILE));
         config.setUpdateApi(Boolean.parseBoolean(prop.getProperty(ImportExportConstants.UPDATE_API)));
+        setRuntimeConfigurations(prop, config);
     }
 
     /**
@@ -298,9 +410,140 @@ class ImportExportUtils {
                 config.setUpdateApi(Boolean.parseBoolean(prop.getProperty
                         (ImportExportConstants.UPDATE_API)));
             }
+            if (StringUtils.isNotBlank(prop.getProperty(ImportExportConstants.BASELINE_ARCHIVE))) {
+                config.setBaselineArchive(prop.getProperty(ImportExportConstants.BASELINE_ARCHIVE));
+            }
+            setRuntimeConfigurations(prop, config);
         }
     }
 
+    /**
+     * Set the http connection pool, request rate limit and retry, worker pool and credential cache
+     * configurations found in the given properties
+     *
+     * @param prop   loaded configuration properties
+     * @param config ApiImportExportConfiguration object
+     */
+    private static void setRuntimeConfigurations(Properties prop,
+                                                 ApiImportExportConfiguration config) {
+        config.setMaxConnections(parseIntValue(prop.getProperty
+                (ImportExportConstants.MAX_CONNECTIONS), config.getMaxConnections()));
+        config.setMaxConnectionsPerRoute(parseIntValue(prop.getProperty
+                (ImportExportConstants.MAX_CONNECTIONS_PER_ROUTE), config.getMaxConnectionsPerRoute()));
+        config.setKeepAliveSeconds(parseIntValue(prop.getProperty
+                (ImportExportConstants.KEEP_ALIVE_SECONDS), config.getKeepAliveSeconds()));
+        config.setIdleConnectionSeconds(parseIntValue(prop.getProperty
+                (ImportExportConstants.IDLE_CONNECTION_SECONDS), config.getIdleConnectionSeconds()));
+        if (StringUtils.isNotBlank(prop.getProperty(ImportExportConstants.HTTP_TRANSPORT))) {
+            config.setHttpTransport(prop.getProperty(ImportExportConstants.HTTP_TRANSPORT).trim());
+        }
+        config.setReactorThreads(parseIntValue(prop.getProperty
+                (ImportExportConstants.REACTOR_THREADS), config.getReactorThreads()));
+        if (StringUtils.isNotBlank(prop.getProperty(ImportExportConstants.RESPONSE_COMPRESSION))) {
+            config.setResponseCompression(Boolean.parseBoolean(prop.getProperty
+                    (ImportExportConstants.RESPONSE_COMPRESSION)));
+        }
+        if (StringUtils.isNotBlank(prop.getProperty(ImportExportConstants.REQUEST_COMPRESSION))) {
+            config.setRequestCompression(Boolean.parseBoolean(prop.getProperty
+                    (ImportExportConstants.REQUEST_COMPRESSION)));
+        }
+        if (StringUtils.isNotBlank(prop.getProperty(ImportExportConstants.HTTP_CACHE))) {
+            config.setHttpCache(Boolean.parseBoolean(prop.getProperty(ImportExportConstants.HTTP_CACHE)));
+        }
+        if (StringUtils.isNotBlank(prop.getProperty(ImportExportConstants.HTTP_CACHE_PATH))) {
+            config.setHttpCachePath(prop.getProperty(ImportExportConstants.HTTP_CACHE_PATH));
+        }
+        config.setHttpCacheSize(parseIntValue(prop.getProperty(ImportExportConstants.HTTP_CACHE_SIZE),
+                config.getHttpCacheSize()));
+        config.setReadRequestRate(parseIntValue(prop.getProperty
+                (ImportExportConstants.READ_REQUEST_RATE), config.getReadRequestRate()));
+        config.setWriteRequestRate(parseIntValue(prop.getProperty
+                (ImportExportConstants.WRITE_REQUEST_RATE), config.getWriteRequestRate()));
+        config.setMaxRetries(parseIntValue(prop.getProperty(ImportExportConstants.MAX_RETRIES),
+                config.getMaxRetries()));
+        config.setRetryBackoffMillis(parseIntValue(prop.getProperty
+                (ImportExportConstants.RETRY_BACKOFF_MILLIS), config.getRetryBackoffMillis()));
+        config.setCircuitFailureThreshold(parseIntValue(prop.getProperty
+                (ImportExportConstants.CIRCUIT_FAILURE_THRESHOLD), config.getCircuitFailureThreshold()));
+        config.setCircuitOpenSeconds(parseIntValue(prop.getProperty
+                (ImportExportConstants.CIRCUIT_OPEN_SECONDS), config.getCircuitOpenSeconds()));
+        config.setThreads(parseIntValue(prop.getProperty(ImportExportConstants.THREADS),
+                config.getThreads()));
+        config.setIoThreads(parseIntValue(prop.getProperty(ImportExportConstants.IO_THREADS),
+                config.getIoThreads()));
+        config.setCompressionThreads(parseIntValue(prop.getProperty
+                (ImportExportConstants.COMPRESSION_THREADS), config.getCompressionThreads()));
+        if (StringUtils.isNotBlank(prop.getProperty(ImportExportConstants.ADAPTIVE_CONCURRENCY))) {
+            config.setAdaptiveConcurrency(Boolean.parseBoolean(prop.getProperty
+                    (ImportExportConstants.ADAPTIVE_CONCURRENCY)));
+        }
+        config.setCompressionLevel(parseIntValue(prop.getProperty
+                (ImportExportConstants.COMPRESSION_LEVEL), config.getCompressionLevel()));
+        if (StringUtils.isNotBlank(prop.getProperty(ImportExportConstants.CACHE_CREDENTIALS))) {
+            config.setCacheCredentials(Boolean.parseBoolean(prop.getProperty
+                    (ImportExportConstants.CACHE_CREDENTIALS)));
+        }
+        if (StringUtils.isNotBlank(prop.getProperty(ImportExportConstants.CREDENTIAL_STORE))) {
+            config.setCredentialStorePath(prop.getProperty(ImportExportConstants.CREDENTIAL_STORE));
+        }
+    }
+
+    /**
+     * Returns the number of threads of a worker pool. When the concurrency adapts to the publisher,
+     * the pools are sized for the maximum concurrency and the concurrency limiter decides how many
+     * of their requests are in flight
+     *
+     * @param configuredThreads configured number of threads of the pool
+     * @return number of threads of the pool
+     */
+    static int getPoolThreads(int configuredThreads) {
+        ApiImportExportConfiguration config = ApiImportExportConfiguration.getInstance();
+        if (config.getAdaptiveConcurrency()) {
+            return Math.max(configuredThreads, config.getMaxConnectionsPerRoute());
+        }
+        return configuredThreads;
+    }
+
+    /**
+     * Print the progress of exporting or importing a list of APIs, with the current limit of the
+     * requests in flight when it adapts to the publisher
+     *
+     * @param processed number of APIs processed
+     * @param total     number of APIs to be processed
+     */
+    static void printProgress(int processed, int total) {
+        StringBuilder progress = new StringBuilder("Processed ").append(processed).append(" of ")
+                .append(total).append(" APIs");
+        ConcurrencyLimiter limiter = RequestExecutor.getInstance().getConcurrencyLimiter();
+        if (limiter != null) {
+            progress.append(", concurrent requests limited to ").append(limiter.getLimit());
+        }
+        System.out.println(progress);
+    }
+
+    /**
+     * Parse a positive integer configuration value
+     *
+     * @param value        value to be parsed
+     * @param currentValue value to be kept if the given value is blank or invalid
+     * @return parsed value or the current value
+     */
+    static int parseIntValue(String value, int currentValue) {
+        if (StringUtils.isBlank(value)) {
+            return currentValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            log.debug("Invalid integer value " + value, e);
+        }
+        log.warn("Invalid configuration value " + value + ", using " + currentValue);
+        return currentValue;
+    }
+
     /**
      * Create directory at the given path
      *
@@ -308,9 +551,9 @@ class ImportExportUtils {
      */
     static void createDirectory(String path) throws UtilException {
         if (path != null) {
-            //Creating the directory
+            //Creating the directory, another thread may create the same directory concurrently
             File file = new File(path);
-            if (!file.exists() && !file.mkdirs()) {
+            if (!file.mkdirs() && !file.isDirectory()) {
                 //Throws a exception if the directory is not created successfully
                 String errorMessage = "Error while creating directory : " + path;
                 log.error(errorMessage);
@@ -319,6 +562,16 @@ class ImportExportUtils {
         }
     }
 
+    /**
+     * Build the name of an archive entry from the given folder and file names
+     *
+     * @param names folder names followed by the file name
+     * @return name of the entry
+     */
+    static String entryName(String... names) {
+        return StringUtils.join(names, ImportExportConstants.ZIP_FILE_SEPARATOR);
+    }
+
     /**
      * Retrieve the value correspond to the requesting element from a json string
      *
@@ -342,46 +595,25 @@ class ImportExportUtils {
     }
 
     /**
-     * This method will pretty print a json string and set the formatted string back
-     *
-     * @param input unformatted json string
-     * @return pretty printed json string
-     */
-    public static String formatJsonString(String input) {
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-            Object json = mapper.readValue(input, Object.class);
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(json);
-        } catch (IOException e) {
-            log.warn("Error occurred while formatting json string", e);
-            return input;
-        }
-    }
-
-    /**
-     * Validating the publisher url
+     * Validating the publisher url, unless it was validated by a previous run
      *
      * @param existingUrl current publisher url
      * @return true on valid, false on invalid url
      */
     public static boolean checkPublisherUrl(String existingUrl) {
+        CredentialStore store = CredentialStore.getInstance();
+        if (store.isValidPublisherUrl(existingUrl)) {
+            return true;
+        }
         boolean value = false;
         //Getting swagger.json correspond to given url
         String url = existingUrl + ImportExportConstants.URL_SEPARATOR +
                 ImportExportConstants.SWAGGER_JSON;
-        CloseableHttpClient client = null;
-        try {
-            client = HttpClientGenerator.getHttpClient();
-        } catch (UtilException e) {
-            ////TODO client
-            log.warn("Error occurred while getting closable http client for validating the" +
-                    " publisher url", e);
-        }
         HttpGet request = new HttpGet(url);
-        CloseableHttpResponse response;
+        CloseableHttpResponse response = null;
         String basePath;
         try {
-            response = client.execute(request);
+            response = RequestExecutor.getInstance().execute(request);
             HttpEntity entity = response.getEntity();
             if (isOfJson(entity)) {
                 String responseString = EntityUtils.toString(entity);
@@ -389,16 +621,90 @@ class ImportExportUtils {
                 basePath = readJsonValues(responseString, ImportExportConstants.BASEPATH);
                 if (basePath.indexOf(ImportExportConstants.PUBLISHER) > -1) {
                     value = true;
+                    store.saveValidPublisherUrl(existingUrl);
                 }
             }
-        } catch (IOException e) {
+        } catch (IOException | UtilException e) {
             log.error("Error occurred while getting url base path ", e);
         } finally {
-            IOUtils.closeQuietly(client);
+            IOUtils.closeQuietly(response);
         }
         return value;
     }
 
+    /**
+     * List all the resources of a publisher collection (APIs, mediation policies, etc.) page by page.
+     * The publisher may return fewer resources per page than requested, so the listing continues
+     * while the publisher links to a next page, or, if it does not link pages, until a page is empty
+     *
+     * @param url          url of the collection
+     * @param tokenManager token manager with the scopes to view the collection
+     * @return resources of the collection
+     * @throws UtilException if unable to list the collection
+     */
+    static List<Object> listResources(String url, TokenManager tokenManager) throws UtilException {
+        List<Object> resources = new ArrayList<>();
+        int limit = ImportExportConstants.LIST_PAGE_LIMIT;
+        int offset = 0;
+        boolean hasNext;
+        do {
+            String pageUrl = url + (url.indexOf('?') < 0 ? "?" : "&") + "limit=" + limit +
+                    "&offset=" + offset;
+            CloseableHttpResponse response = null;
+            try {
+                response = tokenManager.execute(new HttpGet(pageUrl));
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode != Response.Status.OK.getStatusCode()) {
+                    String errorMsg = "Error occurred while listing " + url + ", status code " +
+                            statusCode;
+                    log.error(errorMsg);
+                    throw new UtilException(errorMsg);
+                }
+                String responseString = EntityUtils.toString(response.getEntity(),
+                        ImportExportConstants.CHARSET);
+                JSONObject jsonObj = (JSONObject) new JSONParser().parse(responseString);
+                JSONArray page = (JSONArray) jsonObj.get(ImportExportConstants.API_LIST);
+                int listed = page == null ? 0 : page.size();
+                for (int i = 0; i < listed; i++) {
+                    resources.add(page.get(i));
+                }
+                offset += listed;
+                hasNext = listed > 0 && hasNextPage(jsonObj);
+            } catch (IOException e) {
+                String errorMsg = "Error occurred while listing " + url;
+                log.error(errorMsg, e);
+                throw new UtilException(errorMsg, e);
+            } catch (ParseException e) {
+                String errorMsg = "Error occurred while parsing the listing of " + url;
+                log.error(errorMsg, e);
+                throw new UtilException(errorMsg, e);
+            } finally {
+                IOUtils.closeQuietly(response);
+            }
+        } while (hasNext);
+        return resources;
+    }
+
+    /**
+     * Check whether a page of a listing is followed by another page. Without a link to the next
+     * page in the response, the next page is assumed to exist
+     *
+     * @param page page of the listing
+     * @return false if the page has an empty link to the next page
+     */
+    private static boolean hasNextPage(JSONObject page) {
+        JSONObject links = page;
+        if (!page.containsKey(ImportExportConstants.LIST_NEXT) &&
+                page.get(ImportExportConstants.LIST_PAGINATION) instanceof JSONObject) {
+            links = (JSONObject) page.get(ImportExportConstants.LIST_PAGINATION);
+        }
+        if (!links.containsKey(ImportExportConstants.LIST_NEXT)) {
+            return true;
+        }
+        Object next = links.get(ImportExportConstants.LIST_NEXT);
+        return next != null && StringUtils.isNotBlank(next.toString());
+    }
+
     /**
      * Check if the content type of the resulted response is json/ not
      *
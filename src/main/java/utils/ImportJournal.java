@@ -0,0 +1,197 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Journal of an import, kept next to the imported archive. Each step of importing an API folder
+ * (creating or updating the API, uploading its thumbnail, documents and wsdl, adding its mediation
+ * policies) is journaled once it succeeds, so a run interrupted by a crash or a failure continues
+ * from the first incomplete step of each API instead of repeating the finished steps.
+ */
+class ImportJournal extends Journal {
+
+    private static final Log log = LogFactory.getLog(ImportJournal.class);
+    //Step of creating the API, with the uuid of the created API
+    static final String CREATED_STEP = "created";
+    //Step of updating the API definition, with the uuid of the existing API
+    static final String UPDATED_STEP = "updated";
+    static final String THUMBNAIL_STEP = "thumbnail";
+    static final String WSDL_STEP = "wsdl";
+    //Step of updating all the documents of an existing API
+    static final String DOCUMENTS_STEP = "documents";
+    //Prefix of the steps of adding each document of a created API, followed by the document name
+    static final String DOCUMENT_STEP = "document/";
+    //Prefix of the steps of adding each mediation policy, followed by its type and name
+    static final String MEDIATION_STEP = "mediation/";
+    //Last step of an API, with the import status of the API
+    static final String STATUS_STEP = "status";
+
+    //Values of the journaled steps by the folder and the step
+    private final Map<String, String> steps = new HashMap<>();
+    private int completedApis;
+    private boolean enabled;
+
+    private ImportJournal(File journalFile, String jobId) {
+        super(journalFile, jobId);
+    }
+
+    /**
+     * Open the journal of an import job, reading the steps already done if the journal was left by
+     * an interrupted run of the same job
+     *
+     * @param journalFile journal file
+     * @param jobId       identifier of the import job
+     * @return journal
+     * @throws IOException if unable to read or write the journal
+     */
+    static ImportJournal open(File journalFile, String jobId) throws IOException {
+        ImportJournal journal = new ImportJournal(journalFile, jobId);
+        journal.open();
+        journal.enabled = true;
+        return journal;
+    }
+
+    /**
+     * Create a journal kept only in memory, for an import which cannot be resumed
+     *
+     * @return journal
+     */
+    static ImportJournal inMemory() {
+        return new ImportJournal(null, null);
+    }
+
+    @Override
+    void readLine(byte[] content, int offset, int length) throws IOException {
+        Step step = mapper.readValue(content, offset, length, Step.class);
+        put(step.getFolder(), step.getStep(), step.getValue());
+    }
+
+    @Override
+    void clear() {
+        steps.clear();
+        completedApis = 0;
+    }
+
+    private void put(String folder, String step, String value) {
+        if (steps.put(getKey(folder, step), value) == null && STATUS_STEP.equals(step)) {
+            completedApis++;
+        }
+    }
+
+    private static String getKey(String folder, String step) {
+        return folder + ImportExportConstants.ZIP_FILE_SEPARATOR + step;
+    }
+
+    /**
+     * Check whether a step of a folder is journaled
+     *
+     * @param folder folder of the imported archive
+     * @param step   step of importing the folder
+     * @return true if the step is done
+     */
+    synchronized boolean isDone(String folder, String step) {
+        return steps.containsKey(getKey(folder, step));
+    }
+
+    /**
+     * Returns the value journaled with a step of a folder
+     *
+     * @param folder folder of the imported archive
+     * @param step   step of importing the folder
+     * @return value of the step, or null if the step is not done
+     */
+    synchronized String getValue(String folder, String step) {
+        return steps.get(getKey(folder, step));
+    }
+
+    /**
+     * Journal a step of a folder as done. If the journal cannot be written, the import continues
+     * with the steps kept in memory, and is no longer resumable
+     *
+     * @param folder folder of the imported archive
+     * @param step   step of importing the folder
+     * @param value  value of the step, or null
+     */
+    synchronized void record(String folder, String step, String value) {
+        if (enabled) {
+            Step line = new Step();
+            line.setFolder(folder);
+            line.setStep(step);
+            line.setValue(value);
+            try {
+                writeLine(mapper.writeValueAsBytes(line));
+            } catch (IOException e) {
+                log.warn("Unable to write the import journal, an interrupted import will not be " +
+                        "resumable", e);
+                enabled = false;
+            }
+        }
+        put(folder, step, value);
+    }
+
+    /**
+     * Returns the number of APIs with all of their steps done
+     *
+     * @return number of completed APIs
+     */
+    synchronized int getCompletedApis() {
+        return completedApis;
+    }
+
+    /**
+     * Line of the journal recording a step
+     */
+    static class Step {
+
+        private String folder;
+        private String step;
+        private String value;
+
+        public String getFolder() {
+            return folder;
+        }
+
+        public void setFolder(String folder) {
+            this.folder = folder;
+        }
+
+        public String getStep() {
+            return step;
+        }
+
+        public void setStep(String step) {
+            this.step = step;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+}
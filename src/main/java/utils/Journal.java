@@ -0,0 +1,196 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append only journal of a long running job, holding a json line per completed unit of work after
+ * a header line identifying the job. Each line is forced to the storage device as it is written,
+ * so the journal survives a crash of the process or the system. When the journal is opened again
+ * by the same job, the lines are read back and a line left incomplete by the crash is dropped. A
+ * journal of a different job is discarded.
+ */
+abstract class Journal implements Closeable {
+
+    private static final Log log = LogFactory.getLog(Journal.class);
+    static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> HEADER_TYPE =
+            new TypeReference<Map<String, String>>() {
+            };
+    private static final String JOB_ELEM = "job";
+    private static final byte LINE_SEPARATOR = '\n';
+
+    private final File journalFile;
+    private final String jobId;
+    private FileOutputStream output;
+
+    /**
+     * Create a journal of the given job
+     *
+     * @param journalFile journal file
+     * @param jobId       identifier of the job
+     */
+    Journal(File journalFile, String jobId) {
+        this.journalFile = journalFile;
+        this.jobId = jobId;
+    }
+
+    /**
+     * Open the journal, reading the lines left by an interrupted run of the same job
+     *
+     * @throws IOException if unable to read or write the journal
+     */
+    synchronized void open() throws IOException {
+        long validLength = journalFile.isFile() ? read() : 0;
+        if (validLength == 0) {
+            reset();
+        } else {
+            //Dropping a line left incomplete by the interruption
+            RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+            try {
+                file.setLength(validLength);
+            } finally {
+                IOUtils.closeQuietly(file);
+            }
+            output = new FileOutputStream(journalFile, true);
+        }
+    }
+
+    /**
+     * Read the journal left by a previous run
+     *
+     * @return length of the journal up to its last valid line, or 0 if the journal belongs to
+     * another job
+     */
+    private long read() throws IOException {
+        byte[] content = FileUtils.readFileToByteArray(journalFile);
+        int start = 0;
+        int end;
+        while ((end = indexOf(content, start)) >= 0) {
+            try {
+                if (start == 0) {
+                    Map<String, String> header = mapper.readValue(content, 0, end, HEADER_TYPE);
+                    if (header == null || !jobId.equals(header.get(JOB_ELEM))) {
+                        log.info("Discarding the journal of another job " + journalFile);
+                        return 0;
+                    }
+                } else {
+                    readLine(content, start, end - start);
+                }
+            } catch (IOException e) {
+                log.warn("Ignoring the rest of the journal " + journalFile + " after an invalid line", e);
+                return start;
+            }
+            start = end + 1;
+        }
+        return start;
+    }
+
+    private static int indexOf(byte[] content, int start) {
+        for (int i = start; i < content.length; i++) {
+            if (content[i] == LINE_SEPARATOR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read a line of the journal written by a previous run, after the header line
+     *
+     * @param content content of the journal
+     * @param offset  offset of the line
+     * @param length  length of the line, without the line separator
+     * @throws IOException if the line is invalid
+     */
+    abstract void readLine(byte[] content, int offset, int length) throws IOException;
+
+    /**
+     * Forget the lines read from the journal
+     */
+    abstract void clear();
+
+    /**
+     * Start the journal over, forgetting the lines journaled so far
+     *
+     * @throws IOException if unable to write the journal
+     */
+    synchronized void reset() throws IOException {
+        IOUtils.closeQuietly(output);
+        clear();
+        output = new FileOutputStream(journalFile, false);
+        writeLine(mapper.writeValueAsBytes(Collections.singletonMap(JOB_ELEM, jobId)));
+    }
+
+    /**
+     * Append a line to the journal and force it to the storage device
+     *
+     * @param line json line, without the line separator
+     * @throws IOException if unable to write the journal
+     */
+    synchronized void writeLine(byte[] line) throws IOException {
+        writeLines(Collections.singletonList(line));
+    }
+
+    /**
+     * Append lines to the journal and force them to the storage device together
+     *
+     * @param lines json lines, without the line separators
+     * @throws IOException if unable to write the journal
+     */
+    synchronized void writeLines(List<byte[]> lines) throws IOException {
+        for (byte[] line : lines) {
+            byte[] content = new byte[line.length + 1];
+            System.arraycopy(line, 0, content, 0, line.length);
+            content[line.length] = LINE_SEPARATOR;
+            output.write(content);
+        }
+        output.flush();
+        output.getFD().sync();
+    }
+
+    /**
+     * Close and remove the journal, once the job is complete or discarded
+     */
+    synchronized void delete() {
+        IOUtils.closeQuietly(output);
+        FileUtils.deleteQuietly(journalFile);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (output != null) {
+            output.close();
+        }
+    }
+}
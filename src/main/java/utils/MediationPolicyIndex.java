@@ -0,0 +1,121 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.simple.JSONObject;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index of the mediation policies of a target in the publisher, either the global mediation
+ * policies or the mediation policies of an API, by their type and name. The index is listed once
+ * and kept up to date as policies are created, so deciding between creating and updating a
+ * policy does not need a round trip to the publisher
+ */
+class MediationPolicyIndex {
+    private static final Log log = LogFactory.getLog(MediationPolicyIndex.class);
+
+    //url of the mediation policies of the target
+    private final String url;
+    //uuid of the mediation policies by type and name
+    private final ConcurrentMap<String, String> policies = new ConcurrentHashMap<>();
+
+    private MediationPolicyIndex(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Create an empty index, for a target known to have no mediation policies
+     *
+     * @param url url of the mediation policies of the target
+     * @return empty index
+     */
+    static MediationPolicyIndex empty(String url) {
+        return new MediationPolicyIndex(url);
+    }
+
+    /**
+     * Create an index listing the existing mediation policies of a target
+     *
+     * @param url          url of the mediation policies of the target
+     * @param tokenManager token manager with importing scopes
+     * @return index of the mediation policies
+     * @throws UtilException if unable to list the mediation policies
+     */
+    static MediationPolicyIndex load(String url, TokenManager tokenManager) throws UtilException {
+        MediationPolicyIndex index = new MediationPolicyIndex(url);
+        index.reload(tokenManager);
+        return index;
+    }
+
+    /**
+     * List the mediation policies of the target page by page, adding them to the index
+     *
+     * @param tokenManager token manager with importing scopes
+     * @throws UtilException if unable to list the mediation policies
+     */
+    void reload(TokenManager tokenManager) throws UtilException {
+        for (Object policy : ImportExportUtils.listResources(url, tokenManager)) {
+            JSONObject mediationObj = (JSONObject) policy;
+            policies.put(getKey(mediationObj.get(ImportExportConstants.TYPE_ELEM),
+                    mediationObj.get(ImportExportConstants.NAME_ELEM)),
+                    (String) mediationObj.get(ImportExportConstants.UUID));
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Indexed " + policies.size() + " mediation policies of " + url);
+        }
+    }
+
+    /**
+     * Returns the url of the mediation policies of the target
+     *
+     * @return url of the mediation policies
+     */
+    String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the uuid of a mediation policy
+     *
+     * @param type mediation direction of the policy : in/out/fault
+     * @param name name of the policy
+     * @return uuid of the policy, or null if the target has no such policy
+     */
+    String getUuid(Object type, Object name) {
+        return policies.get(getKey(type, name));
+    }
+
+    /**
+     * Record a mediation policy created in the target
+     *
+     * @param type mediation direction of the policy : in/out/fault
+     * @param name name of the policy
+     * @param uuid uuid of the created policy
+     */
+    void put(Object type, Object name, String uuid) {
+        policies.put(getKey(type, name), uuid);
+    }
+
+    private static String getKey(Object type, Object name) {
+        return type + ImportExportConstants.URL_SEPARATOR + name;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Commits the APIs staged by the workers of a bulk export in to the archive in the order they are
+ * listed, so the layout of the archive does not depend on which worker finishes first, and the
+ * APIs journaled by an interrupted export are always the first ones of the list. An API staged
+ * ahead of its turn is held until every API listed before it is committed or has failed.
+ */
+class OrderedCommitter {
+
+    private static final Log log = LogFactory.getLog(OrderedCommitter.class);
+
+    private final ZipArchiveSink archive;
+    private final ExportManifest manifest;
+    private final List<String> failedApis;
+    private final int window;
+    //APIs staged ahead of their turn by their position in the list, null for an API not exported
+    private final Map<Integer, StagedApi> heldApis = new HashMap<>();
+    private int next;
+
+    /**
+     * Create a committer of the APIs of a bulk export
+     *
+     * @param archive    archive to commit the APIs in to
+     * @param manifest   manifest to record the committed APIs
+     * @param failedApis list to record the APIs failed to be committed
+     * @param window     number of APIs which can be staged from the first API not yet committed
+     */
+    OrderedCommitter(ZipArchiveSink archive, ExportManifest manifest, List<String> failedApis,
+                     int window) {
+        this.archive = archive;
+        this.manifest = manifest;
+        this.failedApis = failedApis;
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * Wait until the API at the position can be staged without holding more than the window of
+     * APIs after the first API not yet committed
+     *
+     * @param position position of the API in the list
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized void awaitTurn(int position) throws InterruptedException {
+        while (position >= next + window) {
+            wait();
+        }
+    }
+
+    /**
+     * Hand over the staged entries of the API at the position, to be committed once the APIs
+     * before it are. The entries are discarded once committed
+     *
+     * @param position   position of the API in the list
+     * @param apiId      api id of the API(provider-name-version)
+     * @param apiEntries staged entries of the API
+     * @param record     record of the API, with the digests of its entries
+     */
+    synchronized void commit(int position, String apiId, StagedArchiveSink apiEntries,
+                             ExportManifest.ApiRecord record) {
+        complete(position, new StagedApi(apiId, apiEntries, record));
+    }
+
+    /**
+     * Mark the API at the position as not exported, letting the APIs after it be committed
+     *
+     * @param position position of the API in the list
+     */
+    synchronized void skip(int position) {
+        complete(position, null);
+    }
+
+    /**
+     * Discard the APIs still held, recording them as failed. APIs are left held only if an API
+     * before them was never completed, such as when the export is interrupted
+     */
+    synchronized void discard() {
+        for (StagedApi heldApi : heldApis.values()) {
+            if (heldApi != null) {
+                heldApi.apiEntries.discard();
+                failedApis.add(heldApi.apiId);
+            }
+        }
+        heldApis.clear();
+    }
+
+    private void complete(int position, StagedApi stagedApi) {
+        heldApis.put(position, stagedApi);
+        while (heldApis.containsKey(next)) {
+            StagedApi nextApi = heldApis.remove(next++);
+            if (nextApi != null) {
+                commit(nextApi);
+            }
+        }
+        notifyAll();
+    }
+
+    private void commit(StagedApi stagedApi) {
+        try {
+            archive.commit(stagedApi.apiId, stagedApi.apiEntries, stagedApi.record);
+            manifest.putApi(stagedApi.apiId, stagedApi.record);
+        } catch (IOException | RuntimeException e) {
+            //If commit failed, gives a warning and continue with the next API in the list
+            log.warn("Error occurred while writing API " + stagedApi.apiId + " in to the archive",
+                    e);
+            failedApis.add(stagedApi.apiId);
+        } finally {
+            stagedApi.apiEntries.discard();
+        }
+    }
+
+    /**
+     * Staged entries of an API waiting for its turn to be committed
+     */
+    private static class StagedApi {
+
+        private final String apiId;
+        private final StagedArchiveSink apiEntries;
+        private final ExportManifest.ApiRecord record;
+
+        StagedApi(String apiId, StagedArchiveSink apiEntries, ExportManifest.ApiRecord record) {
+            this.apiId = apiId;
+            this.apiEntries = apiEntries;
+            this.record = record;
+        }
+    }
+}
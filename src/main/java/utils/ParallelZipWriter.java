@@ -0,0 +1,725 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a zip file with its entries compressed in parallel. Entries are deflated on a fork-join
+ * pool, each worker thread using its own Deflater, and entries larger than a chunk are split in to
+ * chunks which are compressed independently and joined with sync flushes, each chunk using the
+ * tail of the previous one as its dictionary. The compression policy chooses the level of each
+ * entry, and entries it does not compress are stored as they are. The compressed data is written in the order the
+ * entries were added, in the same layout as ZipOutputStream, switching to the zip64 extensions
+ * when the sizes, offsets or number of entries need them.
+ */
+class ParallelZipWriter implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_DEFLATED = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    //entry names are encoded in UTF-8
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int LOCAL_CRC_OFFSET = 14;
+    //zip64 extra field with both sizes, reserved in the local header of entries of unknown size
+    private static final int ZIP64_LOCAL_EXTRA_SIZE = 20;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int END_SIZE = 22;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final Charset UTF8 = Charset.forName(ImportExportConstants.CHARSET);
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    //Bytes written to the channel, followed by the bytes in the buffer
+    private long flushedPosition;
+    private final long dosTime;
+
+    private final CompressionPolicy compressionPolicy;
+    private final ForkJoinPool pool;
+    //Deflaters created by all the threads, ended when the writer is closed
+    private final List<Deflater> deflaters = Collections.synchronizedList(new ArrayList<Deflater>());
+    //Deflaters of the current thread, by compression level
+    private final ThreadLocal<Deflater[]> threadDeflaters;
+    //Chunks submitted for compression and not written yet, in the order of the entries
+    private final Deque<Chunk> pending = new ArrayDeque<>();
+    private final long maxPendingBytes;
+    private long pendingBytes;
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Create a writer for the given file, compressing with the given number of threads
+     *
+     * @param zipFile           file to write the zip in to
+     * @param threads           number of compressing threads
+     * @param compressionPolicy policy choosing the compression level of each entry
+     */
+    ParallelZipWriter(File zipFile, int threads, CompressionPolicy compressionPolicy)
+            throws IOException {
+        this(zipFile, threads, compressionPolicy, 0);
+    }
+
+    /**
+     * Create a writer continuing a zip file left unfinished, after the entries in its first given
+     * number of bytes. Those entries must be complete, as written before a {@link #sync()}
+     *
+     * @param zipFile           unfinished zip file
+     * @param threads           number of compressing threads
+     * @param compressionPolicy policy choosing the compression level of each entry
+     * @param resumeLength      length of the zip file to keep
+     * @throws IOException if the zip file does not have complete entries up to the given length
+     */
+    ParallelZipWriter(File zipFile, int threads, CompressionPolicy compressionPolicy,
+                      long resumeLength) throws IOException {
+        this.file = new RandomAccessFile(zipFile, "rw");
+        this.channel = file.getChannel();
+        if (resumeLength > 0) {
+            try {
+                readEntries(resumeLength);
+            } catch (IOException e) {
+                IOUtils.closeQuietly(file);
+                throw e;
+            }
+        }
+        this.file.setLength(resumeLength);
+        this.flushedPosition = resumeLength;
+        this.buffer = ByteBuffer.allocate(ImportExportConstants.ARCHIVE_BUFFER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        this.dosTime = toDosTime(System.currentTimeMillis());
+        this.compressionPolicy = compressionPolicy;
+        this.pool = new ForkJoinPool(threads);
+        this.threadDeflaters = new ThreadLocal<Deflater[]>() {
+            @Override
+            protected Deflater[] initialValue() {
+                return new Deflater[Deflater.BEST_COMPRESSION + 1];
+            }
+        };
+        //Keeping every thread busy, while bounding the uncompressed data held in memory
+        this.maxPendingBytes = 2L * threads * ImportExportConstants.COMPRESSION_CHUNK_SIZE;
+    }
+
+    /**
+     * Add an entry with the given content
+     *
+     * @param name    name of the entry
+     * @param content content of the entry
+     */
+    void putEntry(String name, byte[] content) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        Entry entry = new Entry(name, compressionPolicy.getLevel(name, content, 0, content.length));
+        entry.crc = crc.getValue();
+        entry.size = content.length;
+        if (entry.level == CompressionPolicy.STORED) {
+            submit(entry, content, 0, content.length, true, true);
+            return;
+        }
+        int chunkSize = ImportExportConstants.COMPRESSION_CHUNK_SIZE;
+        entry.streamed = content.length > chunkSize;
+        int offset = 0;
+        do {
+            int length = Math.min(chunkSize, content.length - offset);
+            submit(entry, content, offset, length, offset == 0,
+                    offset + length == content.length);
+            offset += length;
+        } while (offset < content.length);
+    }
+
+    /**
+     * Add an entry with the content read from the given stream. The stream is not closed
+     *
+     * @param name    name of the entry
+     * @param content stream to read the content of the entry from
+     */
+    void putEntry(String name, InputStream content) throws IOException {
+        CRC32 crc = new CRC32();
+        int chunkSize = ImportExportConstants.COMPRESSION_CHUNK_SIZE;
+        byte[] previous = null;
+        byte[] current = readChunk(content);
+        Entry entry = new Entry(name, compressionPolicy.getLevel(name, current, 0, current.length));
+        boolean first = true;
+        while (true) {
+            //Reading a chunk ahead to find whether the current chunk is the last one
+            byte[] next = current.length < chunkSize ? null : readChunk(content);
+            boolean last = next == null || next.length == 0;
+            crc.update(current);
+            entry.size += current.length;
+            if (first) {
+                entry.streamed = !last;
+            }
+            if (last) {
+                entry.crc = crc.getValue();
+            }
+            submit(entry, current, previous, first, last);
+            if (last) {
+                return;
+            }
+            previous = current;
+            current = next;
+            first = false;
+        }
+    }
+
+    /**
+     * Add an entry with data already compressed, as copied from another zip file. The data is
+     * written as it is, after the entries added before it
+     *
+     * @param name           name of the entry
+     * @param deflated       whether the data is deflated, or stored
+     * @param crc            checksum of the uncompressed content
+     * @param size           size of the uncompressed content
+     * @param compressedSize size of the data
+     * @param data           stream to read the data from. The stream is not closed
+     */
+    void putRawEntry(String name, boolean deflated, long crc, long size, long compressedSize,
+                     InputStream data) throws IOException {
+        if (pool.isShutdown()) {
+            throw new IOException("Zip writer is already closed");
+        }
+        while (!pending.isEmpty()) {
+            writeNextChunk();
+        }
+        Entry entry = new Entry(name, deflated ? Deflater.DEFAULT_COMPRESSION : CompressionPolicy.STORED);
+        entry.crc = crc;
+        entry.size = size;
+        entry.compressedSize = compressedSize;
+        //Sizes too large for the local header are written in the zip64 extra field afterwards
+        entry.streamed = size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC;
+        entry.offset = getPosition();
+        writeLocalHeader(entry);
+        entries.add(entry);
+        flush();
+        long copied = 0;
+        while (copied < compressedSize) {
+            int length = (int) Math.min(buffer.capacity(), compressedSize - copied);
+            int read = IOUtils.read(data, buffer.array(), 0, length);
+            buffer.position(read);
+            flush();
+            copied += read;
+            if (read < length) {
+                throw new IOException("Unexpected end of the data of entry " + name);
+            }
+        }
+        if (entry.streamed) {
+            updateLocalHeader(entry);
+        }
+    }
+
+    /**
+     * Read the local headers of the entries already in the zip file, up to the given length
+     *
+     * @param length length of the zip file holding complete entries
+     * @throws IOException if the entries do not end at the given length
+     */
+    private void readEntries(long length) throws IOException {
+        if (channel.size() < length) {
+            throw new IOException("Zip file is shorter than " + length + " bytes");
+        }
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 0;
+        while (position < length) {
+            header.clear();
+            readFully(header, position);
+            if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+                throw new IOException("Invalid local header at " + position);
+            }
+            int nameLength = header.getShort(26) & 0xFFFF;
+            int extraLength = header.getShort(28) & 0xFFFF;
+            ByteBuffer nameAndExtra = ByteBuffer.allocate(nameLength + extraLength)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            readFully(nameAndExtra, position + LOCAL_HEADER_SIZE);
+            int level = (header.getShort(8) & 0xFFFF) == METHOD_STORED ? CompressionPolicy.STORED :
+                    Deflater.DEFAULT_COMPRESSION;
+            Entry entry = new Entry(new String(nameAndExtra.array(), 0, nameLength, UTF8), level);
+            entry.offset = position;
+            entry.crc = header.getInt(LOCAL_CRC_OFFSET) & ZIP64_MAGIC;
+            //Entries written in chunks have their sizes in the zip64 extra field
+            entry.streamed = extraLength == ZIP64_LOCAL_EXTRA_SIZE;
+            if (entry.streamed) {
+                entry.size = nameAndExtra.getLong(nameLength + 4);
+                entry.compressedSize = nameAndExtra.getLong(nameLength + 12);
+            } else {
+                entry.compressedSize = header.getInt(18) & ZIP64_MAGIC;
+                entry.size = header.getInt(22) & ZIP64_MAGIC;
+            }
+            entries.add(entry);
+            position += LOCAL_HEADER_SIZE + nameLength + extraLength + entry.compressedSize;
+        }
+        if (position != length) {
+            throw new IOException("Incomplete entry at the end of the zip file");
+        }
+    }
+
+    private void readFully(ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            int read = channel.read(data, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of the zip file");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Returns the names of the entries written so far
+     *
+     * @return entry names
+     */
+    List<String> getEntryNames() {
+        List<String> names = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            names.add(new String(entry.name, UTF8));
+        }
+        return names;
+    }
+
+    /**
+     * Write all the entries added so far and force them to the storage device, so they survive a
+     * crash of the process or the system
+     *
+     * @return length of the zip file holding the entries
+     */
+    long sync() throws IOException {
+        while (!pending.isEmpty()) {
+            writeNextChunk();
+        }
+        flush();
+        channel.force(false);
+        return flushedPosition;
+    }
+
+    private static byte[] readChunk(InputStream content) throws IOException {
+        byte[] chunk = new byte[ImportExportConstants.COMPRESSION_CHUNK_SIZE];
+        int length = IOUtils.read(content, chunk);
+        return length == chunk.length ? chunk : Arrays.copyOf(chunk, length);
+    }
+
+    private void submit(Entry entry, byte[] data, byte[] previous, boolean first, boolean last)
+            throws IOException {
+        if (previous == null || entry.level == CompressionPolicy.STORED) {
+            submit(entry, data, 0, data.length, first, last);
+            return;
+        }
+        //Using the tail of the previous chunk as the dictionary of a chunk read from a stream
+        int dictionaryLength = Math.min(DICTIONARY_SIZE, previous.length);
+        byte[] joined = new byte[dictionaryLength + data.length];
+        System.arraycopy(previous, previous.length - dictionaryLength, joined, 0, dictionaryLength);
+        System.arraycopy(data, 0, joined, dictionaryLength, data.length);
+        submit(entry, joined, dictionaryLength, data.length, first, last);
+    }
+
+    /**
+     * Submit a chunk of an entry for compression, and write the chunks compressed so far
+     *
+     * @param entry  entry of the chunk
+     * @param data   array holding the chunk, preceded by its dictionary
+     * @param offset offset of the chunk, which is also the length of its dictionary
+     * @param length length of the chunk
+     * @param first  whether this is the first chunk of the entry
+     * @param last   whether this is the last chunk of the entry
+     */
+    private void submit(final Entry entry, final byte[] data, final int offset, final int length,
+                        boolean first, final boolean last) throws IOException {
+        if (pool.isShutdown()) {
+            throw new IOException("Zip writer is already closed");
+        }
+        Future<byte[]> compressed;
+        if (entry.level == CompressionPolicy.STORED) {
+            //Stored chunks are never split, hence written from the given array as they are
+            compressed = CompletableFuture.completedFuture(data);
+        } else {
+            final int dictionaryOffset = Math.max(0, offset - DICTIONARY_SIZE);
+            compressed = pool.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    return deflate(data, dictionaryOffset, offset - dictionaryOffset, length,
+                            entry.level, last);
+                }
+            });
+        }
+        pending.add(new Chunk(entry, compressed, length, first, last));
+        pendingBytes += length;
+        //Writing the chunks already compressed, and waiting for the rest if too many are pending
+        while (!pending.isEmpty() && (pending.peek().data.isDone() ||
+                pendingBytes > maxPendingBytes)) {
+            writeNextChunk();
+        }
+    }
+
+    /**
+     * Deflate a chunk with the deflater of the current thread for the given level
+     *
+     * @param data             array holding the dictionary followed by the chunk
+     * @param dictionaryOffset offset of the dictionary
+     * @param dictionaryLength length of the dictionary
+     * @param length           length of the chunk
+     * @param level            compression level
+     * @param last             whether the deflate stream is to be finished after this chunk
+     * @return compressed chunk
+     */
+    private byte[] deflate(byte[] data, int dictionaryOffset, int dictionaryLength, int length,
+                           int level, boolean last) {
+        //A deflater is kept for each level, as a new level only applies after the next deflate
+        Deflater[] levelDeflaters = threadDeflaters.get();
+        Deflater compressor = levelDeflaters[level];
+        if (compressor == null) {
+            compressor = new Deflater(level, true);
+            levelDeflaters[level] = compressor;
+            deflaters.add(compressor);
+        }
+        compressor.reset();
+        if (dictionaryLength > 0) {
+            compressor.setDictionary(data, dictionaryOffset, dictionaryLength);
+        }
+        compressor.setInput(data, dictionaryOffset + dictionaryLength, length);
+        //Worst case expansion of deflate, along with the final block and the sync flush marker
+        byte[] output = new byte[length + (length >> 12) + (length >> 14) + 64];
+        int count = 0;
+        if (last) {
+            compressor.finish();
+            while (!compressor.finished()) {
+                if (count == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                count += compressor.deflate(output, count, output.length - count);
+            }
+        } else {
+            //Ending the chunk on a byte boundary, without finishing the deflate stream
+            do {
+                if (count == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                count += compressor.deflate(output, count, output.length - count,
+                        Deflater.SYNC_FLUSH);
+            } while (count == output.length);
+        }
+        return Arrays.copyOf(output, count);
+    }
+
+    private void writeNextChunk() throws IOException {
+        Chunk chunk = pending.poll();
+        pendingBytes -= chunk.length;
+        byte[] data;
+        try {
+            data = chunk.data.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing " + chunk.entry.name);
+        } catch (ExecutionException e) {
+            throw new IOException("Error occurred while compressing " + chunk.entry.name,
+                    e.getCause());
+        }
+        Entry entry = chunk.entry;
+        if (chunk.first) {
+            entry.offset = getPosition();
+            if (!entry.streamed) {
+                entry.compressedSize = data.length;
+            }
+            writeLocalHeader(entry);
+            entries.add(entry);
+        }
+        write(data);
+        if (entry.streamed) {
+            entry.compressedSize += data.length;
+            if (chunk.last) {
+                updateLocalHeader(entry);
+            }
+        }
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        ensureCapacity(LOCAL_HEADER_SIZE + entry.name.length + ZIP64_LOCAL_EXTRA_SIZE);
+        buffer.putInt(LOCAL_HEADER_SIGNATURE);
+        buffer.putShort((short) (entry.streamed ? VERSION_ZIP64 : entry.getVersion()));
+        buffer.putShort((short) FLAG_UTF8);
+        buffer.putShort((short) entry.getMethod());
+        buffer.putInt((int) dosTime);
+        //Checksum and sizes of an entry written in chunks are filled in after its last chunk
+        buffer.putInt(entry.streamed ? 0 : (int) entry.crc);
+        buffer.putInt(entry.streamed ? 0 : (int) entry.compressedSize);
+        buffer.putInt(entry.streamed ? 0 : (int) entry.size);
+        buffer.putShort((short) entry.name.length);
+        buffer.putShort((short) (entry.streamed ? ZIP64_LOCAL_EXTRA_SIZE : 0));
+        buffer.put(entry.name);
+        if (entry.streamed) {
+            buffer.putShort((short) ZIP64_EXTRA_ID);
+            buffer.putShort((short) (ZIP64_LOCAL_EXTRA_SIZE - 4));
+            buffer.putLong(0);
+            buffer.putLong(0);
+        }
+    }
+
+    private void updateLocalHeader(Entry entry) throws IOException {
+        boolean zip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+        ByteBuffer sizes = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        sizes.putInt((int) entry.crc);
+        sizes.putInt((int) (zip64 ? ZIP64_MAGIC : entry.compressedSize));
+        sizes.putInt((int) (zip64 ? ZIP64_MAGIC : entry.size));
+        sizes.flip();
+        ByteBuffer extra = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        extra.putLong(entry.size);
+        extra.putLong(entry.compressedSize);
+        extra.flip();
+        flush();
+        writeFully(sizes, entry.offset + LOCAL_CRC_OFFSET);
+        writeFully(extra, entry.offset + LOCAL_HEADER_SIZE + entry.name.length + 4);
+    }
+
+    /**
+     * Write the remaining entries and the central directory, completing the zip file
+     */
+    void finish() throws IOException {
+        while (!pending.isEmpty()) {
+            writeNextChunk();
+        }
+        long centralDirectoryOffset = getPosition();
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralDirectorySize = getPosition() - centralDirectoryOffset;
+        int count = entries.size();
+        if (count >= ZIP64_MAGIC_COUNT || centralDirectoryOffset >= ZIP64_MAGIC ||
+                centralDirectorySize >= ZIP64_MAGIC) {
+            long zip64EndOffset = getPosition();
+            ensureCapacity(ZIP64_END_SIZE + ZIP64_LOCATOR_SIZE);
+            buffer.putInt(ZIP64_END_SIGNATURE);
+            buffer.putLong(ZIP64_END_SIZE - 12);
+            buffer.putShort((short) VERSION_ZIP64);
+            buffer.putShort((short) VERSION_ZIP64);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putLong(count);
+            buffer.putLong(count);
+            buffer.putLong(centralDirectorySize);
+            buffer.putLong(centralDirectoryOffset);
+            buffer.putInt(ZIP64_LOCATOR_SIGNATURE);
+            buffer.putInt(0);
+            buffer.putLong(zip64EndOffset);
+            buffer.putInt(1);
+        }
+        ensureCapacity(END_SIZE);
+        buffer.putInt(END_SIGNATURE);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        buffer.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        buffer.putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC));
+        buffer.putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+        buffer.putShort((short) 0);
+        flush();
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        //Values too large for the header are moved in to the zip64 extra field
+        boolean zip64Size = entry.size >= ZIP64_MAGIC;
+        boolean zip64CompressedSize = entry.compressedSize >= ZIP64_MAGIC;
+        boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+        int extraLength = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0) + (zip64Offset ? 8 : 0);
+        int version = extraLength > 0 || entry.streamed ? VERSION_ZIP64 : entry.getVersion();
+        ensureCapacity(CENTRAL_HEADER_SIZE + entry.name.length + 4 + extraLength);
+        buffer.putInt(CENTRAL_HEADER_SIGNATURE);
+        buffer.putShort((short) version);
+        buffer.putShort((short) version);
+        buffer.putShort((short) FLAG_UTF8);
+        buffer.putShort((short) entry.getMethod());
+        buffer.putInt((int) dosTime);
+        buffer.putInt((int) entry.crc);
+        buffer.putInt((int) (zip64CompressedSize ? ZIP64_MAGIC : entry.compressedSize));
+        buffer.putInt((int) (zip64Size ? ZIP64_MAGIC : entry.size));
+        buffer.putShort((short) entry.name.length);
+        buffer.putShort((short) (extraLength > 0 ? extraLength + 4 : 0));
+        //Comment length, disk number, internal and external attributes
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putInt(0);
+        buffer.putInt((int) (zip64Offset ? ZIP64_MAGIC : entry.offset));
+        buffer.put(entry.name);
+        if (extraLength > 0) {
+            buffer.putShort((short) ZIP64_EXTRA_ID);
+            buffer.putShort((short) extraLength);
+            if (zip64Size) {
+                buffer.putLong(entry.size);
+            }
+            if (zip64CompressedSize) {
+                buffer.putLong(entry.compressedSize);
+            }
+            if (zip64Offset) {
+                buffer.putLong(entry.offset);
+            }
+        }
+    }
+
+    private long getPosition() {
+        return flushedPosition + buffer.position();
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+    }
+
+    private void write(byte[] data) throws IOException {
+        if (data.length <= buffer.remaining()) {
+            buffer.put(data);
+        } else {
+            flush();
+            writeFully(ByteBuffer.wrap(data), flushedPosition);
+            flushedPosition += data.length;
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        int length = buffer.remaining();
+        writeFully(buffer, flushedPosition);
+        flushedPosition += length;
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+
+    /**
+     * Stop the compressing threads and close the file. The zip file is complete only if the
+     * writer was finished before closing
+     */
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        pending.clear();
+        try {
+            file.close();
+        } finally {
+            synchronized (deflaters) {
+                for (Deflater compressor : deflaters) {
+                    compressor.end();
+                }
+                deflaters.clear();
+            }
+        }
+    }
+
+    /**
+     * Convert the given time to the MS-DOS date and time format used by zip headers
+     *
+     * @param time time in milliseconds
+     * @return MS-DOS date in the high order bytes followed by the time
+     */
+    private static long toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (long) (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 |
+                calendar.get(Calendar.DAY_OF_MONTH) << 16 | calendar.get(Calendar.HOUR_OF_DAY) << 11 |
+                calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    /**
+     * Entry of the zip file, with the values of its central directory header
+     */
+    private static class Entry {
+
+        private final byte[] name;
+        private final int level;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private long offset;
+        //Whether the entry is written in chunks, with its sizes updated afterwards
+        private boolean streamed;
+
+        Entry(String name, int level) {
+            this.name = name.getBytes(UTF8);
+            this.level = level;
+        }
+
+        int getMethod() {
+            return level == CompressionPolicy.STORED ? METHOD_STORED : METHOD_DEFLATED;
+        }
+
+        int getVersion() {
+            return level == CompressionPolicy.STORED ? VERSION_STORED : VERSION_DEFLATED;
+        }
+    }
+
+    /**
+     * Chunk of an entry, submitted for compression
+     */
+    private static class Chunk {
+
+        private final Entry entry;
+        private final Future<byte[]> data;
+        private final int length;
+        private final boolean first;
+        private final boolean last;
+
+        Chunk(Entry entry, Future<byte[]> data, int length, boolean first, boolean last) {
+            this.entry = entry;
+            this.data = data;
+            this.length = length;
+            this.first = first;
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pretty printed view of a json stream. Tokens are copied from the source to a generator only as
+ * fast as the formatted bytes are read, so a json document of any size is reformatted holding no
+ * more than a few tokens of it in memory
+ */
+class PrettyPrintingInputStream extends InputStream {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    //Number of tokens copied before the generator is flushed in to the buffer
+    private static final int TOKENS_PER_FLUSH = 256;
+
+    private final InputStream source;
+    private final JsonParser parser;
+    private final JsonGenerator generator;
+    private final TokenBuffer buffer = new TokenBuffer();
+    private boolean finished;
+
+    /**
+     * Create a pretty printing view of the given json stream, detecting its unicode encoding.
+     * Output is encoded in UTF-8
+     *
+     * @param source stream of the json document, closed along with this stream
+     */
+    PrettyPrintingInputStream(InputStream source) throws IOException {
+        this.source = source;
+        this.parser = jsonFactory.createJsonParser(source);
+        this.generator = jsonFactory.createJsonGenerator(buffer, JsonEncoding.UTF8);
+        generator.useDefaultPrettyPrinter();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (buffer.available() == 0) {
+            if (finished) {
+                return -1;
+            }
+            fill();
+        }
+        return buffer.read(b, off, len);
+    }
+
+    /**
+     * Copy the next batch of tokens from the parser to the generator, and flush the formatted
+     * bytes in to the buffer
+     */
+    private void fill() throws IOException {
+        buffer.reset();
+        for (int i = 0; i < TOKENS_PER_FLUSH; i++) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                finished = true;
+                generator.close();
+                return;
+            }
+            generator.copyCurrentEvent(parser);
+        }
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            parser.close();
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Buffer the generator writes in to, and this stream reads from
+     */
+    private static class TokenBuffer extends ByteArrayOutputStream {
+
+        private int position;
+
+        int available() {
+            return count - position;
+        }
+
+        int read(byte[] b, int off, int len) {
+            int n = Math.min(len, available());
+            System.arraycopy(buf, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public synchronized void reset() {
+            super.reset();
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,597 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.StringEntity;
+
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Executes every request made to the publisher and the gateway with the shared http transport. The
+ * requests are rate limited, with separate budgets for reading and for writing requests, retried
+ * with an exponential backoff on transient failures, and rejected without being sent while the
+ * server keeps failing. The number of requests in flight adapts to the latency of the server, if
+ * enabled. Large text bodies are sent gzip compressed, until the server rejects a compressed body.
+ * Whether the server accepts compressed bodies at all is probed with the first compressed request.
+ */
+class RequestExecutor {
+
+    private static final Log log = LogFactory.getLog(RequestExecutor.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "request-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static RequestExecutor instance;
+
+    private final TokenBucket readBudget;
+    private final TokenBucket writeBudget;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final int circuitFailureThreshold;
+    private final long circuitOpenMillis;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private volatile boolean compressRequests;
+    //Whether the server answered a compressed request without rejecting it, and whether a
+    //compressed request probing that is in flight
+    private volatile boolean compressionAccepted;
+    private final AtomicBoolean compressionProbing = new AtomicBoolean();
+
+    //Circuit breaker state, guarded by this executor
+    private int consecutiveFailures;
+    private long circuitOpenUntil;
+    private boolean trialInProgress;
+
+    private RequestExecutor(ApiImportExportConfiguration config) {
+        this.readBudget = new TokenBucket(config.getReadRequestRate());
+        this.writeBudget = new TokenBucket(config.getWriteRequestRate());
+        this.maxRetries = config.getMaxRetries();
+        this.retryBackoffMillis = config.getRetryBackoffMillis();
+        this.circuitFailureThreshold = config.getCircuitFailureThreshold();
+        this.circuitOpenMillis = TimeUnit.SECONDS.toMillis(config.getCircuitOpenSeconds());
+        this.concurrencyLimiter = config.getAdaptiveConcurrency() ?
+                new ConcurrencyLimiter(config.getThreads(), config.getMaxConnectionsPerRoute()) : null;
+        this.compressRequests = config.getRequestCompression();
+    }
+
+    /**
+     * Returns the request executor of the run, created from the configurations on the first call
+     *
+     * @return request executor
+     */
+    static synchronized RequestExecutor getInstance() {
+        if (instance == null) {
+            instance = new RequestExecutor(ApiImportExportConfiguration.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Execute the request, waiting for the rate limit and retrying it on transient failures. A
+     * request is retried only if its entity can be sent again, and a request which is not
+     * idempotent only if the server did not process it
+     *
+     * @param request request to be executed
+     * @return response, which must be closed by the caller
+     * @throws IOException   if the request failed on all the attempts
+     * @throws UtilException if unable to get the http transport, or the server keeps failing
+     */
+    CloseableHttpResponse execute(HttpUriRequest request) throws IOException, UtilException {
+        return await(executeAsync(request));
+    }
+
+    /**
+     * Execute the request as {@link #execute(HttpUriRequest)} does, without holding the calling
+     * thread while the request waits for the rate limit, is in flight or is backing off
+     *
+     * @param request request to be executed
+     * @return future completed with the response, which must be closed by the caller, or with the
+     * error the request failed with
+     */
+    CompletableFuture<CloseableHttpResponse> executeAsync(HttpUriRequest request) {
+        Execution execution = new Execution(request);
+        execution.attempt();
+        return execution.result;
+    }
+
+    /**
+     * Wait for the response of a request executed asynchronously, rethrowing the error it failed
+     * with. A response arriving after the wait is interrupted is closed
+     *
+     * @param response future response
+     * @return response, which must be closed by the caller
+     */
+    static CloseableHttpResponse await(CompletableFuture<CloseableHttpResponse> response)
+            throws IOException, UtilException {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            response.thenAccept(IOUtils::closeQuietly);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof UtilException) {
+                throw (UtilException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the limiter of the requests in flight
+     *
+     * @return concurrency limiter, or null if the concurrency does not adapt to the server
+     */
+    ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Attempts of a request executed asynchronously. Waits for the rate limit and backoffs are
+     * scheduled, and the requests over the concurrency limit are queued, so no thread is held
+     * between the attempts
+     */
+    private class Execution {
+
+        private final HttpUriRequest request;
+        private final boolean idempotent;
+        private final boolean repeatable;
+        private final TokenBucket budget;
+        private final CompletableFuture<CloseableHttpResponse> result = new CompletableFuture<>();
+        private int attempt;
+        //entity of the request while a compressed copy of it is sent
+        private HttpEntity uncompressedEntity;
+        //status of the response rejecting the compressed entity
+        private int rejectedStatus;
+        //whether the request is the trial let through the open circuit, until its outcome is recorded
+        private boolean trial;
+        //whether the request probes if the server accepts compressed bodies
+        private boolean probe;
+
+        Execution(HttpUriRequest request) {
+            this.request = request;
+            this.idempotent = isIdempotent(request);
+            this.repeatable = isRepeatable(request);
+            this.budget = (request instanceof HttpGet || request instanceof HttpHead) ?
+                    readBudget : writeBudget;
+        }
+
+        void attempt() {
+            long circuitWait = acquirePermission(this);
+            if (circuitWait > 0) {
+                //A retry waits for the circuit to let it through, instead of failing while the
+                //server recovers, and a new request is rejected without being sent
+                if (attempt > 0 && attempt <= maxRetries) {
+                    log.warn("Server is failing repeatedly, retrying request " + request.getMethod() +
+                            " " + request.getURI() + " in " + circuitWait + " ms");
+                    attempt++;
+                    schedule(this::attempt, circuitWait);
+                    return;
+                }
+                String errorMsg = "Server is failing repeatedly, request " + request.getMethod() +
+                        " " + request.getURI() + " is not sent";
+                log.error(errorMsg);
+                fail(new UtilException(errorMsg));
+                return;
+            }
+            compressEntity();
+            long wait = budget.reserve();
+            if (wait > 0) {
+                schedule(this::send, wait);
+            } else {
+                send();
+            }
+        }
+
+        /**
+         * Send the request within the concurrency limit, recording its latency
+         */
+        private void send() {
+            HttpTransport transport;
+            try {
+                transport = HttpClientGenerator.getTransport();
+            } catch (UtilException e) {
+                fail(e);
+                return;
+            }
+            if (concurrencyLimiter == null) {
+                send(transport).whenComplete(this::onResponse);
+                return;
+            }
+            concurrencyLimiter.acquireAsync().thenCompose(permit -> {
+                long start = System.nanoTime();
+                return send(transport).whenComplete((response, failure) -> {
+                    boolean overloaded = true;
+                    if (response != null) {
+                        int statusCode = response.getStatusLine().getStatusCode();
+                        overloaded = statusCode == TOO_MANY_REQUESTS ||
+                                statusCode >= Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+                    }
+                    concurrencyLimiter.release(System.nanoTime() - start, overloaded);
+                });
+            }).whenComplete(this::onResponse);
+        }
+
+        /**
+         * Hand the request to the transport, completing the returned future with the failure if the
+         * transport throws instead, so the failure is handled as any other failed attempt
+         *
+         * @param transport transport to send the request with
+         * @return future completed with the response
+         */
+        private CompletableFuture<CloseableHttpResponse> send(HttpTransport transport) {
+            try {
+                return transport.send(request);
+            } catch (RuntimeException e) {
+                CompletableFuture<CloseableHttpResponse> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+
+        private void onResponse(CloseableHttpResponse response, Throwable failure) {
+            boolean retry = repeatable && attempt < maxRetries;
+            //The outcome of the request is recorded below, which ends the trial
+            trial = false;
+            if (failure != null) {
+                if (failure instanceof CompletionException && failure.getCause() != null) {
+                    failure = failure.getCause();
+                }
+                recordFailure();
+                //A request which is not idempotent is retried only if it never reached the server
+                if (!retry || !(failure instanceof IOException) || !(idempotent ||
+                        failure instanceof ConnectException || failure instanceof ConnectTimeoutException)) {
+                    fail(failure);
+                    return;
+                }
+                backoff(0, failure.toString());
+                return;
+            }
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode >= Response.Status.INTERNAL_SERVER_ERROR.getStatusCode()) {
+                recordFailure();
+            } else {
+                recordSuccess();
+            }
+            //A bad request may be a genuine error of the request, sent again only if it probes
+            //whether compressed bodies are accepted, so a failing request is not sent twice
+            if (uncompressedEntity != null &&
+                    (statusCode == Response.Status.UNSUPPORTED_MEDIA_TYPE.getStatusCode() ||
+                            (probe && statusCode == Response.Status.BAD_REQUEST.getStatusCode()))) {
+                //The server may not accept compressed bodies, sending the request again
+                //uncompressed, which is not counted as a retry
+                IOUtils.closeQuietly(response);
+                restoreEntity();
+                rejectedStatus = statusCode;
+                attempt();
+                return;
+            }
+            if (rejectedStatus != 0 && statusCode != rejectedStatus && compressRequests) {
+                compressRequests = false;
+                log.warn("Server rejected a compressed request with status code " + rejectedStatus +
+                        ", sending requests uncompressed from now on");
+            }
+            if (probe && (rejectedStatus != 0 ||
+                    statusCode < Response.Status.INTERNAL_SERVER_ERROR.getStatusCode())) {
+                //Compressed bodies are accepted only if the compressed body was not rejected, a
+                //request rejected the same way uncompressed tells nothing and another one probes
+                endProbe(rejectedStatus == 0);
+            }
+            if (!retry || !isRetryable(statusCode, idempotent)) {
+                if (probe) {
+                    //Failed without telling whether compressed bodies are accepted, letting another
+                    //request probe it
+                    endProbe(false);
+                }
+                restoreEntity();
+                result.complete(response);
+                return;
+            }
+            long retryAfter = getRetryAfterMillis(response);
+            IOUtils.closeQuietly(response);
+            backoff(retryAfter, "status code " + statusCode);
+        }
+
+        /**
+         * Schedule the next attempt, exponentially later on each attempt with a random jitter, or
+         * as late as the server requested
+         *
+         * @param retryAfter delay requested by the server in milliseconds
+         * @param reason     reason of the failure
+         */
+        private void backoff(long retryAfter, String reason) {
+            long delay = Math.min(ImportExportConstants.MAX_RETRY_BACKOFF_MILLIS,
+                    retryBackoffMillis << Math.min(attempt, 20));
+            //Half of the delay is randomized, so that parallel requests do not retry together
+            delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+            delay = Math.max(delay, Math.min(retryAfter, ImportExportConstants.MAX_RETRY_BACKOFF_MILLIS));
+            log.warn("Request " + request.getMethod() + " " + request.getURI() + " failed with " +
+                    reason + ", retrying in " + delay + " ms (" + (attempt + 1) + "/" + maxRetries + ")");
+            attempt++;
+            schedule(this::attempt, delay);
+        }
+
+        private void fail(Throwable failure) {
+            if (probe) {
+                endProbe(false);
+            }
+            if (trial) {
+                //The trial ended without an outcome, letting another request through
+                trial = false;
+                releaseTrial();
+            }
+            restoreEntity();
+            result.completeExceptionally(failure);
+        }
+
+        /**
+         * Replace a large text entity of the request with a gzip compressed copy, unless the server
+         * rejected compressed entities. The copy is buffered, so the request has a content length
+         * and can be retried
+         */
+        private void compressEntity() {
+            if (!compressRequests || rejectedStatus != 0 || uncompressedEntity != null ||
+                    !(request instanceof HttpEntityEnclosingRequest)) {
+                return;
+            }
+            HttpEntityEnclosingRequest enclosingRequest = (HttpEntityEnclosingRequest) request;
+            HttpEntity entity = enclosingRequest.getEntity();
+            //Form bodies, sent to the token endpoint, are never compressed
+            if (!(entity instanceof StringEntity) || entity instanceof UrlEncodedFormEntity ||
+                    entity.getContentEncoding() != null ||
+                    entity.getContentLength() < ImportExportConstants.REQUEST_COMPRESSION_MIN_SIZE) {
+                return;
+            }
+            //Until the server accepts a compressed body, only a single request is sent compressed
+            if (!compressionAccepted) {
+                if (!compressionProbing.compareAndSet(false, true)) {
+                    return;
+                }
+                probe = true;
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) entity.getContentLength() / 4);
+            try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                entity.writeTo(out);
+            } catch (IOException e) {
+                log.debug("Unable to compress the body of request " + request.getURI(), e);
+                if (probe) {
+                    endProbe(false);
+                }
+                return;
+            }
+            ByteArrayEntity compressed = new ByteArrayEntity(buffer.toByteArray());
+            compressed.setContentType(entity.getContentType());
+            compressed.setContentEncoding(ImportExportConstants.GZIP_ENCODING);
+            enclosingRequest.setEntity(compressed);
+            uncompressedEntity = entity;
+        }
+
+        /**
+         * End the probe of whether the server accepts compressed bodies, remembering the answer
+         *
+         * @param accepted whether the server accepted the compressed body
+         */
+        private void endProbe(boolean accepted) {
+            probe = false;
+            if (accepted) {
+                compressionAccepted = true;
+            }
+            compressionProbing.set(false);
+        }
+
+        /**
+         * Put back the entity of the request replaced with a compressed copy, if any
+         */
+        private void restoreEntity() {
+            if (uncompressedEntity != null) {
+                ((HttpEntityEnclosingRequest) request).setEntity(uncompressedEntity);
+                uncompressedEntity = null;
+            }
+        }
+    }
+
+    /**
+     * Whether a response status is transient, and a request getting it can be retried
+     *
+     * @param statusCode status code of the response
+     * @param idempotent whether the request is idempotent
+     * @return true if the request can be retried
+     */
+    private static boolean isRetryable(int statusCode, boolean idempotent) {
+        //Throttled or unavailable requests are not processed by the server
+        if (statusCode == TOO_MANY_REQUESTS ||
+                statusCode == Response.Status.SERVICE_UNAVAILABLE.getStatusCode()) {
+            return true;
+        }
+        return idempotent && (statusCode == Response.Status.INTERNAL_SERVER_ERROR.getStatusCode() ||
+                statusCode == Response.Status.BAD_GATEWAY.getStatusCode() ||
+                statusCode == Response.Status.GATEWAY_TIMEOUT.getStatusCode());
+    }
+
+    private static boolean isIdempotent(HttpUriRequest request) {
+        return request instanceof HttpGet || request instanceof HttpHead ||
+                request instanceof HttpPut || request instanceof HttpDelete;
+    }
+
+    /**
+     * Whether the request can be sent more than once, which is not the case for a request with an
+     * entity streamed from a source read only once
+     *
+     * @param request http request
+     * @return true if the request can be repeated
+     */
+    static boolean isRepeatable(HttpUriRequest request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the delay requested by the Retry-After header of the response, in seconds
+     *
+     * @param response http response
+     * @return requested delay in milliseconds, or 0 if the response does not request a delay
+     */
+    private static long getRetryAfterMillis(CloseableHttpResponse response) {
+        Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (header != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(header.getValue().trim()));
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring Retry-After header " + header.getValue());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Check that the circuit breaker lets the request be sent. While the server keeps failing the
+     * circuit is open and requests are held back, until a trial request is let through after the
+     * open period
+     *
+     * @param execution execution of the request to be sent, marked as the trial if let through
+     *                  as one
+     * @return 0 if the request can be sent, or the time in milliseconds until the circuit may let
+     * it through
+     */
+    private synchronized long acquirePermission(Execution execution) {
+        if (consecutiveFailures < circuitFailureThreshold) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        if (now < circuitOpenUntil) {
+            return circuitOpenUntil - now;
+        }
+        if (trialInProgress) {
+            return Math.max(1, retryBackoffMillis);
+        }
+        trialInProgress = true;
+        execution.trial = true;
+        return 0;
+    }
+
+    private synchronized void releaseTrial() {
+        trialInProgress = false;
+    }
+
+    private synchronized void recordSuccess() {
+        if (consecutiveFailures >= circuitFailureThreshold) {
+            log.info("Server recovered, resuming requests");
+        }
+        consecutiveFailures = 0;
+        trialInProgress = false;
+    }
+
+    private synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (consecutiveFailures == circuitFailureThreshold || trialInProgress) {
+            log.warn("Server failed " + consecutiveFailures + " requests in a row, pausing requests " +
+                    "for " + TimeUnit.MILLISECONDS.toSeconds(circuitOpenMillis) + " seconds");
+        }
+        if (consecutiveFailures >= circuitFailureThreshold) {
+            circuitOpenUntil = System.currentTimeMillis() + circuitOpenMillis;
+        }
+        trialInProgress = false;
+    }
+
+    /**
+     * Run the task after the given delay on the scheduler thread, which only hands the requests
+     * over to the transport
+     *
+     * @param task   task to be run
+     * @param millis delay in milliseconds
+     */
+    private static void schedule(Runnable task, long millis) {
+        scheduler.schedule(task, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Token bucket limiting the rate of requests to the given number per second, allowing bursts of
+     * up to a second worth of requests. Requests over the rate reserve their token in advance and
+     * are delayed until it is due, so delayed requests are served in order
+     */
+    private static class TokenBucket {
+
+        private final double permitsPerMilli;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int permitsPerSecond) {
+            this.permitsPerMilli = permitsPerSecond / 1000.0;
+            this.capacity = permitsPerSecond;
+            this.tokens = permitsPerSecond;
+            this.lastRefill = System.currentTimeMillis();
+        }
+
+        /**
+         * Reserve a token
+         *
+         * @return milliseconds until the token is due
+         */
+        synchronized long reserve() {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerMilli);
+            lastRefill = now;
+            tokens--;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerMilli);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.FileContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Consumer of the responses of the non-blocking transport. Responses are read in to memory up to
+ * {@link ImportExportConstants#RESPONSE_MEMORY_LIMIT}, and larger ones are spooled to a temporary
+ * file, which is removed once the caller closes the content of the response. Large documents and
+ * thumbnails are so never held in memory as a whole, whatever the number of requests in flight.
+ */
+class SpoolingResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+    private static final String SPOOL_PREFIX = "response-";
+
+    private HttpResponse response;
+    private HttpEntity entity;
+    private ByteArrayOutputStream memory;
+    private File spoolFile;
+    private FileChannel spoolChannel;
+    private long spooledLength;
+    private byte[] buffer;
+    //whether the spooled file is handed over to the caller along with the response
+    private boolean handedOver;
+
+    @Override
+    protected void onResponseReceived(HttpResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+        this.entity = entity;
+        long length = entity.getContentLength();
+        if (length > ImportExportConstants.RESPONSE_MEMORY_LIMIT) {
+            spool();
+        } else {
+            memory = length >= 0 ? new ByteArrayOutputStream((int) length) : new ByteArrayOutputStream();
+        }
+    }
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+        if (spoolChannel != null && decoder instanceof FileContentDecoder) {
+            //Transferred from the connection to the file, without copying it through the heap
+            long transferred = ((FileContentDecoder) decoder).transfer(spoolChannel, spooledLength,
+                    Integer.MAX_VALUE);
+            if (transferred > 0) {
+                spooledLength += transferred;
+            }
+            return;
+        }
+        if (buffer == null) {
+            buffer = BufferPool.acquire();
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer);
+        int read;
+        while ((read = decoder.read(bytes)) > 0) {
+            bytes.flip();
+            if (spoolChannel != null) {
+                spooledLength += write(bytes);
+            } else {
+                memory.write(buffer, 0, read);
+                if (memory.size() > ImportExportConstants.RESPONSE_MEMORY_LIMIT) {
+                    //Larger than declared, or of unknown length
+                    spool();
+                }
+            }
+            bytes.clear();
+        }
+    }
+
+    @Override
+    protected HttpResponse buildResult(HttpContext context) throws IOException {
+        if (entity != null) {
+            AbstractHttpEntity content;
+            if (spoolChannel != null) {
+                spoolChannel.close();
+                content = new SpooledEntity(spoolFile);
+                handedOver = true;
+            } else {
+                content = new ByteArrayEntity(memory.toByteArray());
+            }
+            content.setContentType(entity.getContentType());
+            content.setContentEncoding(entity.getContentEncoding());
+            content.setChunked(entity.isChunked());
+            response.setEntity(content);
+        }
+        return response;
+    }
+
+    @Override
+    protected void releaseResources() {
+        BufferPool.release(buffer);
+        buffer = null;
+        memory = null;
+        IOUtils.closeQuietly(spoolChannel);
+        if (!handedOver) {
+            FileUtils.deleteQuietly(spoolFile);
+        }
+    }
+
+    /**
+     * Continue reading the response in to a temporary file, starting with what was read in to
+     * memory
+     */
+    private void spool() throws IOException {
+        spoolFile = File.createTempFile(SPOOL_PREFIX, ImportExportConstants.PART_EXTENSION);
+        spoolChannel = new RandomAccessFile(spoolFile, "rw").getChannel();
+        if (memory != null) {
+            spooledLength = write(ByteBuffer.wrap(memory.toByteArray()));
+            memory = null;
+        }
+    }
+
+    private int write(ByteBuffer bytes) throws IOException {
+        int written = 0;
+        while (bytes.hasRemaining()) {
+            written += spoolChannel.write(bytes, spooledLength + written);
+        }
+        return written;
+    }
+
+    /**
+     * Content of a response spooled to a file, which can be read once. The file is deleted when
+     * the content stream is closed
+     */
+    private static class SpooledEntity extends FileEntity {
+
+        SpooledEntity(File file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FileInputStream(file) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        FileUtils.deleteQuietly(file);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public boolean isStreaming() {
+            //Streamed entities are closed when consumed, which deletes the file
+            return true;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Holds the entries of a single API until the API is completely exported, so that an API which
+ * failed half way through is left out of the archive. Small entries are kept in memory, and larger
+ * ones are spooled to temporary files. The SHA-256 digest of each entry is computed on the way, for
+ * the manifest of the archive.
+ */
+class StagedArchiveSink implements ArchiveSink {
+
+    private static final String SPOOL_PREFIX = "export-";
+
+    //Content of each entry, as a byte array, a spooled file or the baseline archive to copy it
+    //from, ordered by the entry name
+    private final Map<String, Object> entries = new TreeMap<>();
+    //Hex encoded digest of the content of each entry
+    private final Map<String, String> digests = new HashMap<>();
+
+    @Override
+    public void addEntry(String name, byte[] content) {
+        put(name, content, DigestUtils.sha256Hex(content));
+    }
+
+    @Override
+    public void addEntry(String name, InputStream content) throws IOException {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        content = new DigestInputStream(content, digest);
+        //Reading up to the memory limit, and spooling the rest of a larger entry to a file
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        long limit = ImportExportConstants.STAGED_ENTRY_MEMORY_LIMIT;
+        if (BufferPool.copy(content, buffer, limit + 1) <= limit) {
+            put(name, buffer.toByteArray(), Hex.encodeHexString(digest.digest()));
+            return;
+        }
+        File spoolFile = File.createTempFile(SPOOL_PREFIX, ImportExportConstants.PART_EXTENSION);
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(spoolFile);
+            buffer.writeTo(outputStream);
+            BufferPool.copy(content, outputStream);
+            outputStream.close();
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(spoolFile);
+            throw e;
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+        }
+        put(name, spoolFile, Hex.encodeHexString(digest.digest()));
+    }
+
+    @Override
+    public void copyEntry(String name, BaselineArchive baseline) throws IOException {
+        //Checking the entry now, so a missing entry fails the API before it is committed
+        baseline.getEntry(name);
+        put(name, baseline, baseline.getManifest().getDigest(name));
+    }
+
+    private synchronized void put(String name, Object content, String digest) {
+        Object previous = entries.put(name, content);
+        digests.put(name, digest);
+        if (previous instanceof File) {
+            FileUtils.deleteQuietly((File) previous);
+        }
+    }
+
+    /**
+     * Stage the entries retrieved with the same content as the entries of the API in the baseline
+     * archive to be copied from the baseline, without compressing them again. Global mediation
+     * policies are shared by all the APIs, hence always kept as retrieved in this export
+     *
+     * @param baseline archive of a previous export
+     * @param apiId    api id of the API(provider-name-version)
+     */
+    synchronized void reuseBaselineEntries(BaselineArchive baseline, String apiId) {
+        ExportManifest.ApiRecord record = baseline.getManifest().getApi(apiId);
+        if (record == null) {
+            return;
+        }
+        String sharedFolder = ImportExportConstants.MEDIATION_FOLDER +
+                ImportExportConstants.ZIP_FILE_SEPARATOR;
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            String name = entry.getKey();
+            if (!(entry.getValue() instanceof BaselineArchive) && !name.startsWith(sharedFolder) &&
+                    digests.get(name).equals(record.getEntries().get(name)) &&
+                    baseline.hasEntry(name)) {
+                if (entry.getValue() instanceof File) {
+                    FileUtils.deleteQuietly((File) entry.getValue());
+                }
+                entry.setValue(baseline);
+            }
+        }
+    }
+
+    /**
+     * Returns the digests of the staged entries
+     *
+     * @return hex encoded SHA-256 digest of each entry, by the entry name
+     */
+    synchronized Map<String, String> getDigests() {
+        return new HashMap<>(digests);
+    }
+
+    /**
+     * Returns the names of the staged entries
+     *
+     * @return entry names
+     */
+    synchronized Set<String> getEntryNames() {
+        return new HashSet<>(entries.keySet());
+    }
+
+    /**
+     * Write all the staged entries in to the given archive, ordered by the entry name
+     *
+     * @param archive archive to write the entries in to
+     */
+    synchronized void commitTo(ArchiveSink archive) throws IOException {
+        //Holding the archive so the entries of the API are written together
+        synchronized (archive) {
+            for (Map.Entry<String, Object> entry : entries.entrySet()) {
+                if (entry.getValue() instanceof BaselineArchive) {
+                    archive.copyEntry(entry.getKey(), (BaselineArchive) entry.getValue());
+                } else if (entry.getValue() instanceof File) {
+                    InputStream inputStream = null;
+                    try {
+                        inputStream = new FileInputStream((File) entry.getValue());
+                        archive.addEntry(entry.getKey(), inputStream);
+                    } finally {
+                        IOUtils.closeQuietly(inputStream);
+                    }
+                } else {
+                    archive.addEntry(entry.getKey(), (byte[]) entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the staged entries along with their spooled files
+     */
+    synchronized void discard() {
+        for (Object content : entries.values()) {
+            if (content instanceof File) {
+                FileUtils.deleteQuietly((File) content);
+            }
+        }
+        entries.clear();
+        digests.clear();
+    }
+}
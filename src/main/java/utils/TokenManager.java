@@ -0,0 +1,147 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps the access token of a scope valid for a whole run, shared by all the worker threads. The
+ * token is refreshed shortly before it expires, with concurrent refreshes coalesced into a single
+ * request, and a request rejected with 401 is replayed once with a fresh token.
+ */
+class TokenManager {
+
+    private static final Log log = LogFactory.getLog(TokenManager.class);
+
+    private final String scope;
+    private volatile AccessToken accessToken;
+
+    /**
+     * Create a token manager with a valid access token of the given scope
+     *
+     * @param scope               required token scope
+     * @param consumerCredentials encoded consumerKey and consumerSecret
+     */
+    TokenManager(String scope, String consumerCredentials) throws UtilException {
+        this.scope = scope;
+        this.accessToken = ImportExportUtils.getAccessToken(scope, consumerCredentials);
+    }
+
+    /**
+     * Returns a valid access token, refreshing it if it is about to expire
+     *
+     * @return access token
+     */
+    String getAccessToken() throws UtilException {
+        AccessToken current = accessToken;
+        if (current.isExpiring()) {
+            current = refresh(current);
+        }
+        return current.getToken();
+    }
+
+    /**
+     * Execute the request with the request executor, authorized with the current access token.
+     * If the request is rejected with 401 and can be repeated, it is executed once more with a
+     * fresh token
+     *
+     * @param request request to be executed
+     * @return response, which must be closed by the caller
+     */
+    CloseableHttpResponse execute(HttpUriRequest request) throws IOException, UtilException {
+        return RequestExecutor.await(executeAsync(request));
+    }
+
+    /**
+     * Execute the request as {@link #execute(HttpUriRequest)} does, without holding the calling
+     * thread while the request is in flight
+     *
+     * @param request request to be executed
+     * @return future completed with the response, which must be closed by the caller
+     */
+    CompletableFuture<CloseableHttpResponse> executeAsync(final HttpUriRequest request) {
+        final AccessToken current;
+        try {
+            current = accessToken.isExpiring() ? refresh(accessToken) : accessToken;
+        } catch (UtilException e) {
+            return failedFuture(e);
+        }
+        return execute(request, current).thenCompose(response -> {
+            if (response.getStatusLine().getStatusCode() != Response.Status.UNAUTHORIZED.getStatusCode()
+                    || !RequestExecutor.isRepeatable(request)) {
+                return CompletableFuture.completedFuture(response);
+            }
+            IOUtils.closeQuietly(response);
+            log.debug("Request to " + request.getURI() + " unauthorized, retrying with a new token");
+            try {
+                return execute(request, refresh(current));
+            } catch (UtilException e) {
+                return failedFuture(e);
+            }
+        });
+    }
+
+    private CompletableFuture<CloseableHttpResponse> execute(HttpUriRequest request, AccessToken token) {
+        request.setHeader(HttpHeaders.AUTHORIZATION, ImportExportConstants.CONSUMER_KEY_SEGMENT +
+                token.getToken());
+        return RequestExecutor.getInstance().executeAsync(request);
+    }
+
+    private static CompletableFuture<CloseableHttpResponse> failedFuture(Throwable failure) {
+        CompletableFuture<CloseableHttpResponse> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+
+    /**
+     * Replace the given token with a new one, using its refresh token if available and the
+     * password grant otherwise. Only one thread refreshes at a time, and threads which waited for
+     * it get the token it refreshed
+     *
+     * @param staleToken token to be replaced
+     * @return new access token
+     */
+    private synchronized AccessToken refresh(AccessToken staleToken) throws UtilException {
+        if (accessToken != staleToken) {
+            //Already refreshed by another thread
+            return accessToken;
+        }
+        AccessToken newToken = null;
+        if (staleToken.getRefreshToken() != null) {
+            try {
+                newToken = ImportExportUtils.refreshAccessToken(scope, staleToken);
+            } catch (UtilException e) {
+                log.debug("Unable to refresh the access token, generating a new token", e);
+            }
+        }
+        if (newToken == null) {
+            newToken = ImportExportUtils.generateAccessToken(scope, staleToken.getConsumerCredentials());
+        }
+        accessToken = newToken;
+        return newToken;
+    }
+}
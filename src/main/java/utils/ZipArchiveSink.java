@@ -0,0 +1,252 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the entries of an exported archive directly in to a zip file. Entries can be added from
+ * several threads, each entry being written as a whole. An entry with the name of an already added
+ * entry is skipped if it is a global mediation policy shared by several APIs, and fails otherwise.
+ * Entries are compressed in parallel while they are written in to the zip. The zip is written to a
+ * temporary file which is moved in to place when the archive is closed, so an incomplete archive
+ * never replaces an existing one.
+ */
+class ZipArchiveSink implements ArchiveSink, Closeable {
+
+    private static final Log log = LogFactory.getLog(ZipArchiveSink.class);
+
+    private final File archiveFile;
+    private final File partFile;
+    private final ParallelZipWriter zipWriter;
+    private final Set<String> entryNames = new HashSet<>();
+    private final ExportJournal journal;
+    private final Map<String, ExportManifest.ApiRecord> uncheckpointedApis = new LinkedHashMap<>();
+    private long lastCheckpoint = System.nanoTime();
+    private boolean closed;
+
+    /**
+     * Create a archive to be written in to the given file
+     *
+     * @param archiveFile        zip file
+     * @param compressionThreads number of threads compressing the entries
+     * @param compressionPolicy  policy choosing how each entry is compressed
+     */
+    ZipArchiveSink(File archiveFile, int compressionThreads, CompressionPolicy compressionPolicy)
+            throws IOException {
+        this(archiveFile, compressionThreads, compressionPolicy, null);
+    }
+
+    /**
+     * Create a archive to be written in to the given file, journaling the committed APIs. If the
+     * journal has APIs already exported by an interrupted run, the archive continues from the
+     * temporary file left by that run
+     *
+     * @param archiveFile        zip file
+     * @param compressionThreads number of threads compressing the entries
+     * @param compressionPolicy  policy choosing how each entry is compressed
+     * @param journal            journal of the export, or null
+     * @throws IOException if unable to create the archive, or to continue the temporary file
+     */
+    ZipArchiveSink(File archiveFile, int compressionThreads, CompressionPolicy compressionPolicy,
+                   ExportJournal journal) throws IOException {
+        this.archiveFile = archiveFile;
+        this.partFile = new File(archiveFile.getPath() + ImportExportConstants.PART_EXTENSION);
+        this.journal = journal;
+        this.zipWriter = new ParallelZipWriter(partFile, compressionThreads, compressionPolicy,
+                journal != null ? journal.getArchiveLength() : 0);
+        entryNames.addAll(zipWriter.getEntryNames());
+    }
+
+    @Override
+    public synchronized void addEntry(String name, byte[] content) throws IOException {
+        if (isNewEntry(name)) {
+            zipWriter.putEntry(name, content);
+        }
+    }
+
+    @Override
+    public synchronized void addEntry(String name, InputStream content) throws IOException {
+        if (isNewEntry(name)) {
+            zipWriter.putEntry(name, content);
+        }
+    }
+
+    @Override
+    public synchronized void copyEntry(String name, BaselineArchive baseline) throws IOException {
+        BaselineArchive.RawEntry entry = baseline.getEntry(name);
+        if (isNewEntry(name)) {
+            //Copying the compressed data, without inflating and deflating it again
+            InputStream data = baseline.openRawEntry(entry);
+            try {
+                zipWriter.putRawEntry(name, entry.isDeflated(), entry.getCrc(), entry.getSize(),
+                        entry.getCompressedSize(), data);
+            } finally {
+                IOUtils.closeQuietly(data);
+            }
+        }
+    }
+
+    /**
+     * Write the staged entries of an API in to the archive. If the archive is journaled, the API
+     * is journaled with the other APIs committed since the last checkpoint, once enough APIs are
+     * committed or enough time has passed since then, with a single sync of the archive. An
+     * interrupted export exports the APIs committed after the last checkpoint again
+     *
+     * @param apiId      api id of the API(provider-name-version)
+     * @param apiEntries staged entries of the API
+     * @param record     record of the API, with the digests of its entries
+     */
+    synchronized void commit(String apiId, StagedArchiveSink apiEntries,
+                             ExportManifest.ApiRecord record) throws IOException {
+        //Failing the API before any of its entries is written, if they clash with another API
+        for (String name : apiEntries.getEntryNames()) {
+            if (!isSharedEntry(name) && entryNames.contains(name)) {
+                throw new IOException("Entry " + name + " of API " + apiId + " is already in the " +
+                        "archive, exported by another API with the same name and version");
+            }
+        }
+        apiEntries.commitTo(this);
+        if (journal != null) {
+            uncheckpointedApis.put(apiId, record);
+            if (uncheckpointedApis.size() >= ImportExportConstants.JOURNAL_CHECKPOINT_APIS ||
+                    System.nanoTime() - lastCheckpoint >=
+                            TimeUnit.SECONDS.toNanos(ImportExportConstants.JOURNAL_CHECKPOINT_SECONDS)) {
+                checkpoint();
+            }
+        }
+    }
+
+    /**
+     * Force the entries written so far to the storage device and journal the APIs committed since
+     * the last checkpoint
+     *
+     * @throws IOException if unable to sync the archive or to write the journal
+     */
+    private void checkpoint() throws IOException {
+        journal.append(uncheckpointedApis, zipWriter.sync());
+        uncheckpointedApis.clear();
+        lastCheckpoint = System.nanoTime();
+    }
+
+    private boolean isNewEntry(String name) throws IOException {
+        if (closed) {
+            throw new IOException("Archive " + archiveFile + " is already closed");
+        }
+        if (!entryNames.add(name)) {
+            if (!isSharedEntry(name)) {
+                throw new IOException("Entry " + name + " is already in the archive " + archiveFile);
+            }
+            //Global mediation policies are added by every API referring them
+            log.debug("Skipping duplicate archive entry " + name);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isSharedEntry(String name) {
+        return name.startsWith(ImportExportConstants.MEDIATION_FOLDER +
+                ImportExportConstants.ZIP_FILE_SEPARATOR);
+    }
+
+    /**
+     * Returns the number of entries written in to the archive
+     *
+     * @return number of entries
+     */
+    synchronized int getEntryCount() {
+        return entryNames.size();
+    }
+
+    /**
+     * Finish the archive and move it in to place
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            zipWriter.finish();
+            zipWriter.close();
+            Files.move(partFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            //The complete archive needs no resuming
+            if (journal != null) {
+                journal.delete();
+            }
+        } finally {
+            IOUtils.closeQuietly(zipWriter);
+            FileUtils.deleteQuietly(partFile);
+        }
+    }
+
+    /**
+     * Stop writing an interrupted archive, keeping the temporary file and the journal so the export
+     * can be resumed. The APIs committed since the last checkpoint are checkpointed first, if the
+     * archive can still be synced. An archive without a journal cannot be resumed, and is discarded
+     */
+    synchronized void suspend() {
+        if (closed) {
+            return;
+        }
+        if (journal == null) {
+            abort();
+            return;
+        }
+        closed = true;
+        try {
+            if (!uncheckpointedApis.isEmpty()) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to journal the APIs exported in to " + archiveFile + " since the " +
+                    "last checkpoint, resuming the export exports them again", e);
+        } finally {
+            IOUtils.closeQuietly(zipWriter);
+            IOUtils.closeQuietly(journal);
+        }
+    }
+
+    /**
+     * Discard the archive, leaving any existing file at the archive location untouched
+     */
+    synchronized void abort() {
+        closed = true;
+        IOUtils.closeQuietly(zipWriter);
+        FileUtils.deleteQuietly(partFile);
+        if (journal != null) {
+            journal.delete();
+        }
+    }
+}
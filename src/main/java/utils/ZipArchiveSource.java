@@ -0,0 +1,255 @@
+/*
+ *
+ *  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package utils;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+import org.apache.http.entity.mime.content.ContentBody;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the entries of an imported archive directly from the zip file, without extracting it.
+ * Entries are located through the central directory of the zip, and can be read concurrently by
+ * several threads. Entry names are relative to the root of the archive, and use '/' as the
+ * separator
+ */
+class ZipArchiveSource implements Closeable {
+
+    private final ZipFile zipFile;
+    private final Map<String, ZipEntry> entries = new HashMap<>();
+    //Names of the files and folders within each folder of the archive
+    private final Map<String, Set<String>> folders = new HashMap<>();
+
+    /**
+     * Open the given zip file and index its entries
+     *
+     * @param zipFile path to the zip file
+     */
+    ZipArchiveSource(String zipFile) throws IOException {
+        this.zipFile = new ZipFile(zipFile);
+        folders.put("", new TreeSet<String>());
+        Enumeration<? extends ZipEntry> zipEntries = this.zipFile.entries();
+        while (zipEntries.hasMoreElements()) {
+            ZipEntry entry = zipEntries.nextElement();
+            //Archives created on windows may use '\' as the separator
+            String name = StringUtils.strip(entry.getName().replace('\\',
+                    ImportExportConstants.ZIP_FILE_SEPARATOR),
+                    String.valueOf(ImportExportConstants.ZIP_FILE_SEPARATOR));
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (entry.isDirectory()) {
+                addFolder(name);
+            } else {
+                entries.put(name, entry);
+                addToParent(name);
+            }
+        }
+    }
+
+    private void addFolder(String name) {
+        if (!folders.containsKey(name)) {
+            folders.put(name, new TreeSet<String>());
+            addToParent(name);
+        }
+    }
+
+    private void addToParent(String name) {
+        int index = name.lastIndexOf(ImportExportConstants.ZIP_FILE_SEPARATOR);
+        String parent = index < 0 ? "" : name.substring(0, index);
+        if (index >= 0) {
+            addFolder(parent);
+        }
+        folders.get(parent).add(name.substring(index + 1));
+    }
+
+    /**
+     * Returns the names of the files and folders within the given folder, in alphabetical order
+     *
+     * @param folder name of the folder, or an empty string for the root of the archive
+     * @return names of the folder content, empty if the folder does not exist
+     */
+    List<String> list(String folder) {
+        Set<String> content = folders.get(folder);
+        if (content == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(content);
+    }
+
+    /**
+     * Returns the names of the folders within the given folder, in alphabetical order
+     *
+     * @param folder name of the folder, or an empty string for the root of the archive
+     * @return names of the sub folders
+     */
+    List<String> listFolders(String folder) {
+        List<String> subFolders = new ArrayList<>();
+        for (String name : list(folder)) {
+            String path = folder.isEmpty() ? name : ImportExportUtils.entryName(folder, name);
+            if (isFolder(path)) {
+                subFolders.add(name);
+            }
+        }
+        return subFolders;
+    }
+
+    /**
+     * Check whether the archive has a file with the given name
+     *
+     * @param name name of the entry
+     * @return true if the file exists
+     */
+    boolean isFile(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Check whether the archive has a folder with the given name
+     *
+     * @param name name of the folder
+     * @return true if the folder exists
+     */
+    boolean isFolder(String name) {
+        return folders.containsKey(name);
+    }
+
+    /**
+     * Returns the uncompressed size of the given entry
+     *
+     * @param name name of the entry
+     * @return size of the entry in bytes, or -1 if not known
+     * @throws FileNotFoundException if there is no such entry
+     */
+    long getSize(String name) throws FileNotFoundException {
+        ZipEntry entry = entries.get(name);
+        if (entry == null) {
+            throw new FileNotFoundException("Entry " + name + " not found in " + zipFile.getName());
+        }
+        return entry.getSize();
+    }
+
+    /**
+     * Open a stream to read the content of the given entry. The stream must be closed by the caller
+     *
+     * @param name name of the entry
+     * @return content of the entry
+     * @throws FileNotFoundException if there is no such entry
+     */
+    InputStream openEntry(String name) throws IOException {
+        ZipEntry entry = entries.get(name);
+        if (entry == null) {
+            throw new FileNotFoundException("Entry " + name + " not found in " + zipFile.getName());
+        }
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * Read the content of the given entry as a string
+     *
+     * @param name name of the entry
+     * @return content of the entry
+     */
+    String readEntry(String name) throws IOException {
+        InputStream inputStream = openEntry(name);
+        try {
+            return IOUtils.toString(inputStream, ImportExportConstants.CHARSET);
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Returns a multipart body streaming the content of the given entry. The entry is read again
+     * each time the body is written, so a request carrying it can be repeated
+     *
+     * @param name name of the entry
+     * @return multipart body
+     * @throws FileNotFoundException if there is no such entry
+     */
+    ContentBody getContentBody(String name) throws FileNotFoundException {
+        ZipEntry entry = entries.get(name);
+        if (entry == null) {
+            throw new FileNotFoundException("Entry " + name + " not found in " + zipFile.getName());
+        }
+        return new EntryBody(name, entry.getSize());
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipFile.close();
+    }
+
+    /**
+     * Multipart body with the content of an archive entry
+     */
+    private class EntryBody extends AbstractContentBody {
+
+        private final String name;
+        private final long size;
+
+        EntryBody(String name, long size) {
+            super(ContentType.DEFAULT_BINARY);
+            this.name = name;
+            this.size = size;
+        }
+
+        @Override
+        public String getFilename() {
+            return name.substring(name.lastIndexOf(ImportExportConstants.ZIP_FILE_SEPARATOR) + 1);
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            InputStream inputStream = openEntry(name);
+            try {
+                BufferPool.copy(inputStream, out);
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+        }
+
+        @Override
+        public String getTransferEncoding() {
+            return MIME.ENC_BINARY;
+        }
+
+        @Override
+        public long getContentLength() {
+            return size;
+        }
+    }
+}